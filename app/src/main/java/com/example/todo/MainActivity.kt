@@ -1,4 +1,3 @@
-
 package com.example.todo
 
 import android.os.Bundle
@@ -6,6 +5,10 @@ import androidx.activity.ComponentActivity
 import androidx.activity.compose.setContent
 import androidx.compose.material3.MaterialTheme
 import androidx.compose.material3.Surface
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.lifecycleScope
+import androidx.lifecycle.repeatOnLifecycle
+import kotlinx.coroutines.launch
 
 class MainActivity : ComponentActivity() {
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -13,5 +16,13 @@ class MainActivity : ComponentActivity() {
         setContent {
             TodoApp(context = this)
         }
+        
+        // 界面可见时保持变更推送连接，进入后台即断开，不在后台常驻长连接
+        val changeFeed = (application as TodoApplication).container.taskChangeFeed
+        lifecycleScope.launch {
+            repeatOnLifecycle(Lifecycle.State.STARTED) {
+                changeFeed.run()
+            }
+        }
     }
 }
@@ -0,0 +1,18 @@
+package com.example.todo
+
+import android.app.Application
+import com.example.todo.di.AppContainer
+import com.example.todo.di.AppDataContainer
+import com.example.todo.di.StartupTimings
+
+class TodoApplication : Application() {
+    lateinit var container: AppContainer
+        private set
+    
+    override fun onCreate() {
+        super.onCreate()
+        container = AppDataContainer(this)
+        container.prewarm()
+        StartupTimings.mark(StartupTimings.APPLICATION_CREATED)
+    }
+}
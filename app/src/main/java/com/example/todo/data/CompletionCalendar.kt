@@ -0,0 +1,190 @@
+package com.example.todo.data
+
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import java.time.LocalDate
+
+/**
+ * 每天完成任务数的内存缓存，counts[i] 对应 epoch day 为 baseDay + i 的一天。
+ *
+ * 首次使用时由一次分组查询（或上次保存的 [CompletionState]）填充，之后 TaskRepository 在写操作中
+ * 按任务的新旧状态增减对应日期的计数，不再查询数据库。五年的历史约 1800 个 Int，数组在日期超出范围时按倍数扩容。
+ * 服务器批量写入无法逐条描述，直接作废缓存，下次使用时重新加载。
+ *
+ * 计数变化时同步维护按星期汇总的完成数和最长连续完成天数：某天从 0 变为非 0 时只看它两侧的连续段，
+ * 只有拆断了最长的那一段时才重新扫描计数数组。
+ */
+class CompletionCalendar {
+    private val lock = Any()
+    private var baseDay = 0L
+    private var counts = IntArray(0)
+    // 下标为 DayOfWeek.value - 1（周一为 0）
+    private val weekdayTotals = IntArray(7)
+    private var total = 0
+    private var longestStreak = 0
+    private var loaded = false
+    // 每次修改或作废都加一；加载期间有变化时，加载结果可能不包含这次变化，不能安装
+    private var mutations = 0L
+
+    private val _version = MutableStateFlow(0L)
+
+    // 计数每次变化（包括重新加载和作废）时递增，页面据此重新读取
+    val version: StateFlow<Long> = _version.asStateFlow()
+
+    val isLoaded: Boolean
+        get() = synchronized(lock) { loaded }
+
+    // 开始加载，返回的令牌交给 install
+    fun beginLoad(): Long = synchronized(lock) { mutations }
+
+    // 令牌之后没有发生过变化时安装查询结果并返回 true，否则调用方需要重新查询
+    fun install(token: Long, rows: List<DayCount>): Boolean = install(token, CompletionState.rebuild(rows))
+
+    fun install(token: Long, state: CompletionState): Boolean {
+        synchronized(lock) {
+            if (token != mutations) return false
+            baseDay = state.baseDay
+            counts = state.counts.copyOf()
+            state.weekdayTotals.copyInto(weekdayTotals)
+            total = state.total
+            longestStreak = state.longestStreak
+            loaded = true
+            _version.value = _version.value + 1
+            return true
+        }
+    }
+
+    fun invalidate() {
+        synchronized(lock) {
+            mutations++
+            loaded = false
+            _version.value = _version.value + 1
+        }
+    }
+
+    // 由写操作在提交后调用；previous 为 null 表示新建，current 为 null 表示永久删除
+    fun onTaskChanged(previous: Task?, current: Task?) {
+        val oldDay = previous?.let(::completionDay)
+        val newDay = current?.let(::completionDay)
+        if (oldDay == newDay) return
+        synchronized(lock) {
+            mutations++
+            if (!loaded) return
+            if (oldDay != null) add(oldDay, -1)
+            if (newDay != null) add(newDay, 1)
+            _version.value = _version.value + 1
+        }
+    }
+
+    // 把 [fromDay, fromDay + dest.size) 的计数复制到 dest，范围外的日期为 0
+    fun copyInto(fromDay: Long, dest: IntArray) {
+        synchronized(lock) {
+            for (i in dest.indices) {
+                dest[i] = countAt(fromDay + i)
+            }
+        }
+    }
+
+    // 缓存覆盖的第一天，还没有任何完成记录时为 null
+    fun firstDay(): Long? = synchronized(lock) { if (counts.isEmpty()) null else baseDay }
+
+    // 当前连续完成天数：今天还没有完成任务时从昨天往前数，今天结束前连续记录不算中断
+    fun productivity(today: LocalDate): ProductivitySummary {
+        synchronized(lock) {
+            var day = today.toEpochDay()
+            if (countAt(day) == 0) day--
+            var current = 0
+            while (countAt(day) > 0) {
+                current++
+                day--
+            }
+            return ProductivitySummary(
+                currentStreak = current,
+                longestStreak = longestStreak,
+                weekdayTotals = weekdayTotals.copyOf()
+            )
+        }
+    }
+
+    // 当前状态的副本，用于保存或与重建结果比较；未加载时为 null
+    fun snapshot(): CompletionState? {
+        synchronized(lock) {
+            if (!loaded) return null
+            return CompletionState(baseDay, counts.copyOf(), weekdayTotals.copyOf(), total, longestStreak)
+        }
+    }
+
+    private fun countAt(day: Long): Int {
+        val index = day - baseDay
+        return if (index >= 0 && index < counts.size) counts[index.toInt()] else 0
+    }
+
+    private fun add(day: Long, delta: Int) {
+        ensureCovers(day)
+        val index = (day - baseDay).toInt()
+        val before = counts[index]
+        val after = (before + delta).coerceAtLeast(0)
+        counts[index] = after
+        weekdayTotals[CompletionState.weekdayIndex(day)] += after - before
+        total += after - before
+        if (before == 0 && after > 0) {
+            // 新的连续段由两侧的连续段与这一天连接而成
+            longestStreak = maxOf(longestStreak, runLength(index - 1, -1) + 1 + runLength(index + 1, 1))
+        } else if (before > 0 && after == 0) {
+            val broken = runLength(index - 1, -1) + 1 + runLength(index + 1, 1)
+            if (broken == longestStreak) {
+                longestStreak = CompletionState.longestRun(counts)
+            }
+        }
+    }
+
+    // 从 start 开始沿 step 方向连续非 0 的天数
+    private fun runLength(start: Int, step: Int): Int {
+        var length = 0
+        var i = start
+        while (i >= 0 && i < counts.size && counts[i] > 0) {
+            length++
+            i += step
+        }
+        return length
+    }
+
+    private fun ensureCovers(day: Long) {
+        if (counts.isEmpty()) {
+            baseDay = day
+            counts = IntArray(INITIAL_CAPACITY)
+            return
+        }
+        val index = day - baseDay
+        if (index >= 0 && index < counts.size) return
+        if (index >= counts.size) {
+            val size = maxOf(index + 1, counts.size * 2L).toInt()
+            counts = counts.copyOf(size)
+        } else {
+            // 向前扩容，原有计数整体后移
+            val shift = maxOf(-index, counts.size.toLong()).toInt()
+            val grown = IntArray(counts.size + shift)
+            counts.copyInto(grown, destinationOffset = shift)
+            counts = grown
+            baseDay -= shift
+        }
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 366
+
+        // 未删除且已完成的任务计入完成当天
+        fun completionDay(task: Task): Long? {
+            if (task.isDeleted) return null
+            return task.completedAt?.toLocalDate()?.toEpochDay()
+        }
+    }
+}
+
+// 连续完成天数与按星期汇总的完成数，weekdayTotals 从周一开始
+class ProductivitySummary(
+    val currentStreak: Int,
+    val longestStreak: Int,
+    val weekdayTotals: IntArray
+)
@@ -0,0 +1,139 @@
+package com.example.todo.data
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+
+/**
+ * [CompletionCalendar] 的完整状态：每日计数以及由它派生、增量维护的汇总值。
+ * 首尾为 0 的日期不影响比较，增量维护的数组可能比重建的数组覆盖更长的时间。
+ * writeVersion 是保存时任务表的写入版本（见 TaskDao.getWriteVersion），只在保存和恢复时使用，不参与比较。
+ */
+class CompletionState(
+    val baseDay: Long,
+    val counts: IntArray,
+    val weekdayTotals: IntArray,
+    val total: Int,
+    val longestStreak: Int,
+    val writeVersion: Long = 0
+) {
+    fun withWriteVersion(version: Long): CompletionState {
+        return CompletionState(baseDay, counts, weekdayTotals, total, longestStreak, version)
+    }
+    
+    // 与另一个状态表示的是否为同一组每日计数和汇总值
+    fun sameAs(other: CompletionState): Boolean {
+        if (total != other.total || longestStreak != other.longestStreak) return false
+        if (!weekdayTotals.contentEquals(other.weekdayTotals)) return false
+        val first = minOf(baseDay, other.baseDay)
+        val last = maxOf(baseDay + counts.size, other.baseDay + other.counts.size)
+        for (day in first until last) {
+            if (countAt(day) != other.countAt(day)) return false
+        }
+        return true
+    }
+
+    private fun countAt(day: Long): Int {
+        val index = day - baseDay
+        return if (index >= 0 && index < counts.size) counts[index.toInt()] else 0
+    }
+
+    companion object {
+        // 从分组查询的结果重新计算全部状态
+        fun rebuild(rows: List<DayCount>): CompletionState {
+            if (rows.isEmpty()) {
+                return CompletionState(0L, IntArray(0), IntArray(7), 0, 0)
+            }
+            var first = Long.MAX_VALUE
+            var last = Long.MIN_VALUE
+            rows.forEach { row ->
+                if (row.epochDay < first) first = row.epochDay
+                if (row.epochDay > last) last = row.epochDay
+            }
+            val counts = IntArray((last - first + 1).toInt())
+            val weekdayTotals = IntArray(7)
+            var total = 0
+            rows.forEach { row ->
+                counts[(row.epochDay - first).toInt()] = row.count
+                weekdayTotals[weekdayIndex(row.epochDay)] += row.count
+                total += row.count
+            }
+            return CompletionState(first, counts, weekdayTotals, total, longestRun(counts))
+        }
+
+        fun longestRun(counts: IntArray): Int {
+            var longest = 0
+            var run = 0
+            for (count in counts) {
+                run = if (count > 0) run + 1 else 0
+                if (run > longest) longest = run
+            }
+            return longest
+        }
+
+        // 周一为 0；epoch day 0（1970-01-01）是周四
+        fun weekdayIndex(epochDay: Long): Int = Math.floorMod(epochDay + 3, 7L).toInt()
+    }
+}
+
+/**
+ * [CompletionState] 的二进制文件，重启后直接恢复每日计数和汇总值，不必重新分组查询。
+ * 写法与 [PendingTasksSnapshot] 相同：先写临时文件再重命名，读取失败时视为没有保存过。
+ */
+class CompletionStateStore(private val file: File) {
+    fun read(): CompletionState? {
+        if (!file.exists()) return null
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return null
+                val writeVersion = input.readLong()
+                val baseDay = input.readLong()
+                val counts = IntArray(input.readInt()) { input.readInt() }
+                val weekdayTotals = IntArray(7) { input.readInt() }
+                CompletionState(
+                    baseDay = baseDay,
+                    counts = counts,
+                    weekdayTotals = weekdayTotals,
+                    total = input.readInt(),
+                    longestStreak = input.readInt(),
+                    writeVersion = writeVersion
+                )
+            }
+        } catch (e: Exception) {
+            // 文件损坏时放弃，由分组查询重建
+            null
+        }
+    }
+
+    fun clear() {
+        file.delete()
+    }
+
+    fun write(state: CompletionState) {
+        val tmp = File(file.parentFile, file.name + ".tmp")
+        DataOutputStream(BufferedOutputStream(FileOutputStream(tmp))).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeLong(state.writeVersion)
+            out.writeLong(state.baseDay)
+            out.writeInt(state.counts.size)
+            state.counts.forEach { out.writeInt(it) }
+            state.weekdayTotals.forEach { out.writeInt(it) }
+            out.writeInt(state.total)
+            out.writeInt(state.longestStreak)
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete()
+        }
+    }
+
+    companion object {
+        private const val MAGIC = 0x54444F43 // "TDOC"
+        // 2：增加写入版本；旧文件无法校验是否过期，直接丢弃
+        private const val VERSION = 2
+    }
+}
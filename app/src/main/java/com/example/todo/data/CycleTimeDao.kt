@@ -0,0 +1,26 @@
+package com.example.todo.data
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Upsert
+import java.time.LocalDateTime
+
+@Dao
+interface CycleTimeDao {
+    @Query("SELECT epochDay FROM cycle_time_sketches WHERE dirty = 1")
+    suspend fun getDirtyDays(): List<Long>
+    
+    // 包含待重建的行：刚标记的日期 data 为 null，已有草图的日期在重建前沿用旧草图
+    @Query("SELECT * FROM cycle_time_sketches WHERE epochDay >= :fromDay AND epochDay <= :toDay")
+    suspend fun getSketches(fromDay: Long, toDay: Long): List<CycleTimeSketch>
+    
+    // 在 [start, end) 内完成、未删除的任务，走 completedAt 索引
+    @Query("SELECT createdAt, completedAt FROM tasks WHERE isDeleted = 0 AND completedAt >= :start AND completedAt < :end")
+    suspend fun getCompletionSpans(start: LocalDateTime, end: LocalDateTime): List<CompletionSpan>
+    
+    @Upsert
+    suspend fun upsertSketch(sketch: CycleTimeSketch)
+    
+    @Query("DELETE FROM cycle_time_sketches WHERE epochDay = :epochDay")
+    suspend fun deleteSketch(epochDay: Long)
+}
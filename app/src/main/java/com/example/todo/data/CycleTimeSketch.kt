@@ -0,0 +1,24 @@
+package com.example.todo.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import java.time.LocalDateTime
+
+/**
+ * 某一天（按完成日期）完成任务的周期时间草图，data 为 QuantileSketch 的序列化结果。
+ * dirty 表示当天的完成记录有变化，下次统计前需要重建；没有完成任务的日期不保留记录。
+ */
+@Entity(tableName = "cycle_time_sketches")
+class CycleTimeSketch(
+    @PrimaryKey
+    val epochDay: Long,
+    val count: Int,
+    val data: ByteArray?,
+    val dirty: Boolean
+)
+
+// 重建草图所需的一个已完成任务的时间
+data class CompletionSpan(
+    val createdAt: LocalDateTime,
+    val completedAt: LocalDateTime
+)
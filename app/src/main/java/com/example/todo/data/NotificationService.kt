@@ -1,5 +1,6 @@
 package com.example.todo.data
 
+import android.app.Notification
 import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.app.PendingIntent
@@ -12,9 +13,20 @@ import com.example.todo.MainActivity
 import com.example.todo.R
 import java.time.LocalDateTime
 
-class NotificationService(private val context: Context) {
+class NotificationService(
+    private val context: Context,
+    // 发布一条通知；测试中替换为记录调用的实现
+    private val notify: (id: Int, notification: Notification) -> Unit = { id, notification ->
+        NotificationManagerCompat.from(context).notify(id, notification)
+    }
+) {
     private val CHANNEL_ID = "task_reminders"
-    private val NOTIFICATION_ID = 1
+    private val GROUP_KEY = "com.example.todo.TASK_REMINDERS"
+    // 分组摘要固定使用此 id，单个任务的通知使用 CHILD_ID_OFFSET + task.id
+    private val SUMMARY_NOTIFICATION_ID = 1
+    private val CHILD_ID_OFFSET = 1000
+    // 一批提醒最多展开的子通知数量，其余只计入摘要
+    private val MAX_CHILD_NOTIFICATIONS = 8
     
     init {
         createNotificationChannel()
@@ -35,38 +47,65 @@ class NotificationService(private val context: Context) {
         }
     }
     
-    fun sendTaskReminder(task: Task) {
+    private fun contentIntent(): PendingIntent {
         val intent = Intent(context, MainActivity::class.java).apply {
             flags = Intent.FLAG_ACTIVITY_NEW_TASK or Intent.FLAG_ACTIVITY_CLEAR_TASK
         }
+        return PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE)
+    }
+    
+    private fun buildTaskNotification(task: Task, pendingIntent: PendingIntent): Notification {
+        return NotificationCompat.Builder(context, CHANNEL_ID)
+            .setSmallIcon(R.mipmap.ic_launcher)
+            .setContentTitle(context.getString(R.string.task_reminder))
+            .setContentText("任务 \"${task.title}\" 即将到期！")
+            .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+            .setContentIntent(pendingIntent)
+            .setGroup(GROUP_KEY)
+            .setAutoCancel(true)
+            .build()
+    }
+    
+    fun sendTaskReminder(task: Task) {
+        notify(CHILD_ID_OFFSET + task.id, buildTaskNotification(task, contentIntent()))
+    }
+    
+    // 一批同时到期的任务发布为一个分组：最多 MAX_CHILD_NOTIFICATIONS 条子通知加一条摘要，
+    // 无论批次多大，NotificationManager 调用次数都有上限
+    fun sendTaskReminders(tasks: List<Task>) {
+        if (tasks.isEmpty()) return
+        if (tasks.size == 1) {
+            sendTaskReminder(tasks[0])
+            return
+        }
         
-        val pendingIntent: PendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE)
+        val pendingIntent = contentIntent()
+        val shown = tasks.sortedBy { it.dueDate }.take(MAX_CHILD_NOTIFICATIONS)
+        val inboxStyle = NotificationCompat.InboxStyle()
+            .setSummaryText("共 ${tasks.size} 个任务即将到期")
+        shown.forEach { task -> inboxStyle.addLine(task.title) }
         
-        val notification = NotificationCompat.Builder(context, CHANNEL_ID)
+        val summary = NotificationCompat.Builder(context, CHANNEL_ID)
             .setSmallIcon(R.mipmap.ic_launcher)
             .setContentTitle(context.getString(R.string.task_reminder))
-            .setContentText("任务 \"${task.title}\" 即将到期！")
+            .setContentText("${tasks.size} 个任务即将到期！")
+            .setStyle(inboxStyle)
             .setPriority(NotificationCompat.PRIORITY_DEFAULT)
             .setContentIntent(pendingIntent)
+            .setGroup(GROUP_KEY)
+            .setGroupSummary(true)
             .setAutoCancel(true)
             .build()
         
-        with(NotificationManagerCompat.from(context)) {
-            notify(NOTIFICATION_ID, notification)
+        shown.forEach { task ->
+            notify(CHILD_ID_OFFSET + task.id, buildTaskNotification(task, pendingIntent))
         }
+        notify(SUMMARY_NOTIFICATION_ID, summary)
     }
     
-    fun checkTasksForReminders(tasks: List<Task>) {
-        val now = LocalDateTime.now()
-        
-        tasks.forEach { task ->
-            if (!task.isCompleted && !task.isDeleted && task.dueDate != null) {
-                val hoursUntilDue = java.time.Duration.between(now, task.dueDate).toHours()
-                
-                if (hoursUntilDue == 24L) { // 距离到期还有24小时
-                    sendTaskReminder(task)
-                }
-            }
-        }
+    // 只读取 24 小时后那一小时内到期的任务，不再加载全部任务后在内存中过滤
+    suspend fun checkTasksForReminders(taskRepository: TaskRepository, now: LocalDateTime = LocalDateTime.now()) {
+        val windowStart = now.plusHours(24)
+        sendTaskReminders(taskRepository.getPendingTasksDueBetween(windowStart, windowStart.plusHours(1)))
     }
-}
\ No newline at end of file
+}
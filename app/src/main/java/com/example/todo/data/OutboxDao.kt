@@ -0,0 +1,25 @@
+package com.example.todo.data
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Transaction
+
+@Dao
+interface OutboxDao {
+    // 按任务分页：taskId 大于 afterTaskId 的前 limit 个任务的全部记录，同一任务的记录总在同一页中，可以一起合并
+    @Query(
+        "SELECT * FROM outbox WHERE taskId IN " +
+            "(SELECT DISTINCT taskId FROM outbox WHERE taskId > :afterTaskId ORDER BY taskId LIMIT :limit) " +
+            "ORDER BY id ASC"
+    )
+    suspend fun getEntriesPage(afterTaskId: Int, limit: Int): List<OutboxEntry>
+    
+    @Query("DELETE FROM outbox WHERE id IN (:entryIds)")
+    suspend fun deleteEntryChunk(entryIds: List<Long>)
+    
+    // SQLite 单条语句最多 999 个参数，一个任务连续修改多次时一次删除的记录数没有上限，分段执行
+    @Transaction
+    suspend fun deleteEntries(entryIds: List<Long>) {
+        entryIds.chunked(900).forEach { deleteEntryChunk(it) }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.todo.data
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+enum class OutboxOp {
+    CREATE,
+    UPDATE,
+    DELETE
+}
+
+// 一条待上传的本地变更，只记录任务 id、操作类型和改动的字段（TaskField 掩码），发送时读取任务的最新状态。
+// 永久删除后任务行已不存在，remoteId 记录删除时的服务器 id
+@Entity(
+    tableName = "outbox",
+    indices = [Index(value = ["taskId"])]
+)
+data class OutboxEntry(
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0,
+    val taskId: Int,
+    val op: OutboxOp,
+    val createdAt: Long = System.currentTimeMillis(),
+    @ColumnInfo(defaultValue = "31")
+    val changedFields: Int = TaskField.ALL,
+    val remoteId: Int? = null
+)
@@ -0,0 +1,102 @@
+package com.example.todo.data
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+/**
+ * 待办页首屏任务的二进制快照。
+ *
+ * 冷启动时直接从这个小文件渲染首屏，不必等待 Room 打开数据库、执行迁移和查询；
+ * 数据库就绪后页面再用实时数据覆盖。文件先写临时文件再重命名，读取失败时视为没有快照。
+ *
+ * 快照只保存首屏展示需要的字段，不含完成时间和字段级修改时间，读出的任务不能直接用于写回数据库。
+ */
+class PendingTasksSnapshot(private val file: File) {
+    // 首次访问时读取文件，之后使用内存中的副本；写入时同步更新，页面重建时看到的是最近一次写入的内容
+    @Volatile
+    private var cached: List<Task>? = null
+
+    fun read(): List<Task> {
+        cached?.let { return it }
+        synchronized(this) {
+            return cached ?: readFile().also { cached = it }
+        }
+    }
+
+    fun write(tasks: List<Task>) {
+        val page = tasks.take(PAGE_SIZE)
+        synchronized(this) {
+            cached = page
+        }
+        val tmp = File(file.parentFile, file.name + ".tmp")
+        DataOutputStream(BufferedOutputStream(FileOutputStream(tmp))).use { out ->
+            out.writeInt(MAGIC)
+            out.writeInt(VERSION)
+            out.writeInt(page.size)
+            page.forEach { task ->
+                out.writeInt(task.id)
+                out.writeUTF(task.title)
+                out.writeUTF(task.description)
+                out.writeBoolean(task.dueDate != null)
+                task.dueDate?.let { writeDateTime(out, it) }
+                writeDateTime(out, task.createdAt)
+                writeDateTime(out, task.updatedAt)
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete()
+        }
+    }
+
+    private fun readFile(): List<Task> {
+        if (!file.exists()) return emptyList()
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) return emptyList()
+                val count = input.readInt()
+                List(count) {
+                    val id = input.readInt()
+                    val title = input.readUTF()
+                    val description = input.readUTF()
+                    val dueDate = if (input.readBoolean()) readDateTime(input) else null
+                    Task(
+                        id = id,
+                        title = title,
+                        description = description,
+                        dueDate = dueDate,
+                        createdAt = readDateTime(input),
+                        updatedAt = readDateTime(input)
+                    )
+                }
+            }
+        } catch (e: Exception) {
+            // 快照损坏时放弃，等待数据库结果
+            emptyList()
+        }
+    }
+
+    // LocalDateTime 按 UTC 偏移编码为秒和纳秒，只用于无损还原，不代表真实时区
+    private fun writeDateTime(out: DataOutputStream, value: LocalDateTime) {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC))
+        out.writeInt(value.nano)
+    }
+
+    private fun readDateTime(input: DataInputStream): LocalDateTime {
+        return LocalDateTime.ofEpochSecond(input.readLong(), input.readInt(), ZoneOffset.UTC)
+    }
+
+    companion object {
+        // 首屏最多展示的任务数
+        const val PAGE_SIZE = 30
+
+        private const val MAGIC = 0x54444F53 // "TDOS"
+        private const val VERSION = 1
+    }
+}
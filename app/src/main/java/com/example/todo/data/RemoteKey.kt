@@ -0,0 +1,12 @@
+package com.example.todo.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+// 分页拉取服务器列表时的续传位置，label 区分不同的列表
+@Entity(tableName = "remote_keys")
+data class RemoteKey(
+    @PrimaryKey
+    val label: String,
+    val nextCursor: String?
+)
@@ -0,0 +1,17 @@
+package com.example.todo.data
+
+import androidx.room.Dao
+import androidx.room.Query
+import androidx.room.Upsert
+
+@Dao
+interface RemoteKeyDao {
+    @Query("SELECT * FROM remote_keys WHERE label = :label")
+    suspend fun getRemoteKey(label: String): RemoteKey?
+    
+    @Upsert
+    suspend fun upsertRemoteKey(remoteKey: RemoteKey)
+    
+    @Query("DELETE FROM remote_keys WHERE label = :label")
+    suspend fun deleteRemoteKey(label: String)
+}
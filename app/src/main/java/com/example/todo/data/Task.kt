@@ -1,19 +1,54 @@
-
 package com.example.todo.data
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
+import androidx.room.Index
 import androidx.room.PrimaryKey
 import java.time.LocalDateTime
 
-@Entity(tableName = "tasks")
+@Entity(
+    tableName = "tasks",
+    // 复合索引覆盖 “未完成、未删除 + 到期时间区间” 的查询，并直接按 dueDate 有序返回
+    indices = [
+        Index(value = ["isDeleted", "isCompleted", "dueDate"]),
+        // 按完成时间统计（周期时间、完成热力图）
+        Index(value = ["completedAt"]),
+        // 按创建时间分组的趋势统计：isDeleted = 0 AND createdAt >= :from 在索引上做范围扫描
+        Index(value = ["isDeleted", "createdAt"]),
+        // 服务器数据按服务器 id 找到对应的本地行
+        Index(value = ["remoteId"], unique = true)
+    ]
+)
 data class Task(
+    // 本地自增 id，只在本机有效
     @PrimaryKey(autoGenerate = true)
     val id: Int = 0,
+    // 服务器分配的 id；本地新建、服务器还没有确认的任务为 null。接口中的 id 字段对应这一列
+    val remoteId: Int? = null,
     val title: String,
     val description: String = "",
     val isCompleted: Boolean = false,
     val isDeleted: Boolean = false,
     val dueDate: LocalDateTime? = null,
     val createdAt: LocalDateTime = LocalDateTime.now(),
-    val updatedAt: LocalDateTime = LocalDateTime.now()
+    val updatedAt: LocalDateTime = LocalDateTime.now(),
+    // 最近一次标记完成的时间，未完成时为 null；由写入路径维护，见 TaskFields
+    val completedAt: LocalDateTime? = null,
+    // 各字段最后修改时间（毫秒），用于字段级合并，见 TaskFields
+    @ColumnInfo(defaultValue = "0")
+    val titleChangedAt: Long = 0,
+    @ColumnInfo(defaultValue = "0")
+    val descriptionChangedAt: Long = 0,
+    @ColumnInfo(defaultValue = "0")
+    val completedChangedAt: Long = 0,
+    @ColumnInfo(defaultValue = "0")
+    val deletedChangedAt: Long = 0,
+    @ColumnInfo(defaultValue = "0")
+    val dueDateChangedAt: Long = 0
+)
+
+// 任务的本地 id 与服务器 id
+data class TaskKey(
+    val id: Int,
+    val remoteId: Int?
 )
@@ -0,0 +1,13 @@
+package com.example.todo.data
+
+// 仓库写操作产生的变更事件，供提醒调度等模块增量更新
+sealed class TaskChange {
+    // 任务被新增或修改（包括完成、移入废纸桶、恢复），携带写入后的状态
+    data class Upserted(val task: Task) : TaskChange()
+
+    // 任务被永久删除
+    data class Removed(val taskId: Int) : TaskChange()
+
+    // 批量变更，无法逐条描述，订阅方需要重新加载
+    object Invalidated : TaskChange()
+}
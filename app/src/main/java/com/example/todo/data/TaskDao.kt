@@ -1,11 +1,17 @@
 
 package com.example.todo.data
 
+import androidx.paging.PagingSource
 import androidx.room.Dao
 import androidx.room.Delete
 import androidx.room.Insert
 import androidx.room.Query
+import androidx.room.RawQuery
+import androidx.room.Transaction
 import androidx.room.Update
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteQuery
+import java.time.LocalDateTime
 
 @Dao
 interface TaskDao {
@@ -15,26 +21,82 @@ interface TaskDao {
     @Query("SELECT * FROM tasks WHERE isCompleted = 0 AND isDeleted = 0 ORDER BY createdAt DESC")
     suspend fun getPendingTasks(): List<Task>
     
+    // 待办页首屏，用于写入启动快照
+    @Query("SELECT * FROM tasks WHERE isCompleted = 0 AND isDeleted = 0 ORDER BY createdAt DESC LIMIT :limit")
+    suspend fun getPendingTasksPage(limit: Int): List<Task>
+    
     @Query("SELECT * FROM tasks WHERE isCompleted = 1 AND isDeleted = 0 ORDER BY createdAt DESC")
     suspend fun getCompletedTasks(): List<Task>
     
+    // 已完成页分页读取，数据变化时 Room 自动使 PagingSource 失效
+    @Query("SELECT * FROM tasks WHERE isCompleted = 1 AND isDeleted = 0 ORDER BY createdAt DESC")
+    fun pagingCompletedTasks(): PagingSource<Int, Task>
+    
     @Query("SELECT * FROM tasks WHERE isDeleted = 1 ORDER BY updatedAt DESC")
     suspend fun getDeletedTasks(): List<Task>
     
     @Query("SELECT * FROM tasks WHERE isDeleted = 0 AND (title LIKE :searchQuery OR description LIKE :searchQuery) ORDER BY createdAt DESC")
     suspend fun searchTasks(searchQuery: String): List<Task>
     
+    @Query("SELECT * FROM tasks WHERE id = :taskId")
+    suspend fun getTaskById(taskId: Int): Task?
+    
+    // 以下到期时间查询只针对未完成、未删除的任务，走 (isDeleted, isCompleted, dueDate) 索引
+    
+    // 到期时间位于 [from, to) 区间
+    @Query("SELECT * FROM tasks WHERE isDeleted = 0 AND isCompleted = 0 AND dueDate >= :from AND dueDate < :to ORDER BY dueDate ASC")
+    suspend fun getPendingTasksDueBetween(from: LocalDateTime, to: LocalDateTime): List<Task>
+    
+    // 截至 now 已逾期
+    @Query("SELECT * FROM tasks WHERE isDeleted = 0 AND isCompleted = 0 AND dueDate < :now ORDER BY dueDate ASC")
+    suspend fun getOverdueTasks(now: LocalDateTime): List<Task>
+    
+    // 在 from 及之后最早到期的一个任务
+    @Query("SELECT * FROM tasks WHERE isDeleted = 0 AND isCompleted = 0 AND dueDate >= :from ORDER BY dueDate ASC LIMIT 1")
+    suspend fun getNextPendingTaskDueFrom(from: LocalDateTime): Task?
+    
+    // 以下统计查询在数据库中按天、周、月汇总，返回的行数只取决于时间跨度，与任务数量无关
+    
+    @Query("SELECT COUNT(*) AS total, COALESCE(SUM(isCompleted), 0) AS completed FROM tasks WHERE isDeleted = 0")
+    suspend fun getTaskCounts(): TaskCounts
+    
+    @Query("SELECT MIN(createdAt) FROM tasks WHERE isDeleted = 0")
+    suspend fun getEarliestCreatedAt(): LocalDateTime?
+    
+    @Query("SELECT substr(createdAt, 1, 10) AS bucket, COUNT(*) AS count FROM tasks WHERE isDeleted = 0 AND createdAt >= :from GROUP BY bucket ORDER BY bucket")
+    suspend fun getDailyCreatedCounts(from: LocalDateTime): List<DateCount>
+    
+    // 分组取所在周的周一
+    @Query("SELECT date(substr(createdAt, 1, 10), '-6 days', 'weekday 1') AS bucket, COUNT(*) AS count FROM tasks WHERE isDeleted = 0 AND createdAt >= :from GROUP BY bucket ORDER BY bucket")
+    suspend fun getWeeklyCreatedCounts(from: LocalDateTime): List<DateCount>
+    
+    @Query("SELECT substr(createdAt, 1, 7) || '-01' AS bucket, COUNT(*) AS count FROM tasks WHERE isDeleted = 0 AND createdAt >= :from GROUP BY bucket ORDER BY bucket")
+    suspend fun getMonthlyCreatedCounts(from: LocalDateTime): List<DateCount>
+    
+    // 每天完成的任务数，按 epoch day 分组（julianday 的 Unix 纪元为 2440587.5）
+    @Query("SELECT CAST(julianday(substr(completedAt, 1, 10)) - 2440587.5 AS INTEGER) AS epochDay, COUNT(*) AS count FROM tasks WHERE isDeleted = 0 AND completedAt IS NOT NULL GROUP BY epochDay")
+    suspend fun getDailyCompletedCounts(): List<DayCount>
+    
+    // 由触发器维护的完成统计写入版本，用于校验保存的 CompletionState 是否过期。
+    // task_write_version 不是实体，Room 编译期无法校验对它的查询，只能用原始查询
+    suspend fun getWriteVersion(): Long = queryLong(SimpleSQLiteQuery("SELECT version FROM task_write_version WHERE id = 0"))
+    
+    @RawQuery
+    suspend fun queryLong(query: SupportSQLiteQuery): Long
+    
     @Insert
     suspend fun insertTask(task: Task): Long
     
     @Update
     suspend fun updateTask(task: Task)
     
-    @Query("UPDATE tasks SET isDeleted = 1, updatedAt = CURRENT_TIMESTAMP WHERE id = :taskId")
-    suspend fun markAsDeleted(taskId: Int)
+    // 只修改状态确实变化的行，返回受影响的行数；changedAt 不早于原值 + 1，与 TaskFields.stamp 一致。
+    // updatedAt 由调用方传入本地时间，经类型转换器写成与其他列相同的 ISO 格式；CURRENT_TIMESTAMP 是 UTC 且用空格分隔
+    @Query("UPDATE tasks SET isDeleted = 1, updatedAt = :updatedAt, deletedChangedAt = MAX(:changedAt, deletedChangedAt + 1) WHERE id = :taskId AND isDeleted = 0")
+    suspend fun markAsDeleted(taskId: Int, changedAt: Long, updatedAt: LocalDateTime): Int
     
-    @Query("UPDATE tasks SET isDeleted = 0, updatedAt = CURRENT_TIMESTAMP WHERE id = :taskId")
-    suspend fun restoreTask(taskId: Int)
+    @Query("UPDATE tasks SET isDeleted = 0, updatedAt = :updatedAt, deletedChangedAt = MAX(:changedAt, deletedChangedAt + 1) WHERE id = :taskId AND isDeleted = 1")
+    suspend fun restoreTask(taskId: Int, changedAt: Long, updatedAt: LocalDateTime): Int
     
     @Delete
     suspend fun deleteTask(task: Task)
@@ -44,4 +106,204 @@ interface TaskDao {
     
     @Query("DELETE FROM tasks WHERE isDeleted = 1")
     suspend fun deleteAllDeletedTasks()
+    
+    @Query("SELECT * FROM tasks WHERE id IN (:taskIds)")
+    suspend fun getTasksByIds(taskIds: List<Int>): List<Task>
+    
+    @Query("SELECT * FROM tasks WHERE remoteId IN (:remoteIds)")
+    suspend fun getTasksByRemoteIds(remoteIds: List<Int>): List<Task>
+    
+    @Query("SELECT * FROM tasks WHERE remoteId = :remoteId")
+    suspend fun getTaskByRemoteId(remoteId: Int): Task?
+    
+    @Query("SELECT id, remoteId FROM tasks WHERE isDeleted = 1")
+    suspend fun getDeletedTaskKeys(): List<TaskKey>
+    
+    // 以下维护周期时间草图的 dirty 标记（见 CycleTimeStats）；minSdk 的 SQLite 不支持 ON CONFLICT DO UPDATE，分两条语句
+    
+    @Query("INSERT OR IGNORE INTO cycle_time_sketches (epochDay, count, data, dirty) VALUES (:epochDay, 0, NULL, 1)")
+    suspend fun insertDirtyCycleTimeDay(epochDay: Long)
+    
+    @Query("UPDATE cycle_time_sketches SET dirty = 1 WHERE epochDay = :epochDay")
+    suspend fun updateCycleTimeDayDirty(epochDay: Long)
+    
+    suspend fun markCycleTimeDayDirty(completedAt: LocalDateTime) {
+        val epochDay = completedAt.toLocalDate().toEpochDay()
+        insertDirtyCycleTimeDay(epochDay)
+        updateCycleTimeDayDirty(epochDay)
+    }
+    
+    // 任务的完成时间、创建时间或删除状态变化时，新旧两个完成日期的草图都要重建；old 或 new 为 null 表示新增或删除
+    suspend fun markCycleTimeDirty(old: Task?, new: Task?) {
+        if (old != null && new != null &&
+            old.completedAt == new.completedAt && old.createdAt == new.createdAt && old.isDeleted == new.isDeleted
+        ) {
+            return
+        }
+        old?.completedAt?.let { markCycleTimeDayDirty(it) }
+        new?.completedAt?.takeIf { it != old?.completedAt }?.let { markCycleTimeDayDirty(it) }
+    }
+    
+    @Insert
+    suspend fun insertOutboxEntry(entry: OutboxEntry)
+    
+    @Insert
+    suspend fun insertOutboxEntries(entries: List<OutboxEntry>)
+    
+    @Query("UPDATE outbox SET remoteId = :remoteId WHERE taskId = :taskId AND remoteId IS NULL")
+    suspend fun setOutboxRemoteId(taskId: Int, remoteId: Int)
+    
+    // 以下本地写操作与对应的 outbox 记录在同一个事务中写入
+    
+    // 写入后的任务（含字段修改时间），调用方用它发出变更事件
+    @Transaction
+    suspend fun insertTaskWithOutbox(task: Task): Task {
+        val stamped = TaskFields.stampAll(task, System.currentTimeMillis())
+        val id = insertTask(stamped)
+        markCycleTimeDirty(null, stamped)
+        insertOutboxEntry(OutboxEntry(taskId = id.toInt(), op = OutboxOp.CREATE))
+        return stamped.copy(id = id.toInt())
+    }
+    
+    // 与当前行比较，只推进改动字段的修改时间并记入 outbox；没有字段变化时不写入，返回 null
+    @Transaction
+    suspend fun updateTaskWithOutbox(task: Task): Task? {
+        val current = getTaskById(task.id) ?: return null
+        val changedFields = TaskFields.changedFields(current, task)
+        if (changedFields == 0) return null
+        // 页面上的副本可能早于服务器 id 的分配，服务器 id 始终以数据库为准
+        val stamped = TaskFields.stamp(task.copy(remoteId = current.remoteId), current, changedFields, System.currentTimeMillis())
+        updateTask(stamped)
+        markCycleTimeDirty(current, stamped)
+        insertOutboxEntry(
+            OutboxEntry(taskId = task.id, op = OutboxOp.UPDATE, changedFields = changedFields, remoteId = current.remoteId)
+        )
+        return stamped
+    }
+    
+    @Transaction
+    suspend fun markAsDeletedWithOutbox(taskId: Int) {
+        if (markAsDeleted(taskId, System.currentTimeMillis(), LocalDateTime.now()) > 0) {
+            getTaskById(taskId)?.completedAt?.let { markCycleTimeDayDirty(it) }
+            insertOutboxEntry(OutboxEntry(taskId = taskId, op = OutboxOp.UPDATE, changedFields = TaskField.DELETED.mask))
+        }
+    }
+    
+    @Transaction
+    suspend fun restoreTaskWithOutbox(taskId: Int) {
+        if (restoreTask(taskId, System.currentTimeMillis(), LocalDateTime.now()) > 0) {
+            getTaskById(taskId)?.completedAt?.let { markCycleTimeDayDirty(it) }
+            insertOutboxEntry(OutboxEntry(taskId = taskId, op = OutboxOp.UPDATE, changedFields = TaskField.DELETED.mask))
+        }
+    }
+    
+    // 永久删除时本地行已不存在，服务器 id 随 outbox 记录保存
+    @Transaction
+    suspend fun deleteTaskByIdWithOutbox(taskId: Int) {
+        val task = getTaskById(taskId)
+        markCycleTimeDirty(task, null)
+        deleteTaskById(taskId)
+        insertOutboxEntry(OutboxEntry(taskId = taskId, op = OutboxOp.DELETE, remoteId = task?.remoteId))
+    }
+    
+    @Transaction
+    suspend fun deleteAllDeletedTasksWithOutbox() {
+        val keys = getDeletedTaskKeys()
+        deleteAllDeletedTasks()
+        insertOutboxEntries(keys.map { OutboxEntry(taskId = it.id, op = OutboxOp.DELETE, remoteId = it.remoteId) })
+    }
+    
+    @Insert
+    suspend fun insertTasks(tasks: List<Task>)
+    
+    @Update
+    suspend fun updateTasks(tasks: List<Task>)
+    
+    // 服务器数据按服务器 id 找到本地行逐字段合并，只写入合并后确实变化的行；本地没有的任务以新的本地 id 插入。
+    // 没有服务器 id 的数据无法对应，忽略
+    @Transaction
+    suspend fun mergeRemoteTasks(tasks: List<Task>) {
+        tasks.chunked(500).forEach { chunk ->
+            // 同一任务在一批中出现多次时保留最后一次
+            val incoming = chunk.filter { it.remoteId != null }.associateBy { it.remoteId!! }
+            val local = getTasksByRemoteIds(incoming.keys.toList()).associateBy { it.remoteId }
+            val inserted = ArrayList<Task>()
+            val changed = ArrayList<Task>()
+            incoming.values.forEach { remote ->
+                val current = local[remote.remoteId]
+                if (current == null) {
+                    inserted.add(remote.copy(id = 0))
+                } else {
+                    TaskFields.merge(current, remote).takeIf { it != current }?.let { changed.add(it) }
+                }
+            }
+            if (inserted.isNotEmpty()) {
+                insertTasks(inserted)
+                inserted.forEach { markCycleTimeDirty(null, it) }
+            }
+            if (changed.isNotEmpty()) {
+                updateTasks(changed)
+                changed.forEach { markCycleTimeDirty(local[it.remoteId], it) }
+            }
+        }
+    }
+    
+    // 服务器删除与本地的删除/恢复按 deletedChangedAt 比较，本地在删除之后恢复过的任务保持恢复
+    @Transaction
+    suspend fun applyTombstones(tombstones: List<TaskTombstone>) {
+        tombstones.chunked(500).forEach { chunk ->
+            val local = getTasksByRemoteIds(chunk.map { it.taskId }).associateBy { it.remoteId }
+            val changed = LinkedHashMap<Int, Task>()
+            chunk.forEach { tombstone ->
+                val current = changed[tombstone.taskId] ?: local[tombstone.taskId] ?: return@forEach
+                if (tombstone.deletedChangedAt < current.deletedChangedAt) return@forEach
+                if (current.isDeleted && tombstone.deletedChangedAt == current.deletedChangedAt) return@forEach
+                changed[tombstone.taskId] = current.copy(
+                    isDeleted = true,
+                    deletedChangedAt = tombstone.deletedChangedAt,
+                    updatedAt = LocalDateTime.now()
+                )
+            }
+            if (changed.isNotEmpty()) {
+                updateTasks(changed.values.toList())
+                changed.values.forEach { markCycleTimeDirty(local[it.remoteId], it) }
+            }
+        }
+    }
+    
+    // 一页服务器变更在同一个事务中写入
+    @Transaction
+    suspend fun applyRemoteChanges(tasks: List<Task>, tombstones: List<TaskTombstone>) {
+        if (tasks.isNotEmpty()) {
+            mergeRemoteTasks(tasks)
+        }
+        if (tombstones.isNotEmpty()) {
+            applyTombstones(tombstones)
+        }
+    }
+    
+    /**
+     * 本地新建的任务被服务器接受后记录服务器分配的 id。
+     * 推送或增量同步可能先于上传结果到达，已经按服务器 id 插入了一行副本：副本逐字段合并到本地行上后删除。
+     * 返回 true 表示删除了副本，调用方需要作废依赖任务数据的缓存。
+     * 等待结果期间任务可能已被永久删除，之后排队的记录同样补上服务器 id，删除才能发到服务器。
+     */
+    @Transaction
+    suspend fun assignRemoteId(taskId: Int, remoteId: Int): Boolean {
+        setOutboxRemoteId(taskId, remoteId)
+        val task = getTaskById(taskId) ?: return false
+        if (task.remoteId == remoteId) return false
+        val duplicate = getTaskByRemoteId(remoteId)?.takeIf { it.id != taskId }
+        if (duplicate == null) {
+            updateTask(task.copy(remoteId = remoteId))
+            return false
+        }
+        // 先删除副本，唯一索引上不会同时存在两行
+        markCycleTimeDirty(duplicate, null)
+        deleteTaskById(duplicate.id)
+        val merged = TaskFields.merge(task.copy(remoteId = remoteId), duplicate)
+        updateTask(merged)
+        markCycleTimeDirty(task, merged)
+        return true
+    }
 }
@@ -1,4 +1,3 @@
-
 package com.example.todo.data
 
 import android.content.Context
@@ -6,30 +5,183 @@ import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 
 @Database(
-    entities = [Task::class],
-    version = 2,
+    entities = [Task::class, OutboxEntry::class, RemoteKey::class, CycleTimeSketch::class],
+    version = 12,
     exportSchema = false
 )
 @TypeConverters(LocalDateTimeConverter::class)
 abstract class TaskDatabase : RoomDatabase() {
     abstract fun taskDao(): TaskDao
+    abstract fun outboxDao(): OutboxDao
+    abstract fun remoteKeyDao(): RemoteKeyDao
+    abstract fun cycleTimeDao(): CycleTimeDao
     
     companion object {
         @Volatile
         private var INSTANCE: TaskDatabase? = null
         
+        // 为到期时间添加索引，提醒调度按时间窗口查询
+        val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_dueDate` ON `tasks` (`dueDate`)")
+            }
+        }
+        
+        // 单列 dueDate 索引替换为带状态列的复合索引，区间查询不再逐行回表过滤状态
+        val MIGRATION_3_4 = object : Migration(3, 4) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("DROP INDEX IF EXISTS `index_tasks_dueDate`")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isDeleted_isCompleted_dueDate` ON `tasks` (`isDeleted`, `isCompleted`, `dueDate`)")
+            }
+        }
+        
+        // 新增 outbox 表，记录尚未上传的本地变更
+        val MIGRATION_4_5 = object : Migration(4, 5) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `outbox` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `taskId` INTEGER NOT NULL, `op` TEXT NOT NULL, `createdAt` INTEGER NOT NULL)")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_outbox_taskId` ON `outbox` (`taskId`)")
+            }
+        }
+        
+        // 新增 remote_keys 表，记录分页拉取的续传位置
+        val MIGRATION_5_6 = object : Migration(5, 6) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE TABLE IF NOT EXISTS `remote_keys` (`label` TEXT NOT NULL, `nextCursor` TEXT, PRIMARY KEY(`label`))")
+            }
+        }
+        
+        // 字段级修改时间；已有任务的时间为 0，首次合并时以服务器为准。已有 outbox 记录视为改动了全部字段
+        val MIGRATION_6_7 = object : Migration(6, 7) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                listOf("titleChangedAt", "descriptionChangedAt", "completedChangedAt", "deletedChangedAt", "dueDateChangedAt").forEach { column ->
+                    db.execSQL("ALTER TABLE `tasks` ADD COLUMN `$column` INTEGER NOT NULL DEFAULT 0")
+                }
+                db.execSQL("ALTER TABLE `outbox` ADD COLUMN `changedFields` INTEGER NOT NULL DEFAULT 31")
+            }
+        }
+        
+        // 完成时间：已完成的任务用 updatedAt 近似回填。周期时间草图表中为每个有完成记录的日期插入待重建的行
+        val MIGRATION_7_8 = object : Migration(7, 8) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `tasks` ADD COLUMN `completedAt` TEXT")
+                db.execSQL("UPDATE `tasks` SET `completedAt` = ${toLocalIso("`updatedAt`")} WHERE `isCompleted` = 1")
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_completedAt` ON `tasks` (`completedAt`)")
+                db.execSQL("CREATE TABLE IF NOT EXISTS `cycle_time_sketches` (`epochDay` INTEGER NOT NULL, `count` INTEGER NOT NULL, `data` BLOB, `dirty` INTEGER NOT NULL, PRIMARY KEY(`epochDay`))")
+                // julianday 的 Unix 纪元为 2440587.5，相减得到 LocalDate.toEpochDay() 相同的天数
+                db.execSQL(
+                    "INSERT OR IGNORE INTO `cycle_time_sketches` (`epochDay`, `count`, `data`, `dirty`) " +
+                        "SELECT DISTINCT CAST(julianday(substr(`completedAt`, 1, 10)) - 2440587.5 AS INTEGER), 0, NULL, 1 " +
+                        "FROM `tasks` WHERE `completedAt` IS NOT NULL"
+                )
+            }
+        }
+        
+        // 服务器 id 与本地自增 id 分开保存。此前两者被视为同一个 id，但只有 outbox 中有修改或删除记录的任务
+        // 确实以本地 id 指向过服务器上的任务，只为它们回填。其余任务（包括 outbox 出现之前新建、从未上传的）
+        // 服务器 id 留空，没有任何 outbox 记录的未删除任务补一条新建记录，之后随 outbox 上传并取得真正的服务器 id
+        val MIGRATION_8_9 = object : Migration(8, 9) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `tasks` ADD COLUMN `remoteId` INTEGER")
+                val addressed = "SELECT `taskId` FROM `outbox` WHERE `op` IN ('UPDATE', 'DELETE') " +
+                    "AND `taskId` NOT IN (SELECT `taskId` FROM `outbox` WHERE `op` = 'CREATE')"
+                db.execSQL("UPDATE `tasks` SET `remoteId` = `id` WHERE `id` IN ($addressed)")
+                db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_tasks_remoteId` ON `tasks` (`remoteId`)")
+                db.execSQL("ALTER TABLE `outbox` ADD COLUMN `remoteId` INTEGER")
+                db.execSQL("UPDATE `outbox` SET `remoteId` = `taskId` WHERE `taskId` IN ($addressed)")
+                db.execSQL(
+                    "INSERT INTO `outbox` (`taskId`, `op`, `createdAt`, `changedFields`, `remoteId`) " +
+                        "SELECT `id`, 'CREATE', CAST(strftime('%s', 'now') AS INTEGER) * 1000, 31, NULL FROM `tasks` " +
+                        "WHERE `isDeleted` = 0 AND `id` NOT IN (SELECT `taskId` FROM `outbox`)"
+                )
+            }
+        }
+        
+        // 趋势统计按 createdAt 范围过滤后分组，此前没有可用的索引，每次都扫描全表
+        val MIGRATION_9_10 = object : Migration(9, 10) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_isDeleted_createdAt` ON `tasks` (`isDeleted`, `createdAt`)")
+                // 早期版本升级上来的库可能缺少完成时间索引
+                db.execSQL("CREATE INDEX IF NOT EXISTS `index_tasks_completedAt` ON `tasks` (`completedAt`)")
+            }
+        }
+        
+        // 删除、恢复曾用 CURRENT_TIMESTAMP 写 updatedAt，7_8 又把它复制到了 completedAt：
+        // 这些值是 UTC、日期与时间用空格分隔，按本地日期分组和与 ISO 字符串比较时都会错位。
+        // 统一转换为本地时间的 ISO 格式，并让所有周期时间草图重建
+        val MIGRATION_10_11 = object : Migration(10, 11) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("UPDATE `tasks` SET `completedAt` = ${toLocalIso("`completedAt`")} WHERE instr(`completedAt`, ' ') > 0")
+                db.execSQL("UPDATE `tasks` SET `updatedAt` = ${toLocalIso("`updatedAt`")} WHERE instr(`updatedAt`, ' ') > 0")
+                db.execSQL("UPDATE `cycle_time_sketches` SET `dirty` = 1")
+                db.execSQL(
+                    "INSERT OR IGNORE INTO `cycle_time_sketches` (`epochDay`, `count`, `data`, `dirty`) " +
+                        "SELECT DISTINCT CAST(julianday(substr(`completedAt`, 1, 10)) - 2440587.5 AS INTEGER), 0, NULL, 1 " +
+                        "FROM `tasks` WHERE `completedAt` IS NOT NULL"
+                )
+            }
+        }
+        
+        // 把列中的时间转换为 LocalDateTimeConverter 写入的格式：带空格的 CURRENT_TIMESTAMP 值按 UTC 转为本地时间，
+        // 已经是 ISO 格式的值保持不变
+        private fun toLocalIso(column: String): String {
+            return "CASE WHEN instr($column, ' ') > 0 THEN replace(datetime($column, 'localtime'), ' ', 'T') ELSE $column END"
+        }
+        
+        // 完成统计的写入版本：任务表中影响完成计数的每次写入都由触发器递增，与写入在同一个事务中。
+        // 保存的 CompletionState 记下保存时的版本，启动时版本相同才能直接使用；只比较完成总数会漏掉总数不变的修改
+        val MIGRATION_11_12 = object : Migration(11, 12) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                createWriteVersion(db)
+            }
+        }
+        
+        // task_write_version 不是实体，Room 不会创建也不会删除它：每次打开时补建（已存在时不变），
+        // 破坏性迁移时删除。破坏性迁移先删除实体表（触发器随 tasks 一起删除）再回调，此时 tasks 已不存在，只能删除不能重建
+        val CALLBACK = object : RoomDatabase.Callback() {
+            override fun onOpen(db: SupportSQLiteDatabase) {
+                createWriteVersion(db)
+            }
+            
+            override fun onDestructiveMigration(db: SupportSQLiteDatabase) {
+                db.execSQL("DROP TABLE IF EXISTS `task_write_version`")
+            }
+        }
+        
+        // 版本从建表时刻的毫秒数开始，而不是 0：表被删除重建后，旧库保存的 CompletionState 不会恰好与新版本相等
+        private fun createWriteVersion(db: SupportSQLiteDatabase) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `task_write_version` (`id` INTEGER PRIMARY KEY NOT NULL CHECK (`id` = 0), `version` INTEGER NOT NULL)")
+            db.execSQL("INSERT OR IGNORE INTO `task_write_version` (`id`, `version`) VALUES (0, CAST(strftime('%s', 'now') AS INTEGER) * 1000)")
+            val bump = "UPDATE `task_write_version` SET `version` = `version` + 1 WHERE `id` = 0"
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `task_write_version_insert` AFTER INSERT ON `tasks` WHEN NEW.`completedAt` IS NOT NULL BEGIN $bump; END")
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS `task_write_version_delete` AFTER DELETE ON `tasks` WHEN OLD.`completedAt` IS NOT NULL BEGIN $bump; END")
+            db.execSQL(
+                "CREATE TRIGGER IF NOT EXISTS `task_write_version_update` AFTER UPDATE OF `completedAt`, `isDeleted` ON `tasks` " +
+                    "WHEN OLD.`completedAt` IS NOT NEW.`completedAt` OR OLD.`isDeleted` IS NOT NEW.`isDeleted` BEGIN $bump; END"
+            )
+        }
+        
         fun getDatabase(context: Context): TaskDatabase {
             return INSTANCE ?: synchronized(this) {
-                val instance = Room.databaseBuilder(
-                context.applicationContext,
-                TaskDatabase::class.java,
-                "task_database"
-            ).fallbackToDestructiveMigration().build()
+                val instance = buildDatabase(context, "task_database")
                 INSTANCE = instance
                 instance
             }
         }
+        
+        // 迁移、回调和破坏性回退的完整配置，测试用它打开指定名称的库
+        internal fun buildDatabase(context: Context, name: String): TaskDatabase {
+            return Room.databaseBuilder(
+                context.applicationContext,
+                TaskDatabase::class.java,
+                name
+            ).addMigrations(MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12)
+                .addCallback(CALLBACK)
+                .fallbackToDestructiveMigration()
+                .build()
+        }
     }
 }
@@ -0,0 +1,121 @@
+package com.example.todo.data
+
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+
+/**
+ * 参与字段级合并的任务字段。mask 用于在 outbox 中记录一次修改涉及哪些字段，jsonName 与接口中的字段名一致。
+ */
+enum class TaskField(val mask: Int, val jsonName: String) {
+    TITLE(1, "title"),
+    DESCRIPTION(1 shl 1, "description"),
+    COMPLETED(1 shl 2, "isCompleted"),
+    DELETED(1 shl 3, "isDeleted"),
+    DUE_DATE(1 shl 4, "dueDate");
+
+    fun isIn(fields: Int): Boolean = fields and mask != 0
+
+    companion object {
+        // 与 OutboxEntry.changedFields 列的默认值一致
+        const val ALL = 0x1F
+    }
+}
+
+/**
+ * 字段级变更跟踪与合并。
+ *
+ * 每个字段有独立的修改时间（毫秒），本地修改只推进被改动字段的时间；
+ * 合并远端数据时逐字段比较时间，较新的一方获胜，两个设备同时修改不同字段时互不覆盖。
+ */
+object TaskFields {
+    fun changedAt(task: Task, field: TaskField): Long = when (field) {
+        TaskField.TITLE -> task.titleChangedAt
+        TaskField.DESCRIPTION -> task.descriptionChangedAt
+        TaskField.COMPLETED -> task.completedChangedAt
+        TaskField.DELETED -> task.deletedChangedAt
+        TaskField.DUE_DATE -> task.dueDateChangedAt
+    }
+
+    private fun sameValue(a: Task, b: Task, field: TaskField): Boolean = when (field) {
+        TaskField.TITLE -> a.title == b.title
+        TaskField.DESCRIPTION -> a.description == b.description
+        TaskField.COMPLETED -> a.isCompleted == b.isCompleted
+        TaskField.DELETED -> a.isDeleted == b.isDeleted
+        TaskField.DUE_DATE -> a.dueDate == b.dueDate
+    }
+
+    // 两个版本之间取值不同的字段
+    fun changedFields(old: Task, new: Task): Int {
+        var fields = 0
+        TaskField.values().forEach { field ->
+            if (!sameValue(old, new, field)) fields = fields or field.mask
+        }
+        return fields
+    }
+
+    // 完成状态对应的完成时间：未完成为 null，已完成时沿用已有值，否则取完成状态的修改时间
+    fun completedAtFor(isCompleted: Boolean, existing: LocalDateTime?, completedChangedAt: Long): LocalDateTime? {
+        if (!isCompleted) return null
+        return existing ?: LocalDateTime.ofInstant(Instant.ofEpochMilli(completedChangedAt), ZoneId.systemDefault())
+    }
+    
+    // 推进 fields 中各字段的修改时间；新时间至少比原时间大 1，系统时钟回拨时本地修改仍然是最新的。
+    // 完成状态变化时同时设置或清除 completedAt
+    fun stamp(task: Task, previous: Task, fields: Int, now: Long): Task {
+        fun next(field: TaskField): Long {
+            val old = changedAt(previous, field)
+            return if (field.isIn(fields)) maxOf(now, old + 1) else old
+        }
+        val completedChangedAt = next(TaskField.COMPLETED)
+        return task.copy(
+            completedAt = if (TaskField.COMPLETED.isIn(fields)) {
+                completedAtFor(task.isCompleted, null, completedChangedAt)
+            } else {
+                previous.completedAt
+            },
+            titleChangedAt = next(TaskField.TITLE),
+            descriptionChangedAt = next(TaskField.DESCRIPTION),
+            completedChangedAt = completedChangedAt,
+            deletedChangedAt = next(TaskField.DELETED),
+            dueDateChangedAt = next(TaskField.DUE_DATE)
+        )
+    }
+
+    fun stampAll(task: Task, now: Long): Task = task.copy(
+        completedAt = completedAtFor(task.isCompleted, task.completedAt, now),
+        titleChangedAt = now,
+        descriptionChangedAt = now,
+        completedChangedAt = now,
+        deletedChangedAt = now,
+        dueDateChangedAt = now
+    )
+
+    // 逐字段合并，时间相同时以远端为准
+    fun merge(local: Task, remote: Task): Task {
+        fun remoteWins(field: TaskField) = changedAt(remote, field) >= changedAt(local, field)
+        val title = remoteWins(TaskField.TITLE)
+        val description = remoteWins(TaskField.DESCRIPTION)
+        val completed = remoteWins(TaskField.COMPLETED)
+        val deleted = remoteWins(TaskField.DELETED)
+        val dueDate = remoteWins(TaskField.DUE_DATE)
+        return local.copy(
+            title = if (title) remote.title else local.title,
+            titleChangedAt = if (title) remote.titleChangedAt else local.titleChangedAt,
+            description = if (description) remote.description else local.description,
+            descriptionChangedAt = if (description) remote.descriptionChangedAt else local.descriptionChangedAt,
+            isCompleted = if (completed) remote.isCompleted else local.isCompleted,
+            completedChangedAt = if (completed) remote.completedChangedAt else local.completedChangedAt,
+            completedAt = if (completed) {
+                completedAtFor(remote.isCompleted, remote.completedAt, remote.completedChangedAt)
+            } else {
+                local.completedAt
+            },
+            isDeleted = if (deleted) remote.isDeleted else local.isDeleted,
+            deletedChangedAt = if (deleted) remote.deletedChangedAt else local.deletedChangedAt,
+            dueDate = if (dueDate) remote.dueDate else local.dueDate,
+            dueDateChangedAt = if (dueDate) remote.dueDateChangedAt else local.dueDateChangedAt,
+            updatedAt = maxOf(local.updatedAt, remote.updatedAt)
+        )
+    }
+}
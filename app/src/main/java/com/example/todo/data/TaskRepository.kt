@@ -1,52 +1,257 @@
-
 package com.example.todo.data
 
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.Pager
+import androidx.paging.PagingConfig
+import androidx.paging.PagingData
+import androidx.paging.RemoteMediator
+import com.example.todo.di.AppDispatchers
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withContext
+import java.time.LocalDate
 import java.time.LocalDateTime
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
-class TaskRepository(private val taskDao: TaskDao) {
+class TaskRepository(
+    taskDaoProvider: Lazy<TaskDao>,
+    private val applicationScope: CoroutineScope,
+    private val dispatchers: AppDispatchers,
+    private val pendingSnapshot: PendingTasksSnapshot,
+    private val completionStore: CompletionStateStore
+) {
+    // 首屏在主线程读取快照时就会创建仓库；DAO 等到第一次查询（已在读写调度器上）时才解析，不在主线程构建数据库
+    private val taskDao: TaskDao by taskDaoProvider
+    
+    private val _changes = MutableSharedFlow<TaskChange>(extraBufferCapacity = 64)
+    private val writeMutex = Mutex()
+    
+    // 正在执行的列表查询，key 相同的并发读取共享同一个 Deferred
+    private val inFlightReads = HashMap<String, Deferred<List<Task>>>()
+    private val executedQueries = AtomicInteger()
+    
+    // 统计序列缓存，按（范围, 当天日期）区分；任何写入后清空。generation 防止写入前发起的查询把旧结果放回缓存
+    private val statsCache = ConcurrentHashMap<Pair<StatsRange, LocalDate>, StatsSeries>()
+    private val statsGeneration = AtomicInteger()
+    
+    // 每天完成的任务数，写操作中增量维护
+    private val completionCalendar = CompletionCalendar()
+    // 上次保存的状态只在进程内第一次加载时使用；之后作废缓存说明有仓库之外的写入，必须重新查询
+    private val completionRestoreAttempted = AtomicBoolean(false)
+    
+    // 所有写操作完成后发出的变更事件
+    val changes: SharedFlow<TaskChange> = _changes.asSharedFlow()
+    
     suspend fun getAllActiveTasks(): List<Task> {
-        return taskDao.getAllActiveTasks()
+        return singleFlight("getAllActiveTasks") { taskDao.getAllActiveTasks() }
     }
     
     suspend fun getPendingTasks(): List<Task> {
-        return taskDao.getPendingTasks()
+        return singleFlight("getPendingTasks") { taskDao.getPendingTasks() }
+    }
+    
+    // 上次保存的待办首屏，冷启动时可在数据库打开前直接渲染
+    fun getPendingSnapshot(): List<Task> {
+        return pendingSnapshot.read()
+    }
+    
+    suspend fun savePendingSnapshot(pendingTasks: List<Task>) {
+        withContext(dispatchers.read) {
+            pendingSnapshot.write(pendingTasks)
+        }
+    }
+    
+    // 重新查询待办首屏并保存快照
+    suspend fun refreshPendingSnapshot() {
+        withContext(dispatchers.read) {
+            pendingSnapshot.write(taskDao.getPendingTasksPage(PendingTasksSnapshot.PAGE_SIZE))
+        }
     }
     
     suspend fun getCompletedTasks(): List<Task> {
-        return taskDao.getCompletedTasks()
+        return singleFlight("getCompletedTasks") { taskDao.getCompletedTasks() }
+    }
+    
+    // 已完成页的分页数据，页面只读 Room；传入 remoteMediator 时由它在滚动到末尾时补充服务器数据
+    @OptIn(ExperimentalPagingApi::class)
+    fun getCompletedTasksPaged(remoteMediator: RemoteMediator<Int, Task>? = null): Flow<PagingData<Task>> {
+        return Pager(
+            config = PagingConfig(pageSize = COMPLETED_PAGE_SIZE, enablePlaceholders = false),
+            remoteMediator = remoteMediator,
+            pagingSourceFactory = { taskDao.pagingCompletedTasks() }
+        ).flow
+    }
+    
+    suspend fun getTaskCounts(): TaskCounts {
+        return read { taskDao.getTaskCounts() }
+    }
+    
+    // 某个范围内每个分组新建的任务数，由数据库汇总，粒度按范围跨度自动选择
+    suspend fun getCreatedSeries(range: StatsRange, today: LocalDate = LocalDate.now()): StatsSeries {
+        val key = range to today
+        statsCache[key]?.let { return it }
+        val generation = statsGeneration.get()
+        val series = read {
+            val first = if (range.days != null) {
+                today.minusDays(range.days.toLong() - 1)
+            } else {
+                taskDao.getEarliestCreatedAt()?.toLocalDate()?.coerceAtMost(today) ?: today
+            }
+            val bucketSize = BucketSize.forSpan(StatsSeries.spanDays(first, today))
+            // 从第一个分组的起点开始查询，首尾分组都是完整的
+            val from = bucketSize.startOf(first).atStartOfDay()
+            val rows = when (bucketSize) {
+                BucketSize.DAY -> taskDao.getDailyCreatedCounts(from)
+                BucketSize.WEEK -> taskDao.getWeeklyCreatedCounts(from)
+                BucketSize.MONTH -> taskDao.getMonthlyCreatedCounts(from)
+            }
+            StatsSeries.build(range, bucketSize, first, today, rows)
+        }
+        if (statsGeneration.get() == generation) {
+            statsCache[key] = series
+        }
+        return series
+    }
+    
+    // 在后台预先加载，之后切换到该范围时直接命中缓存
+    fun prefetchCreatedSeries(range: StatsRange) {
+        if (statsCache.containsKey(range to LocalDate.now())) return
+        applicationScope.launch(dispatchers.read) {
+            try {
+                getCreatedSeries(range)
+            } catch (e: Exception) {
+                // 预取失败时等真正切换时再加载
+            }
+        }
+    }
+    
+    // 已加载的每日完成数；首次调用时优先恢复上次保存的状态，保存后任务表有过写入时由一次分组查询填充
+    suspend fun getCompletionCalendar(): CompletionCalendar {
+        if (completionRestoreAttempted.compareAndSet(false, true) && !completionCalendar.isLoaded) {
+            val token = completionCalendar.beginLoad()
+            val saved = read { completionStore.read() }
+            if (saved != null && read { taskDao.getWriteVersion() } == saved.writeVersion &&
+                completionCalendar.install(token, saved)
+            ) {
+                return completionCalendar
+            }
+        }
+        repeat(CALENDAR_LOAD_ATTEMPTS) {
+            if (completionCalendar.isLoaded) return completionCalendar
+            val token = completionCalendar.beginLoad()
+            val rows = read { taskDao.getDailyCompletedCounts() }
+            if (completionCalendar.install(token, rows)) return completionCalendar
+        }
+        // 写入持续不断时在写锁内加载，期间不会有新的变化
+        write {
+            if (!completionCalendar.isLoaded) {
+                completionCalendar.install(completionCalendar.beginLoad(), taskDao.getDailyCompletedCounts())
+            }
+        }
+        return completionCalendar
+    }
+    
+    // 保存当前状态，下次启动时恢复；未加载时不写。
+    // 在写锁内取快照和写入版本，期间没有仓库写入，两者对应数据库的同一时刻
+    suspend fun saveCompletionState() {
+        val state = withContext(dispatchers.read) {
+            writeMutex.withLock {
+                completionCalendar.snapshot()?.withWriteVersion(taskDao.getWriteVersion())
+            }
+        } ?: return
+        withContext(dispatchers.read) {
+            completionStore.write(state)
+        }
+    }
+    
+    // 用分组查询从头重建状态并与增量维护的结果比较，不一致时改用重建结果。返回是否一致
+    suspend fun verifyCompletionCalendar(): Boolean = write {
+        val rebuilt = CompletionState.rebuild(taskDao.getDailyCompletedCounts())
+        val current = completionCalendar.snapshot()
+        val consistent = current != null && current.sameAs(rebuilt)
+        if (!consistent) {
+            completionCalendar.install(completionCalendar.beginLoad(), rebuilt)
+        }
+        consistent
+    }
+    
+    // 任务表有无法逐条跟踪的写入（服务器变更、远端分页）时调用
+    private fun invalidateCompletionCalendar() {
+        completionCalendar.invalidate()
+        // 保存的状态同样过期，删除后下次启动重新汇总；之后的保存会写入新状态
+        applicationScope.launch(dispatchers.read) {
+            completionStore.clear()
+        }
     }
     
     suspend fun getDeletedTasks(): List<Task> {
-        return taskDao.getDeletedTasks()
+        return singleFlight("getDeletedTasks") { taskDao.getDeletedTasks() }
     }
     
     suspend fun searchTasks(searchQuery: String): List<Task> {
-        return taskDao.searchTasks("%$searchQuery%")
+        return singleFlight("searchTasks:$searchQuery") { taskDao.searchTasks("%$searchQuery%") }
     }
     
-    suspend fun addTask(task: Task): Long {
-        return taskDao.insertTask(task)
+    suspend fun getPendingTasksDueBetween(from: LocalDateTime, to: LocalDateTime): List<Task> {
+        return read { taskDao.getPendingTasksDueBetween(from, to) }
     }
     
-    suspend fun updateTask(task: Task) {
-        taskDao.updateTask(task)
+    suspend fun getOverdueTasks(now: LocalDateTime): List<Task> {
+        return read { taskDao.getOverdueTasks(now) }
     }
     
-    suspend fun markAsDeleted(taskId: Int) {
-        taskDao.markAsDeleted(taskId)
+    suspend fun getNextPendingTaskDueFrom(from: LocalDateTime): Task? {
+        return read { taskDao.getNextPendingTaskDueFrom(from) }
     }
     
-    suspend fun restoreTask(taskId: Int) {
-        taskDao.restoreTask(taskId)
+    suspend fun addTask(task: Task): Long = write {
+        val inserted = taskDao.insertTaskWithOutbox(task)
+        completionCalendar.onTaskChanged(null, inserted)
+        _changes.emit(TaskChange.Upserted(inserted))
+        inserted.id.toLong()
     }
     
-    private suspend fun getTaskById(taskId: Int): Task? {
-        // 这里我们需要添加一个方法来根据ID获取任务
-        // 先从所有状态中查找
-        val allTasks = getAllTasks()
-        return allTasks.find { it.id == taskId }
+    // 没有字段变化时不写数据库，也不发出变更事件
+    suspend fun updateTask(task: Task) = write {
+        val previous = taskDao.getTaskById(task.id)
+        val updated = taskDao.updateTaskWithOutbox(task) ?: return@write
+        completionCalendar.onTaskChanged(previous, updated)
+        _changes.emit(TaskChange.Upserted(updated))
+    }
+    
+    suspend fun markAsDeleted(taskId: Int) = write {
+        val previous = taskDao.getTaskById(taskId)
+        taskDao.markAsDeletedWithOutbox(taskId)
+        emitCurrentState(taskId, previous)
+    }
+    
+    suspend fun restoreTask(taskId: Int) = write {
+        val previous = taskDao.getTaskById(taskId)
+        taskDao.restoreTaskWithOutbox(taskId)
+        emitCurrentState(taskId, previous)
+    }
+    
+    suspend fun getTaskById(taskId: Int): Task? {
+        return read { taskDao.getTaskById(taskId) }
+    }
+    
+    suspend fun getTasksByIds(taskIds: List<Int>): List<Task> {
+        return read { taskDao.getTasksByIds(taskIds) }
+    }
+    
+    // 按服务器 id 查询本地行
+    suspend fun getTasksByRemoteIds(remoteIds: List<Int>): List<Task> {
+        return read { taskDao.getTasksByRemoteIds(remoteIds) }
     }
     
     suspend fun getAllTasks(): List<Task> {
@@ -57,15 +262,112 @@ class TaskRepository(private val taskDao: TaskDao) {
         return pending + completed + deleted
     }
     
-    suspend fun deleteTask(task: Task) {
-        taskDao.deleteTask(task)
+    suspend fun deleteTask(task: Task) = write {
+        completionCalendar.onTaskChanged(taskDao.getTaskById(task.id), null)
+        taskDao.deleteTaskByIdWithOutbox(task.id)
+        _changes.emit(TaskChange.Removed(task.id))
+    }
+    
+    suspend fun deleteTaskById(taskId: Int) = write {
+        completionCalendar.onTaskChanged(taskDao.getTaskById(taskId), null)
+        taskDao.deleteTaskByIdWithOutbox(taskId)
+        _changes.emit(TaskChange.Removed(taskId))
+    }
+    
+    suspend fun deleteAllDeletedTasks() = write {
+        taskDao.deleteAllDeletedTasksWithOutbox()
+        _changes.emit(TaskChange.Invalidated)
+    }
+    
+    // 写入服务器下发的变更，与本地写操作串行；变更条数不定，订阅方统一重新加载。
+    // 分块导入时可以关闭 notify，全部写完后再调用 notifyRemoteChangesApplied 作废日历并通知一次
+    suspend fun applyRemoteChanges(tasks: List<Task>, tombstones: List<TaskTombstone>, notify: Boolean = true) = write {
+        taskDao.applyRemoteChanges(tasks, tombstones)
+        if (notify) {
+            invalidateCompletionCalendar()
+            _changes.emit(TaskChange.Invalidated)
+        }
+    }
+    
+    // 上传的新建任务被服务器接受后记录服务器 id；合并掉先到的服务器副本时按服务器变更处理
+    suspend fun assignRemoteId(taskId: Int, remoteId: Int) = write {
+        if (taskDao.assignRemoteId(taskId, remoteId)) {
+            invalidateCompletionCalendar()
+            _changes.emit(TaskChange.Invalidated)
+        }
+    }
+    
+    // 已完成页的远端分页在 block 中用自己的事务合并一页并更新续传游标。经过写锁与其它写入串行，
+    // 保存完成状态时不会把写入前的日历与写入后的版本配对；合并了任务时与增量同步一样作废日历并通知订阅方
+    suspend fun <T> writeRemotePage(mergesTasks: Boolean, block: suspend () -> T): T = write {
+        val result = block()
+        if (mergesTasks) {
+            invalidateCompletionCalendar()
+            _changes.emit(TaskChange.Invalidated)
+        }
+        result
+    }
+    
+    suspend fun notifyRemoteChangesApplied() {
+        invalidateCompletionCalendar()
+        _changes.emit(TaskChange.Invalidated)
+    }
+    
+    private suspend fun <T> read(block: suspend () -> T): T {
+        return withContext(dispatchers.read) { block() }
+    }
+    
+    // 每次经过仓库的写入完成后加一，写入返回前已经更新。依赖任务数据的内存缓存记下构建时的值，
+    // 读取时与当前值比较即可判断是否过期，不必等待变更事件
+    fun writeGeneration(): Int = statsGeneration.get()
+    
+    // 实际发往数据库的列表查询次数，用于验证重复刷新被合并
+    fun executedQueryCount(): Int = executedQueries.get()
+    
+    // 相同 key 的查询在途时直接等待它的结果，不再发起新查询。
+    // 查询运行在应用级作用域中，某个等待方被取消不会影响其他等待方。
+    private suspend fun singleFlight(key: String, block: suspend () -> List<Task>): List<Task> {
+        val deferred = synchronized(inFlightReads) {
+            inFlightReads[key] ?: applicationScope.async(dispatchers.read) {
+                executedQueries.incrementAndGet()
+                block()
+            }.also { started ->
+                inFlightReads[key] = started
+                started.invokeOnCompletion {
+                    synchronized(inFlightReads) {
+                        if (inFlightReads[key] === started) {
+                            inFlightReads.remove(key)
+                        }
+                    }
+                }
+            }
+        }
+        return deferred.await()
+    }
+    
+    // 写操作在应用级作用域中串行执行：调用方（如页面协程）被取消时只是不再等待结果，写入仍会完成
+    private suspend fun <T> write(block: suspend () -> T): T {
+        return applicationScope.async(dispatchers.write) {
+            writeMutex.withLock {
+                val result = block()
+                // 写入前发起的查询可能读到旧数据，之后的读取不再复用它们
+                synchronized(inFlightReads) { inFlightReads.clear() }
+                statsGeneration.incrementAndGet()
+                statsCache.clear()
+                result
+            }
+        }.await()
     }
     
-    suspend fun deleteTaskById(taskId: Int) {
-        taskDao.deleteTaskById(taskId)
+    // 按 id 更新的 SQL 不返回实体，写入后读回最新状态再通知订阅方
+    private suspend fun emitCurrentState(taskId: Int, previous: Task?) {
+        val task = taskDao.getTaskById(taskId)
+        completionCalendar.onTaskChanged(previous, task)
+        _changes.emit(if (task != null) TaskChange.Upserted(task) else TaskChange.Removed(taskId))
     }
     
-    suspend fun deleteAllDeletedTasks() {
-        taskDao.deleteAllDeletedTasks()
+    companion object {
+        const val COMPLETED_PAGE_SIZE = 30
+        private const val CALENDAR_LOAD_ATTEMPTS = 3
     }
 }
@@ -0,0 +1,90 @@
+package com.example.todo.data
+
+import java.time.DayOfWeek
+import java.time.LocalDate
+import java.time.temporal.ChronoUnit
+import java.time.temporal.TemporalAdjusters
+
+// 统计页可选的时间范围；days 为 null 表示全部时间
+enum class StatsRange(val days: Int?) {
+    WEEK(7),
+    MONTH(30),
+    QUARTER(90),
+    YEAR(365),
+    ALL(null)
+}
+
+// 柱状图每根柱覆盖的时间：天、周（周一开始）或月
+enum class BucketSize {
+    DAY,
+    WEEK,
+    MONTH;
+
+    // date 所在分组的第一天
+    fun startOf(date: LocalDate): LocalDate = when (this) {
+        DAY -> date
+        WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+        MONTH -> date.withDayOfMonth(1)
+    }
+
+    fun next(start: LocalDate): LocalDate = when (this) {
+        DAY -> start.plusDays(1)
+        WEEK -> start.plusWeeks(1)
+        MONTH -> start.plusMonths(1)
+    }
+
+    companion object {
+        // 按跨度选择粒度，柱数保持在几十根以内
+        fun forSpan(days: Long): BucketSize = when {
+            days <= 31 -> DAY
+            days <= 120 -> WEEK
+            else -> MONTH
+        }
+    }
+}
+
+// 汇总查询的一行：bucket 为分组第一天（yyyy-MM-dd）
+data class DateCount(
+    val bucket: String,
+    val count: Int
+)
+
+// 按 epoch day 汇总的一行
+data class DayCount(
+    val epochDay: Long,
+    val count: Int
+)
+
+data class TaskCounts(
+    val total: Int,
+    val completed: Int
+)
+
+// 一个时间范围内每个分组新建的任务数，starts 与 counts 一一对应，没有任务的分组计 0
+data class StatsSeries(
+    val range: StatsRange,
+    val bucketSize: BucketSize,
+    val starts: List<LocalDate>,
+    val counts: List<Int>
+) {
+    companion object {
+        // 把汇总查询的结果展开为连续的分组，first 为范围内第一天
+        fun build(range: StatsRange, bucketSize: BucketSize, first: LocalDate, today: LocalDate, rows: List<DateCount>): StatsSeries {
+            val byBucket = HashMap<LocalDate, Int>(rows.size * 2)
+            rows.forEach { row ->
+                byBucket[LocalDate.parse(row.bucket)] = row.count
+            }
+            val starts = ArrayList<LocalDate>()
+            val counts = ArrayList<Int>()
+            var start = bucketSize.startOf(first)
+            while (!start.isAfter(today)) {
+                starts.add(start)
+                counts.add(byBucket[start] ?: 0)
+                start = bucketSize.next(start)
+            }
+            return StatsSeries(range, bucketSize, starts, counts)
+        }
+
+        fun spanDays(first: LocalDate, today: LocalDate): Long = ChronoUnit.DAYS.between(first, today) + 1
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.todo.data
+
+// 服务器端删除的任务：taskId 为服务器 id，deletedChangedAt 为删除时间，与本地的删除/恢复时间逐字段比较
+data class TaskTombstone(
+    val taskId: Int = 0,
+    val deletedChangedAt: Long = 0
+)
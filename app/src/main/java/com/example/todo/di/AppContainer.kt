@@ -1,17 +1,274 @@
-
 package com.example.todo.di
 
 import android.content.Context
+import androidx.paging.PagingData
+import androidx.paging.cachedIn
+import androidx.work.WorkManager
+import com.example.todo.data.CompletionStateStore
+import com.example.todo.data.NotificationService
+import com.example.todo.data.PendingTasksSnapshot
+import com.example.todo.data.Task
+import com.example.todo.data.TaskChange
 import com.example.todo.data.TaskDatabase
 import com.example.todo.data.TaskRepository
+import com.example.todo.network.NetworkMetrics
+import com.example.todo.network.RetrofitClient
+import com.example.todo.network.TaskApiService
+import com.example.todo.reminder.AlarmManagerReminderAlarm
+import com.example.todo.reminder.CoalescingNotifier
+import com.example.todo.reminder.ReminderScheduler
+import com.example.todo.stats.CycleTimeStats
+import com.example.todo.stats.TaskAnalytics
+import com.example.todo.sync.AdaptiveSyncPolicy
+import com.example.todo.sync.CompletedTasksRemoteMediator
+import com.example.todo.sync.OutboxBatcher
+import com.example.todo.sync.OutboxSender
+import com.example.todo.sync.SyncScheduler
+import com.example.todo.sync.SyncStateStore
+import com.example.todo.sync.TaskChangeFeed
+import com.example.todo.sync.TaskStreamImporter
+import com.example.todo.sync.TaskSyncEngine
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.conflate
+import kotlinx.coroutines.flow.onSubscription
+import kotlinx.coroutines.launch
+import okhttp3.OkHttpClient
+import java.io.File
+import java.util.concurrent.TimeUnit
 
 interface AppContainer {
+    // 与进程同生命周期的协程作用域，页面切换不会取消其中的任务
+    val applicationScope: CoroutineScope
+    val dispatchers: AppDispatchers
     val taskRepository: TaskRepository
+    val taskApiService: TaskApiService
+    // 进程内网络指标，调试页和 dump() 读取
+    val networkMetrics: NetworkMetrics
+    val notificationService: NotificationService
+    val reminderScheduler: ReminderScheduler
+    val syncEngine: TaskSyncEngine
+    val taskChangeFeed: TaskChangeFeed
+    val syncScheduler: SyncScheduler
+    val outboxSender: OutboxSender
+    val outboxBatcher: OutboxBatcher
+    val taskStreamImporter: TaskStreamImporter
+    val cycleTimeStats: CycleTimeStats
+    // 基于列式快照的内存统计
+    val taskAnalytics: TaskAnalytics
+    // 已完成页的分页数据，缓存在应用级作用域中，切换页面回来不必重新加载
+    val completedTasks: Flow<PagingData<Task>>
+    
+    // 在后台线程打开数据库并预热首屏查询
+    fun prewarm()
 }
 
 class AppDataContainer(private val context: Context) : AppContainer {
+    override val applicationScope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    
+    override val dispatchers: AppDispatchers = AppDispatchers()
+    
+    // 构建 Room 需要反射加载生成的实现类，不能在主线程进行：需要数据库的组件只拿到这个 Lazy，
+    // 第一次查询时在后台线程解析，prewarm 通常已经提前完成
+    private val databaseLazy: Lazy<TaskDatabase> = lazy {
+        TaskDatabase.getDatabase(context)
+    }
+    
+    private val database: TaskDatabase by databaseLazy
+    
+    private val pendingSnapshot = PendingTasksSnapshot(File(context.filesDir, "pending_snapshot.bin"))
+    
+    private val completionStore = CompletionStateStore(File(context.filesDir, "completion_state.bin"))
+    
     override val taskRepository: TaskRepository by lazy {
-        val database = TaskDatabase.getDatabase(context)
-        TaskRepository(database.taskDao())
+        TaskRepository(lazy { database.taskDao() }, applicationScope, dispatchers, pendingSnapshot, completionStore)
+    }
+    
+    override val networkMetrics: NetworkMetrics = NetworkMetrics()
+    
+    private val httpClient: OkHttpClient by lazy {
+        RetrofitClient.createHttpClient(context.cacheDir, networkMetrics)
+    }
+    
+    override val taskApiService: TaskApiService by lazy {
+        RetrofitClient.createApiService(httpClient)
+    }
+    
+    override val notificationService: NotificationService by lazy {
+        NotificationService(context)
+    }
+    
+    override val reminderScheduler: ReminderScheduler by lazy {
+        val notifier = CoalescingNotifier(
+            scope = applicationScope,
+            post = notificationService::sendTaskReminders
+        )
+        ReminderScheduler(
+            taskRepository = taskRepository,
+            alarm = AlarmManagerReminderAlarm(context),
+            onReminder = notifier::submit
+        )
+    }
+    
+    private val syncState: SyncStateStore by lazy {
+        SyncStateStore(context)
+    }
+    
+    override val syncEngine: TaskSyncEngine by lazy {
+        TaskSyncEngine(
+            api = taskApiService,
+            taskRepository = taskRepository,
+            syncState = syncState,
+            importer = taskStreamImporter
+        )
+    }
+    
+    override val syncScheduler: SyncScheduler by lazy {
+        SyncScheduler(
+            workManager = WorkManager.getInstance(context),
+            policy = AdaptiveSyncPolicy(),
+            syncState = syncState,
+            // 先上传 outbox：离线时写入或进程被杀时留下的记录在这里补传，同步任务要求有网络，联网后也会执行
+            sync = {
+                outboxBatcher.flush()
+                syncEngine.sync()
+            }
+        )
+    }
+    
+    override val taskChangeFeed: TaskChangeFeed by lazy {
+        TaskChangeFeed(
+            // 与 REST 共用连接池；定时 ping 以便及时发现断开的长连接。
+            // 去掉指标拦截器：它们会包装 WebSocket 升级响应，且一条长连接的耗时对接口统计没有意义
+            client = httpClient.newBuilder()
+                .apply {
+                    interceptors().remove(networkMetrics.callInterceptor)
+                    networkInterceptors().remove(networkMetrics.networkInterceptor)
+                }
+                .pingInterval(30, TimeUnit.SECONDS)
+                .build(),
+            url = RetrofitClient.CHANGE_FEED_URL,
+            gson = RetrofitClient.gson,
+            taskRepository = taskRepository,
+            syncState = syncState
+        )
+    }
+    
+    override val outboxSender: OutboxSender by lazy {
+        OutboxSender(
+            api = taskApiService,
+            outboxDao = database.outboxDao(),
+            taskRepository = taskRepository
+        )
+    }
+    
+    override val outboxBatcher: OutboxBatcher by lazy {
+        OutboxBatcher(scope = applicationScope, sender = outboxSender)
+    }
+    
+    override val taskStreamImporter: TaskStreamImporter by lazy {
+        TaskStreamImporter(
+            api = taskApiService,
+            taskRepository = taskRepository,
+            gson = RetrofitClient.gson,
+            dispatchers = dispatchers
+        )
+    }
+    
+    override val cycleTimeStats: CycleTimeStats by lazy {
+        CycleTimeStats(databaseLazy)
+    }
+    
+    override val taskAnalytics: TaskAnalytics by lazy {
+        TaskAnalytics(databaseLazy, taskRepository, dispatchers)
+    }
+    
+    override val completedTasks: Flow<PagingData<Task>> by lazy {
+        taskRepository.getCompletedTasksPaged(
+            CompletedTasksRemoteMediator(
+                api = taskApiService,
+                databaseProvider = databaseLazy,
+                taskRepository = taskRepository
+            )
+        ).cachedIn(applicationScope)
+    }
+    
+    override fun prewarm() {
+        // 快照读取与数据库打开并行，首帧通常不需要等待
+        applicationScope.launch(dispatchers.read) {
+            pendingSnapshot.read()
+        }
+        applicationScope.launch(dispatchers.read) {
+            try {
+                // 触发建库、校验 schema 和执行迁移，首屏查询不再承担这部分耗时
+                database.openHelper.writableDatabase
+                StartupTimings.mark(StartupTimings.DATABASE_OPENED)
+                // 执行一次首屏查询，编译语句并加载数据页；首屏同时发起的查询会复用这次结果
+                val pendingTasks = taskRepository.getPendingTasks()
+                StartupTimings.mark(StartupTimings.DATABASE_PREWARMED)
+                // 用实时数据校正上次保存的快照
+                taskRepository.savePendingSnapshot(pendingTasks)
+            } catch (e: Exception) {
+                // 预热失败不影响正常使用，首屏查询会再次尝试打开数据库
+            }
+        }
+        // 每次任务变更后刷新启动快照；变更密集时合并为一次
+        applicationScope.launch(dispatchers.read) {
+            taskRepository.changes.conflate().collect {
+                try {
+                    taskRepository.refreshPendingSnapshot()
+                } catch (e: Exception) {
+                    // 快照只是加速首屏，写入失败时忽略
+                }
+            }
+        }
+        // 每日完成数和连续天数随写入增量更新，变更后保存，重启时不必重新汇总
+        applicationScope.launch(dispatchers.read) {
+            taskRepository.changes.conflate().collect {
+                try {
+                    taskRepository.saveCompletionState()
+                } catch (e: Exception) {
+                    // 保存失败时下次启动重新汇总
+                }
+            }
+        }
+        // 本地变更按数量和时间分批上传；Invalidated 来自服务器数据写入，不需要上传。
+        // 启动时先上传一次上次进程留下的记录
+        applicationScope.launch {
+            launch { outboxBatcher.flush() }
+            taskRepository.changes.collect { change ->
+                if (change !is TaskChange.Invalidated) {
+                    outboxBatcher.onLocalChange()
+                }
+            }
+        }
+        // 调度任务提醒，并随任务变更增量重挂闹钟；先订阅再加载，加载期间的变更不会丢失
+        applicationScope.launch(dispatchers.read) {
+            val scheduler = reminderScheduler
+            taskRepository.changes.onSubscription {
+                try {
+                    scheduler.start()
+                } catch (e: Exception) {
+                    // 加载失败时等下一次变更或闹钟再调度
+                }
+            }.collect { change ->
+                try {
+                    scheduler.onChange(change)
+                } catch (e: Exception) {
+                    // 单个变更调度失败不影响后续变更
+                }
+            }
+        }
+        // 按本地修改频率调整拉取间隔；Invalidated 来自服务器数据写入，不计入本地修改
+        applicationScope.launch {
+            syncScheduler.start()
+            taskRepository.changes.collect { change ->
+                if (change !is TaskChange.Invalidated) {
+                    syncScheduler.onLocalChange()
+                }
+            }
+        }
     }
 }
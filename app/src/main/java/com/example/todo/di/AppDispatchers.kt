@@ -0,0 +1,15 @@
+package com.example.todo.di
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.asCoroutineDispatcher
+import java.util.concurrent.Executors
+
+// 读操作并行执行；写操作固定在单个线程上按提交顺序执行；内存统计等 CPU 密集的计算按核数并行
+class AppDispatchers(
+    val read: CoroutineDispatcher = Dispatchers.IO,
+    val compute: CoroutineDispatcher = Dispatchers.Default,
+    val write: CoroutineDispatcher = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "todo-write")
+    }.asCoroutineDispatcher()
+)
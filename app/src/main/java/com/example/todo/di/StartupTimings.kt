@@ -0,0 +1,34 @@
+package com.example.todo.di
+
+import android.os.Process
+import android.os.SystemClock
+import android.util.Log
+
+// 记录冷启动各阶段相对进程启动的耗时（毫秒），用于对比启动优化前后的效果
+object StartupTimings {
+    const val APPLICATION_CREATED = "application_created"
+    const val DATABASE_OPENED = "database_opened"
+    const val DATABASE_PREWARMED = "database_prewarmed"
+    const val FIRST_SNAPSHOT_LIST = "first_snapshot_list"
+    const val FIRST_TASK_LIST = "first_task_list"
+    
+    private const val TAG = "StartupTimings"
+    
+    private val marks = LinkedHashMap<String, Long>()
+    
+    // 同名阶段只记录第一次
+    fun mark(stage: String) {
+        val elapsed = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()
+        synchronized(marks) {
+            if (marks.containsKey(stage)) return
+            marks[stage] = elapsed
+        }
+        Log.i(TAG, "$stage: ${elapsed}ms")
+    }
+    
+    fun snapshot(): Map<String, Long> {
+        synchronized(marks) {
+            return LinkedHashMap(marks)
+        }
+    }
+}
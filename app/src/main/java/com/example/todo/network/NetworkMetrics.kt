@@ -0,0 +1,245 @@
+package com.example.todo.network
+
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.ResponseBody
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okio.Buffer
+import okio.ForwardingSource
+import okio.buffer
+import retrofit2.Invocation
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * 进程内的网络指标：按接口统计调用次数、耗时分布、收发字节数、重试次数和错误类型。
+ *
+ * 接口名优先取 Retrofit 方法名（如 getTaskChanges），非 Retrofit 请求按“方法 + 路径”归类，
+ * 路径中的数字段替换为 {id}。数据只保存在内存中，通过 [snapshot] / [dump] 读取，[reset] 清零后可重新测量一段场景。
+ */
+class NetworkMetrics {
+    class EndpointSnapshot(
+        val endpoint: String,
+        val calls: Long,
+        val failures: Long,
+        val cacheHits: Long,
+        val retries: Long,
+        val requestBytes: Long,
+        val responseBytes: Long,
+        // 与 LATENCY_BUCKETS_MILLIS 对应，最后一个桶统计超过最大边界的调用
+        val latencyBuckets: LongArray,
+        val totalLatencyMillis: Long,
+        val maxLatencyMillis: Long,
+        val errors: Map<String, Long>
+    ) {
+        val meanLatencyMillis: Long
+            get() = if (calls == 0L) 0 else totalLatencyMillis / calls
+
+        // 由直方图估算分位数，返回所在桶的上界；落在最后一个桶时返回观测到的最大值
+        fun latencyPercentileMillis(percentile: Double): Long {
+            val total = latencyBuckets.sum()
+            if (total == 0L) return 0
+            val target = Math.ceil(total * percentile).toLong().coerceAtLeast(1)
+            var seen = 0L
+            latencyBuckets.forEachIndexed { index, count ->
+                seen += count
+                if (seen >= target) {
+                    return if (index < LATENCY_BUCKETS_MILLIS.size) LATENCY_BUCKETS_MILLIS[index] else maxLatencyMillis
+                }
+            }
+            return maxLatencyMillis
+        }
+    }
+
+    private class EndpointStats {
+        var calls = 0L
+        var failures = 0L
+        var cacheHits = 0L
+        var retries = 0L
+        var requestBytes = 0L
+        var responseBytes = 0L
+        val latencyBuckets = LongArray(LATENCY_BUCKETS_MILLIS.size + 1)
+        var totalLatencyMillis = 0L
+        var maxLatencyMillis = 0L
+        val errors = HashMap<String, Long>()
+    }
+
+    // 一次应用层调用的网络尝试次数，通过请求 tag 在应用拦截器和网络拦截器之间传递
+    private class CallAttempts {
+        @Volatile
+        var count = 0
+    }
+
+    private val endpoints = ConcurrentHashMap<String, EndpointStats>()
+
+    /**
+     * 应用拦截器：每次 Retrofit 调用记录一次，耗时从发出请求到收到响应头，
+     * 包含缓存查找、重定向和 OkHttp 的自动重试。
+     */
+    val callInterceptor = Interceptor { chain ->
+        val attempts = CallAttempts()
+        val request = chain.request().newBuilder()
+            .tag(CallAttempts::class.java, attempts)
+            .build()
+        val endpoint = endpointOf(request)
+        val start = System.nanoTime()
+        val response = try {
+            chain.proceed(request)
+        } catch (e: IOException) {
+            recordCall(endpoint, start, attempts.count, cacheHit = false, error = e.javaClass.simpleName)
+            throw e
+        }
+        val cacheHit = response.cacheResponse != null && response.networkResponse == null
+        val error = if (response.isSuccessful || response.code == 304) null else "HTTP ${response.code / 100}xx"
+        recordCall(endpoint, start, attempts.count, cacheHit, error)
+        response
+    }
+
+    /**
+     * 网络拦截器：每次真正发到服务器的请求执行一次（缓存命中时不执行），
+     * 统计线上收发的字节数；响应体按实际读取的字节计数，流式下载读完或关闭时记入。
+     */
+    val networkInterceptor = Interceptor { chain ->
+        val request = chain.request()
+        request.tag(CallAttempts::class.java)?.let { it.count++ }
+        val endpoint = endpointOf(request)
+        val requestBytes = request.body?.contentLength()?.coerceAtLeast(0) ?: 0
+        add(endpoint) { it.requestBytes += requestBytes }
+        val response = chain.proceed(request)
+        val body = response.body ?: return@Interceptor response
+        response.newBuilder()
+            .body(countingBody(endpoint, body))
+            .build()
+    }
+
+    fun snapshot(): List<EndpointSnapshot> {
+        return endpoints.entries
+            .map { (endpoint, stats) ->
+                synchronized(stats) {
+                    EndpointSnapshot(
+                        endpoint = endpoint,
+                        calls = stats.calls,
+                        failures = stats.failures,
+                        cacheHits = stats.cacheHits,
+                        retries = stats.retries,
+                        requestBytes = stats.requestBytes,
+                        responseBytes = stats.responseBytes,
+                        latencyBuckets = stats.latencyBuckets.copyOf(),
+                        totalLatencyMillis = stats.totalLatencyMillis,
+                        maxLatencyMillis = stats.maxLatencyMillis,
+                        errors = HashMap(stats.errors)
+                    )
+                }
+            }
+            .sortedBy { it.endpoint }
+    }
+
+    // 纯文本格式，便于日志输出或在调试页复制后与另一次测量对比
+    fun dump(): String {
+        val builder = StringBuilder()
+        snapshot().forEach { stats ->
+            builder.append(stats.endpoint).append('\n')
+            builder.append("  calls=").append(stats.calls)
+                .append(" failures=").append(stats.failures)
+                .append(" cacheHits=").append(stats.cacheHits)
+                .append(" retries=").append(stats.retries).append('\n')
+            builder.append("  bytes sent=").append(stats.requestBytes)
+                .append(" received=").append(stats.responseBytes).append('\n')
+            builder.append("  latency mean=").append(stats.meanLatencyMillis)
+                .append("ms p50=").append(stats.latencyPercentileMillis(0.50))
+                .append("ms p90=").append(stats.latencyPercentileMillis(0.90))
+                .append("ms p99=").append(stats.latencyPercentileMillis(0.99))
+                .append("ms max=").append(stats.maxLatencyMillis).append("ms\n")
+            builder.append("  histogram")
+            stats.latencyBuckets.forEachIndexed { index, count ->
+                val label = if (index < LATENCY_BUCKETS_MILLIS.size) "<=${LATENCY_BUCKETS_MILLIS[index]}" else ">${LATENCY_BUCKETS_MILLIS.last()}"
+                builder.append(' ').append(label).append(':').append(count)
+            }
+            builder.append('\n')
+            if (stats.errors.isNotEmpty()) {
+                builder.append("  errors")
+                stats.errors.entries.sortedByDescending { it.value }.forEach { (name, count) ->
+                    builder.append(' ').append(name).append(':').append(count)
+                }
+                builder.append('\n')
+            }
+        }
+        return builder.toString()
+    }
+
+    fun reset() {
+        endpoints.clear()
+    }
+
+    private fun recordCall(endpoint: String, startNanos: Long, attempts: Int, cacheHit: Boolean, error: String?) {
+        val millis = (System.nanoTime() - startNanos) / 1_000_000
+        add(endpoint) { stats ->
+            stats.calls++
+            if (cacheHit) stats.cacheHits++
+            if (attempts > 1) stats.retries += attempts - 1
+            stats.latencyBuckets[bucketOf(millis)]++
+            stats.totalLatencyMillis += millis
+            if (millis > stats.maxLatencyMillis) stats.maxLatencyMillis = millis
+            if (error != null) {
+                stats.failures++
+                stats.errors[error] = (stats.errors[error] ?: 0) + 1
+            }
+        }
+    }
+
+    private inline fun add(endpoint: String, update: (EndpointStats) -> Unit) {
+        val stats = endpoints.getOrPut(endpoint) { EndpointStats() }
+        synchronized(stats) { update(stats) }
+    }
+
+    private fun countingBody(endpoint: String, body: ResponseBody): ResponseBody {
+        val source = object : ForwardingSource(body.source()) {
+            private var recorded = 0L
+
+            override fun read(sink: Buffer, byteCount: Long): Long {
+                val read = super.read(sink, byteCount)
+                if (read > 0) {
+                    recorded += read
+                    if (recorded >= FLUSH_BYTES) flushRecorded()
+                }
+                return read
+            }
+
+            override fun close() {
+                flushRecorded()
+                super.close()
+            }
+
+            // 大响应按块记入，流式下载进行中也能看到累计字节
+            private fun flushRecorded() {
+                val bytes = recorded
+                recorded = 0
+                if (bytes > 0) add(endpoint) { it.responseBytes += bytes }
+            }
+        }
+        return source.buffer().asResponseBody(body.contentType(), body.contentLength())
+    }
+
+    companion object {
+        // 耗时直方图的桶上界（毫秒）
+        val LATENCY_BUCKETS_MILLIS = longArrayOf(10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000)
+
+        private const val FLUSH_BYTES = 64L * 1024
+        private val NUMERIC_SEGMENT = Regex("/\\d+(?=/|$)")
+
+        fun endpointOf(request: Request): String {
+            val invocation = request.tag(Invocation::class.java)
+            if (invocation != null) {
+                return invocation.method().name
+            }
+            return request.method + " " + request.url.encodedPath.replace(NUMERIC_SEGMENT, "/{id}")
+        }
+
+        private fun bucketOf(millis: Long): Int {
+            LATENCY_BUCKETS_MILLIS.forEachIndexed { index, bound ->
+                if (millis <= bound) return index
+            }
+            return LATENCY_BUCKETS_MILLIS.size
+        }
+    }
+}
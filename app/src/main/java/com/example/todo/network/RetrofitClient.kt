@@ -1,16 +1,65 @@
-
 package com.example.todo.network
 
+import com.example.todo.data.Task
+import com.google.gson.Gson
+import com.google.gson.GsonBuilder
+import okhttp3.Cache
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
 import retrofit2.Retrofit
 import retrofit2.converter.gson.GsonConverterFactory
+import java.io.File
+import java.time.LocalDateTime
 
 object RetrofitClient {
     private const val BASE_URL = "https://api.example.com"
+    private const val HTTP_CACHE_SIZE = 10L * 1024 * 1024
+    
+    // 变更推送的 WebSocket 地址，OkHttp 会把 https 转换为 wss
+    const val CHANGE_FEED_URL = "$BASE_URL/tasks/feed"
+    
+    // Retrofit 转换器和流式解析共用同一个 Gson 配置；Task 和时间使用手写适配器，不走反射
+    val gson: Gson by lazy {
+        GsonBuilder()
+            .registerTypeAdapter(Task::class.java, TaskTypeAdapter().nullSafe())
+            .registerTypeAdapter(LocalDateTime::class.java, LocalDateTimeTypeAdapter().nullSafe())
+            .create()
+    }
+    
+    // 服务器只给了 ETag/Last-Modified 而没有缓存策略时，按 no-cache 存入缓存：
+    // 每次使用前都发条件请求（If-None-Match / If-Modified-Since），未变化时只返回 304
+    private val revalidateInterceptor = Interceptor { chain ->
+        val response = chain.proceed(chain.request())
+        val validatable = response.header("ETag") != null || response.header("Last-Modified") != null
+        if (chain.request().method == "GET" && validatable && response.header("Cache-Control") == null) {
+            response.newBuilder()
+                .header("Cache-Control", "no-cache")
+                .build()
+        } else {
+            response
+        }
+    }
+    
+    // OkHttp 自动发送 Accept-Encoding: gzip 并透明解压，这里不要手动设置该请求头
+    // 传入 metrics 时记录每个接口的耗时、字节数、重试和错误；网络拦截器位于透明解压之前，统计的是压缩后的线上字节
+    fun createHttpClient(cacheDir: File, metrics: NetworkMetrics? = null): OkHttpClient {
+        val builder = OkHttpClient.Builder()
+            .cache(Cache(File(cacheDir, "http_cache"), HTTP_CACHE_SIZE))
+        if (metrics != null) {
+            builder.addInterceptor(metrics.callInterceptor)
+            builder.addNetworkInterceptor(metrics.networkInterceptor)
+        }
+        return builder
+            .addNetworkInterceptor(revalidateInterceptor)
+            .build()
+    }
     
-    val apiService: TaskApiService by lazy {
-        Retrofit.Builder()
-            .baseUrl(BASE_URL)
-            .addConverterFactory(GsonConverterFactory.create())
+    // baseUrl 只在测试中替换为本地的模拟服务器
+    fun createApiService(client: OkHttpClient, baseUrl: String = BASE_URL): TaskApiService {
+        return Retrofit.Builder()
+            .baseUrl(baseUrl)
+            .client(client)
+            .addConverterFactory(GsonConverterFactory.create(gson))
             .build()
             .create(TaskApiService::class.java)
     }
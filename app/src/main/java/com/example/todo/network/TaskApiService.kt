@@ -2,23 +2,56 @@
 package com.example.todo.network
 
 import com.example.todo.data.Task
+import okhttp3.ResponseBody
+import retrofit2.Response
 import retrofit2.http.Body
 import retrofit2.http.GET
+import retrofit2.http.PATCH
 import retrofit2.http.POST
 import retrofit2.http.PUT
 import retrofit2.http.DELETE
 import retrofit2.http.Path
+import retrofit2.http.Query
+import retrofit2.http.Streaming
 
 interface TaskApiService {
     @GET("/tasks")
     suspend fun getAllTasks(): List<Task>
     
+    // 与 getAllTasks 相同的数据，但不经过转换器，由调用方边读边解析；
+    // 响应头 X-Sync-Watermark 是生成这份列表时的变更水位，之后的变更从它开始增量拉取
+    @Streaming
+    @GET("/tasks")
+    suspend fun streamAllTasks(): Response<ResponseBody>
+    
+    // 已完成任务按 createdAt 倒序分页，cursor 为空时返回第一页
+    @GET("/tasks/completed")
+    suspend fun getCompletedTasksPage(
+        @Query("cursor") cursor: String?,
+        @Query("limit") limit: Int
+    ): TaskPageResponse
+    
+    // 返回 updatedAt 晚于水位 since 的变更，since 为空时从头开始
+    @GET("/tasks/changes")
+    suspend fun getTaskChanges(
+        @Query("since") since: String?,
+        @Query("limit") limit: Int
+    ): TaskChangesResponse
+    
     @POST("/tasks")
     suspend fun createTask(@Body task: Task): Task
     
     @PUT("/tasks/{id}")
     suspend fun updateTask(@Path("id") id: Int, @Body task: Task): Task
     
+    // 只提交改动的字段，服务器逐字段合并后返回合并结果
+    @PATCH("/tasks/{id}")
+    suspend fun patchTask(@Path("id") id: Int, @Body patch: TaskPatch): Task
+    
     @DELETE("/tasks/{id}")
     suspend fun deleteTask(@Path("id") id: Int)
+    
+    // 一次请求提交多项变更，按项返回结果
+    @POST("/tasks/batch")
+    suspend fun applyBatch(@Body request: TaskBatchRequest): TaskBatchResponse
 }
@@ -0,0 +1,36 @@
+package com.example.todo.network
+
+import com.example.todo.data.OutboxOp
+import com.example.todo.data.Task
+
+// 批量上传中的一项：CREATE 携带完整的 task，UPDATE 只携带改动字段的 patch，DELETE 两者都不带。
+// taskId 为本地 id，只用来对应结果；UPDATE 和 DELETE 的目标由 remoteId 指定
+data class TaskMutation(
+    val op: OutboxOp,
+    val taskId: Int,
+    val remoteId: Int? = null,
+    val task: Task? = null,
+    val patch: TaskPatch? = null
+)
+
+data class TaskBatchRequest(
+    val mutations: List<TaskMutation>
+)
+
+// 每一项独立返回结果，taskId 与请求中的本地 id 相同；retryable 为 false 的失败重试也不会成功（如数据校验失败）。
+// CREATE 成功时 remoteId 为服务器分配的 id。
+// Gson 不经过构造函数创建对象，Kotlin 默认值不生效：响应中缺少 retryable 时为 null，按可重试处理
+data class TaskMutationResult(
+    val taskId: Int,
+    val success: Boolean,
+    val retryable: Boolean? = null,
+    val error: String? = null,
+    val remoteId: Int? = null
+) {
+    val isRetryable: Boolean
+        get() = retryable != false
+}
+
+data class TaskBatchResponse(
+    val results: List<TaskMutationResult> = emptyList()
+)
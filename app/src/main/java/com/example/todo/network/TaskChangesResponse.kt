@@ -0,0 +1,14 @@
+package com.example.todo.network
+
+import com.example.todo.data.Task
+import com.example.todo.data.TaskTombstone
+
+// 增量同步的一页结果：since 之后变更的任务、被服务器删除的任务（服务器 id 与删除时间），以及下一页使用的水位；
+// nextSyncHintSeconds 为服务器建议的下次同步间隔，没有建议时为 null
+data class TaskChangesResponse(
+    val tasks: List<Task> = emptyList(),
+    val deleted: List<TaskTombstone> = emptyList(),
+    val watermark: String? = null,
+    val hasMore: Boolean = false,
+    val nextSyncHintSeconds: Long? = null
+)
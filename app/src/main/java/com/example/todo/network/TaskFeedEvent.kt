@@ -0,0 +1,28 @@
+package com.example.todo.network
+
+import com.example.todo.data.Task
+import com.example.todo.data.TaskTombstone
+
+// 变更推送的一条消息：seq 在服务器端单调递增；task 为新建或完整的任务，patch 为只含改动字段的修改，
+// 两者都没有时 deletedId 表示被删除的任务，deletedChangedAt 为删除时间。任务 id 均为服务器 id
+data class TaskFeedEvent(
+    val seq: Long = 0,
+    val task: Task? = null,
+    val patch: TaskPatch? = null,
+    val deletedId: Int? = null,
+    val deletedChangedAt: Long = 0
+) {
+    val taskId: Int?
+        get() = task?.remoteId ?: patch?.taskId ?: deletedId
+
+    val tombstone: TaskTombstone?
+        get() = deletedId?.let { TaskTombstone(taskId = it, deletedChangedAt = deletedChangedAt) }
+
+    // 任务缺少服务器 id、patch 缺少 changedAt 的消息无法应用
+    val isWellFormed: Boolean
+        get() = when {
+            task != null -> task.remoteId != null
+            patch != null -> patch.isWellFormed
+            else -> deletedId != null
+        }
+}
@@ -0,0 +1,205 @@
+package com.example.todo.network
+
+import com.example.todo.data.Task
+import com.google.gson.TypeAdapter
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import com.google.gson.stream.JsonWriter
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+
+/**
+ * 固定格式的时间编解码：yyyy-MM-ddTHH:mm:ss，毫秒不为 0 时追加 .SSS。
+ * 按字符位置直接读写数字，不经过 DateTimeFormatter；超出固定格式的值回退到 ISO 解析/格式化。
+ */
+object LocalDateTimeCodec {
+    fun format(value: LocalDateTime): String {
+        val year = value.year
+        val nano = value.nano
+        if (year < 0 || year > 9999 || nano % 1_000_000 != 0) {
+            return value.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+        }
+        val chars = CharArray(if (nano == 0) 19 else 23)
+        writeDigits(chars, 0, year, 4)
+        chars[4] = '-'
+        writeDigits(chars, 5, value.monthValue, 2)
+        chars[7] = '-'
+        writeDigits(chars, 8, value.dayOfMonth, 2)
+        chars[10] = 'T'
+        writeDigits(chars, 11, value.hour, 2)
+        chars[13] = ':'
+        writeDigits(chars, 14, value.minute, 2)
+        chars[16] = ':'
+        writeDigits(chars, 17, value.second, 2)
+        if (nano != 0) {
+            chars[19] = '.'
+            writeDigits(chars, 20, nano / 1_000_000, 3)
+        }
+        return String(chars)
+    }
+
+    fun parse(text: String): LocalDateTime {
+        if ((text.length == 19 || text.length == 23) &&
+            text[4] == '-' && text[7] == '-' && (text[10] == 'T' || text[10] == ' ') &&
+            text[13] == ':' && text[16] == ':' && (text.length == 19 || text[19] == '.')
+        ) {
+            val year = readDigits(text, 0, 4)
+            val month = readDigits(text, 5, 2)
+            val day = readDigits(text, 8, 2)
+            val hour = readDigits(text, 11, 2)
+            val minute = readDigits(text, 14, 2)
+            val second = readDigits(text, 17, 2)
+            val millis = if (text.length == 23) readDigits(text, 20, 3) else 0
+            if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0 && millis >= 0) {
+                return LocalDateTime.of(year, month, day, hour, minute, second, millis * 1_000_000)
+            }
+        }
+        return LocalDateTime.parse(text.replace(' ', 'T'), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+    }
+
+    private fun writeDigits(chars: CharArray, offset: Int, value: Int, width: Int) {
+        var remaining = value
+        for (i in offset + width - 1 downTo offset) {
+            chars[i] = '0' + remaining % 10
+            remaining /= 10
+        }
+    }
+
+    // 含非数字字符时返回 -1
+    private fun readDigits(text: String, offset: Int, width: Int): Int {
+        var value = 0
+        for (i in offset until offset + width) {
+            val digit = text[i] - '0'
+            if (digit < 0 || digit > 9) return -1
+            value = value * 10 + digit
+        }
+        return value
+    }
+}
+
+class LocalDateTimeTypeAdapter : TypeAdapter<LocalDateTime>() {
+    override fun write(out: JsonWriter, value: LocalDateTime?) {
+        if (value == null) {
+            out.nullValue()
+        } else {
+            out.value(LocalDateTimeCodec.format(value))
+        }
+    }
+
+    override fun read(reader: JsonReader): LocalDateTime? {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull()
+            return null
+        }
+        return LocalDateTimeCodec.parse(reader.nextString())
+    }
+}
+
+// 手写的 Task 流式编解码，字段名与反射方式一致，不通过反射访问 data class。
+// 接口中的 id 是服务器 id，对应 Task.remoteId；本地 id 不出现在接口中，解析出的任务 id 为 0
+class TaskTypeAdapter : TypeAdapter<Task>() {
+    override fun write(out: JsonWriter, value: Task?) {
+        if (value == null) {
+            out.nullValue()
+            return
+        }
+        out.beginObject()
+        out.name("id")
+        val remoteId = value.remoteId
+        if (remoteId == null) {
+            out.nullValue()
+        } else {
+            out.value(remoteId.toLong())
+        }
+        out.name("title").value(value.title)
+        out.name("description").value(value.description)
+        out.name("isCompleted").value(value.isCompleted)
+        out.name("isDeleted").value(value.isDeleted)
+        out.name("dueDate")
+        val dueDate = value.dueDate
+        if (dueDate == null) {
+            out.nullValue()
+        } else {
+            out.value(LocalDateTimeCodec.format(dueDate))
+        }
+        out.name("createdAt").value(LocalDateTimeCodec.format(value.createdAt))
+        out.name("updatedAt").value(LocalDateTimeCodec.format(value.updatedAt))
+        out.name("completedAt")
+        val completedAt = value.completedAt
+        if (completedAt == null) {
+            out.nullValue()
+        } else {
+            out.value(LocalDateTimeCodec.format(completedAt))
+        }
+        out.name("titleChangedAt").value(value.titleChangedAt)
+        out.name("descriptionChangedAt").value(value.descriptionChangedAt)
+        out.name("completedChangedAt").value(value.completedChangedAt)
+        out.name("deletedChangedAt").value(value.deletedChangedAt)
+        out.name("dueDateChangedAt").value(value.dueDateChangedAt)
+        out.endObject()
+    }
+
+    override fun read(reader: JsonReader): Task? {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull()
+            return null
+        }
+        var remoteId: Int? = null
+        var title = ""
+        var description = ""
+        var isCompleted = false
+        var isDeleted = false
+        var dueDate: LocalDateTime? = null
+        var createdAt: LocalDateTime? = null
+        var updatedAt: LocalDateTime? = null
+        var completedAt: LocalDateTime? = null
+        var titleChangedAt = 0L
+        var descriptionChangedAt = 0L
+        var completedChangedAt = 0L
+        var deletedChangedAt = 0L
+        var dueDateChangedAt = 0L
+        reader.beginObject()
+        while (reader.hasNext()) {
+            val name = reader.nextName()
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull()
+                continue
+            }
+            when (name) {
+                "id" -> remoteId = reader.nextInt()
+                "title" -> title = reader.nextString()
+                "description" -> description = reader.nextString()
+                "isCompleted" -> isCompleted = reader.nextBoolean()
+                "isDeleted" -> isDeleted = reader.nextBoolean()
+                "dueDate" -> dueDate = LocalDateTimeCodec.parse(reader.nextString())
+                "createdAt" -> createdAt = LocalDateTimeCodec.parse(reader.nextString())
+                "updatedAt" -> updatedAt = LocalDateTimeCodec.parse(reader.nextString())
+                "completedAt" -> completedAt = LocalDateTimeCodec.parse(reader.nextString())
+                "titleChangedAt" -> titleChangedAt = reader.nextLong()
+                "descriptionChangedAt" -> descriptionChangedAt = reader.nextLong()
+                "completedChangedAt" -> completedChangedAt = reader.nextLong()
+                "deletedChangedAt" -> deletedChangedAt = reader.nextLong()
+                "dueDateChangedAt" -> dueDateChangedAt = reader.nextLong()
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        val now = LocalDateTime.now()
+        return Task(
+            remoteId = remoteId,
+            title = title,
+            description = description,
+            isCompleted = isCompleted,
+            isDeleted = isDeleted,
+            dueDate = dueDate,
+            createdAt = createdAt ?: now,
+            updatedAt = updatedAt ?: now,
+            completedAt = completedAt,
+            titleChangedAt = titleChangedAt,
+            descriptionChangedAt = descriptionChangedAt,
+            completedChangedAt = completedChangedAt,
+            deletedChangedAt = deletedChangedAt,
+            dueDateChangedAt = dueDateChangedAt
+        )
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.todo.network
+
+import com.example.todo.data.Task
+
+// 游标分页的一页结果，nextCursor 为空表示已到最后一页
+data class TaskPageResponse(
+    val tasks: List<Task> = emptyList(),
+    val nextCursor: String? = null
+)
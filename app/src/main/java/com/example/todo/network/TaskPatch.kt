@@ -0,0 +1,83 @@
+package com.example.todo.network
+
+import com.example.todo.data.Task
+import com.example.todo.data.TaskField
+import com.example.todo.data.TaskFields
+import java.time.LocalDateTime
+
+/**
+ * 任务的部分更新，只包含改动过的字段。
+ *
+ * changedAt 的键是改动字段的名字，值是该字段的修改时间，服务器据此逐字段合并；
+ * 值字段为 null 时不会序列化，因此 changedAt 中有 dueDate 而 dueDate 缺失表示清除到期时间。
+ * taskId 为服务器 id。
+ */
+data class TaskPatch(
+    val taskId: Int,
+    val changedAt: Map<String, Long>,
+    val title: String? = null,
+    val description: String? = null,
+    val isCompleted: Boolean? = null,
+    val isDeleted: Boolean? = null,
+    val dueDate: LocalDateTime? = null
+) {
+    // Gson 不经过构造函数，消息中缺少 changedAt 时这里是 null
+    @Suppress("SENSELESS_COMPARISON")
+    val isWellFormed: Boolean
+        get() = changedAt != null
+    
+    private fun has(field: TaskField): Boolean = changedAt.containsKey(field.jsonName)
+    
+    // 把 patch 中的字段及其修改时间写到 task 上，其他字段保持不变
+    fun applyTo(task: Task): Task {
+        fun changedAt(field: TaskField) = changedAt[field.jsonName] ?: TaskFields.changedAt(task, field)
+        return task.copy(
+            title = if (has(TaskField.TITLE)) title ?: task.title else task.title,
+            description = if (has(TaskField.DESCRIPTION)) description ?: "" else task.description,
+            isCompleted = if (has(TaskField.COMPLETED)) isCompleted ?: task.isCompleted else task.isCompleted,
+            completedAt = if (has(TaskField.COMPLETED)) {
+                TaskFields.completedAtFor(isCompleted ?: task.isCompleted, null, changedAt(TaskField.COMPLETED))
+            } else {
+                task.completedAt
+            },
+            isDeleted = if (has(TaskField.DELETED)) isDeleted ?: task.isDeleted else task.isDeleted,
+            dueDate = if (has(TaskField.DUE_DATE)) dueDate else task.dueDate,
+            titleChangedAt = changedAt(TaskField.TITLE),
+            descriptionChangedAt = changedAt(TaskField.DESCRIPTION),
+            completedChangedAt = changedAt(TaskField.COMPLETED),
+            deletedChangedAt = changedAt(TaskField.DELETED),
+            dueDateChangedAt = changedAt(TaskField.DUE_DATE)
+        )
+    }
+    
+    // 同一任务先后两个 patch 合并为一个，字段重叠时取 next 的值
+    operator fun plus(next: TaskPatch): TaskPatch {
+        return TaskPatch(
+            taskId = taskId,
+            changedAt = changedAt + next.changedAt,
+            title = if (next.has(TaskField.TITLE)) next.title else title,
+            description = if (next.has(TaskField.DESCRIPTION)) next.description else description,
+            isCompleted = if (next.has(TaskField.COMPLETED)) next.isCompleted else isCompleted,
+            isDeleted = if (next.has(TaskField.DELETED)) next.isDeleted else isDeleted,
+            dueDate = if (next.has(TaskField.DUE_DATE)) next.dueDate else dueDate
+        )
+    }
+    
+    companion object {
+        fun of(remoteId: Int, task: Task, fields: Int): TaskPatch {
+            val changedAt = LinkedHashMap<String, Long>()
+            TaskField.values().forEach { field ->
+                if (field.isIn(fields)) changedAt[field.jsonName] = TaskFields.changedAt(task, field)
+            }
+            return TaskPatch(
+                taskId = remoteId,
+                changedAt = changedAt,
+                title = task.title.takeIf { TaskField.TITLE.isIn(fields) },
+                description = task.description.takeIf { TaskField.DESCRIPTION.isIn(fields) },
+                isCompleted = task.isCompleted.takeIf { TaskField.COMPLETED.isIn(fields) },
+                isDeleted = task.isDeleted.takeIf { TaskField.DELETED.isIn(fields) },
+                dueDate = task.dueDate.takeIf { TaskField.DUE_DATE.isIn(fields) }
+            )
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.todo.reminder
+
+import com.example.todo.data.Task
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+
+/**
+ * 合并短时间内到达的提醒后再统一发布。
+ *
+ * 第一批提醒到达后等待 [coalesceWindowMillis]，期间到达的提醒（按任务 id 去重）合并为一批交给 [post]；
+ * 两次发布之间至少间隔 [minIntervalMillis]，间隔内到达的提醒顺延到下一批。
+ * 计时全部基于协程 delay，测试中可用虚拟时间驱动。
+ */
+class CoalescingNotifier(
+    private val scope: CoroutineScope,
+    private val coalesceWindowMillis: Long = DEFAULT_COALESCE_WINDOW_MILLIS,
+    private val minIntervalMillis: Long = DEFAULT_MIN_INTERVAL_MILLIS,
+    private val post: (List<Task>) -> Unit
+) {
+    private val lock = Any()
+    private val pending = LinkedHashMap<Int, Task>()
+    private var currentBatch = CompletableDeferred<Unit>()
+    private var flushJob: Job? = null
+
+    // 加入待发布队列，返回的 Deferred 在包含这些任务的批次发布后完成
+    fun enqueue(tasks: List<Task>): Deferred<Unit> {
+        synchronized(lock) {
+            tasks.forEach { task -> pending[task.id] = task }
+            val batch = currentBatch
+            if (flushJob == null) {
+                flushJob = scope.launch { flushLoop() }
+            }
+            return batch
+        }
+    }
+
+    // 加入队列并等待发布完成，供广播接收器在 finish 之前等待
+    suspend fun submit(tasks: List<Task>) {
+        if (tasks.isEmpty()) return
+        enqueue(tasks).await()
+    }
+
+    private suspend fun flushLoop() {
+        delay(coalesceWindowMillis)
+        while (true) {
+            val (tasks, batch) = synchronized(lock) {
+                if (pending.isEmpty()) {
+                    flushJob = null
+                    return
+                }
+                val drained = pending.values.toList()
+                pending.clear()
+                val completed = currentBatch
+                currentBatch = CompletableDeferred()
+                drained to completed
+            }
+            try {
+                post(tasks)
+            } catch (e: Exception) {
+                // 发布失败不影响后续批次
+            } finally {
+                batch.complete(Unit)
+            }
+            // 限流：发布后至少间隔 minIntervalMillis 再发布下一批
+            delay(minIntervalMillis)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_COALESCE_WINDOW_MILLIS = 2_000L
+        const val DEFAULT_MIN_INTERVAL_MILLIS = 5_000L
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.todo.reminder
+
+import android.app.AlarmManager
+import android.app.PendingIntent
+import android.content.Context
+import android.content.Intent
+import android.os.Build
+
+// 调度器只依赖这个接口，测试中可替换为记录触发时间的假实现
+interface ReminderAlarm {
+    fun arm(triggerAtMillis: Long)
+    fun cancel()
+}
+
+class AlarmManagerReminderAlarm(private val context: Context) : ReminderAlarm {
+    private val alarmManager = context.getSystemService(Context.ALARM_SERVICE) as AlarmManager
+    
+    override fun arm(triggerAtMillis: Long) {
+        val pendingIntent = reminderIntent(triggerAtMillis)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            // 未授予精确闹钟权限时退化为非精确闹钟
+            alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent)
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent)
+        }
+    }
+    
+    override fun cancel() {
+        alarmManager.cancel(reminderIntent(0L))
+    }
+    
+    // 同一个 requestCode 和 action，重挂时替换之前的闹钟，系统中始终只有一个
+    private fun reminderIntent(triggerAtMillis: Long): PendingIntent {
+        val intent = Intent(context, ReminderReceiver::class.java).apply {
+            action = ReminderReceiver.ACTION_REMINDER
+            putExtra(ReminderReceiver.EXTRA_SCHEDULED_AT, triggerAtMillis)
+        }
+        return PendingIntent.getBroadcast(
+            context,
+            REQUEST_CODE,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+    }
+    
+    companion object {
+        private const val REQUEST_CODE = 1001
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.todo.reminder
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import com.example.todo.TodoApplication
+import kotlinx.coroutines.launch
+
+class ReminderReceiver : BroadcastReceiver() {
+    override fun onReceive(context: Context, intent: Intent) {
+        val pendingResult = goAsync()
+        val container = (context.applicationContext as TodoApplication).container
+        val scheduler = container.reminderScheduler
+        container.applicationScope.launch {
+            try {
+                when (intent.action) {
+                    ACTION_REMINDER -> {
+                        val scheduledAt = intent.getLongExtra(EXTRA_SCHEDULED_AT, 0L)
+                        scheduler.onAlarm(if (scheduledAt > 0L) scheduledAt else null)
+                    }
+                    // 开机或系统时间变化后闹钟失效，重新加载窗口
+                    else -> scheduler.start()
+                }
+            } catch (e: Exception) {
+                // 忽略错误，下次启动应用时会重新调度
+            } finally {
+                pendingResult.finish()
+            }
+        }
+    }
+    
+    companion object {
+        const val ACTION_REMINDER = "com.example.todo.action.TASK_REMINDER"
+        const val EXTRA_SCHEDULED_AT = "scheduled_at"
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.todo.reminder
+
+import com.example.todo.data.Task
+import com.example.todo.data.TaskChange
+import com.example.todo.data.TaskRepository
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDateTime
+import java.util.PriorityQueue
+
+/**
+ * 精确时间的任务提醒调度器。
+ *
+ * 只把 [horizon] 时间窗口内的提醒时刻（到期时间减去 [leadTime]）放进最小堆，
+ * 系统中始终只挂一个闹钟，指向堆顶或窗口末尾。任务变更时增量调整堆并按需重挂闹钟，
+ * 不再扫描全部任务。时间来源由 [clock] 注入，便于在 JVM 上模拟时间推进。
+ */
+class ReminderScheduler(
+    private val taskRepository: TaskRepository,
+    private val alarm: ReminderAlarm,
+    private val clock: Clock = Clock.systemDefaultZone(),
+    private val leadTime: Duration = DEFAULT_LEAD_TIME,
+    private val horizon: Duration = DEFAULT_HORIZON,
+    private val onReminder: suspend (List<Task>) -> Unit
+) {
+    private class Entry(val triggerAt: Long, val task: Task)
+
+    private val mutex = Mutex()
+    private val queue = PriorityQueue<Entry>(Comparator { a, b -> a.triggerAt.compareTo(b.triggerAt) })
+
+    // 每个任务当前有效的堆条目，堆中不在此表里的条目视为已作废（惰性删除）
+    private val current = HashMap<Int, Entry>()
+
+    // 已加载窗口为 [windowStart, windowEnd)，NOT_LOADED 表示尚未加载，UNBOUNDED 表示之后再无到期任务
+    private var windowStart = NOT_LOADED
+    private var windowEnd = NOT_LOADED
+    private var armedAt = NOT_LOADED
+
+    // 从当前时刻重新加载窗口并挂上下一个闹钟
+    suspend fun start() {
+        mutex.withLock {
+            loadWindow(clock.millis())
+            rearm()
+        }
+    }
+
+    suspend fun onChange(change: TaskChange) {
+        when (change) {
+            is TaskChange.Upserted -> onTaskChanged(change.task)
+            is TaskChange.Removed -> onTaskRemoved(change.taskId)
+            TaskChange.Invalidated -> start()
+        }
+    }
+
+    suspend fun onTaskChanged(task: Task) {
+        mutex.withLock {
+            if (windowEnd == NOT_LOADED) return
+            current.remove(task.id)
+            val triggerAt = triggerAtOf(task)
+            if (triggerAt != null && triggerAt >= clock.millis() && triggerAt < windowEnd) {
+                push(Entry(triggerAt, task))
+            }
+            rearm()
+        }
+    }
+
+    suspend fun onTaskRemoved(taskId: Int) {
+        mutex.withLock {
+            if (windowEnd == NOT_LOADED) return
+            if (current.remove(taskId) != null) {
+                rearm()
+            }
+        }
+    }
+
+    /**
+     * 闹钟触发时调用：取出所有已到提醒时刻的任务交给 [onReminder]，必要时向后滑动窗口，
+     * 然后挂上下一个闹钟。[onReminder] 返回后才返回，返回值为本次提醒的任务。
+     *
+     * [scheduledAt] 是挂闹钟时的目标时刻；进程被回收后重建的窗口可能晚于它，此时从该时刻重新加载，
+     * 保证这次闹钟对应的提醒不会丢失。
+     */
+    suspend fun onAlarm(scheduledAt: Long? = null): List<Task> {
+        val due = mutex.withLock {
+            val now = clock.millis()
+            val result = ArrayList<Task>()
+            // 长时间未触发时只补发宽限期内的提醒
+            val from = maxOf(minOf(scheduledAt ?: now, now), now - ALARM_GRACE_MILLIS)
+            if (windowEnd == NOT_LOADED || from < windowStart || windowEnd < from) {
+                loadWindow(from)
+            }
+            while (true) {
+                popDue(now, result)
+                if (now < windowEnd) break
+                loadWindow(windowEnd)
+            }
+            rearm()
+            result
+        }
+        if (due.isNotEmpty()) {
+            onReminder(due)
+        }
+        return due
+    }
+
+    fun pendingCount(): Int = current.size
+
+    private suspend fun loadWindow(from: Long) {
+        queue.clear()
+        current.clear()
+        windowStart = from
+        var start = from
+        while (true) {
+            val end = start + horizon.toMillis()
+            val tasks = taskRepository.getPendingTasksDueBetween(
+                toLocalDateTime(start + leadTime.toMillis()),
+                toLocalDateTime(end + leadTime.toMillis())
+            )
+            if (tasks.isNotEmpty()) {
+                tasks.forEach { task ->
+                    val triggerAt = triggerAtOf(task)
+                    if (triggerAt != null) {
+                        push(Entry(triggerAt, task))
+                    }
+                }
+                windowEnd = end
+                return
+            }
+            // 窗口为空时直接跳到下一个到期任务，避免空窗口每天唤醒一次
+            val next = taskRepository.getNextPendingTaskDueFrom(toLocalDateTime(end + leadTime.toMillis()))
+            val nextTriggerAt = next?.let { triggerAtOf(it) }
+            if (nextTriggerAt == null) {
+                windowEnd = UNBOUNDED
+                return
+            }
+            start = nextTriggerAt
+        }
+    }
+
+    private fun popDue(now: Long, into: MutableList<Task>) {
+        while (true) {
+            val head = peekLive() ?: return
+            if (head.triggerAt > now) return
+            queue.poll()
+            current.remove(head.task.id)
+            into.add(head.task)
+        }
+    }
+
+    private fun push(entry: Entry) {
+        current[entry.task.id] = entry
+        queue.add(entry)
+        // 频繁编辑会在堆里留下大量作废条目，超过阈值时按有效条目重建
+        if (queue.size > current.size * 2 + COMPACT_SLACK) {
+            queue.clear()
+            queue.addAll(current.values)
+        }
+    }
+
+    private fun peekLive(): Entry? {
+        while (true) {
+            val head = queue.peek() ?: return null
+            if (current[head.task.id] === head) return head
+            queue.poll()
+        }
+    }
+
+    private fun rearm() {
+        val head = peekLive()
+        val next = if (head != null) minOf(head.triggerAt, windowEnd) else windowEnd
+        if (next == armedAt) return
+        if (next == UNBOUNDED) {
+            alarm.cancel()
+        } else {
+            alarm.arm(next)
+        }
+        armedAt = next
+    }
+
+    private fun triggerAtOf(task: Task): Long? {
+        if (task.isCompleted || task.isDeleted) return null
+        val dueDate = task.dueDate ?: return null
+        return dueDate.atZone(clock.zone).toInstant().toEpochMilli() - leadTime.toMillis()
+    }
+
+    private fun toLocalDateTime(millis: Long): LocalDateTime {
+        return Instant.ofEpochMilli(millis).atZone(clock.zone).toLocalDateTime()
+    }
+
+    companion object {
+        val DEFAULT_LEAD_TIME: Duration = Duration.ofHours(24)
+        val DEFAULT_HORIZON: Duration = Duration.ofDays(1)
+
+        private const val NOT_LOADED = Long.MIN_VALUE
+        private const val UNBOUNDED = Long.MAX_VALUE
+        private const val ALARM_GRACE_MILLIS = 10 * 60 * 1000L
+        private const val COMPACT_SLACK = 64
+    }
+}
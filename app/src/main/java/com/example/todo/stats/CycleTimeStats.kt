@@ -0,0 +1,73 @@
+package com.example.todo.stats
+
+import androidx.room.withTransaction
+import com.example.todo.data.CycleTimeSketch
+import com.example.todo.data.StatsRange
+import com.example.todo.data.TaskDatabase
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.time.Duration
+import java.time.LocalDate
+
+// 一个时间范围内完成任务的周期时间（创建到完成，分钟）；范围内没有完成任务时分位数为 null
+data class CycleTimeSummary(
+    val count: Long,
+    val p50Minutes: Double?,
+    val p90Minutes: Double?
+)
+
+/**
+ * 周期时间分位数统计。
+ *
+ * 每个完成日期保存一个 [QuantileSketch]，查询一个范围只需读取并合并范围内每天的草图，
+ * 读取的行数与天数有关，与已完成任务的数量无关。任务写入时 TaskDao 把受影响的日期标记为 dirty，
+ * 查询前先重建这些日期的草图，重建只扫描当天完成的任务（走 completedAt 索引）。
+ */
+class CycleTimeStats(databaseProvider: Lazy<TaskDatabase>) {
+    // 页面组合时在主线程创建，数据库在第一次统计时才解析
+    private val database: TaskDatabase by databaseProvider
+    private val dao by lazy { database.cycleTimeDao() }
+    private val rebuildMutex = Mutex()
+
+    suspend fun summary(range: StatsRange, today: LocalDate = LocalDate.now()): CycleTimeSummary {
+        rebuildDirtyDays()
+        val toDay = today.toEpochDay()
+        val fromDay = range.days?.let { toDay - it + 1 } ?: Long.MIN_VALUE
+        val merged = QuantileSketch()
+        dao.getSketches(fromDay, toDay).forEach { row ->
+            row.data?.let { merged.merge(QuantileSketch.fromBytes(it)) }
+        }
+        return CycleTimeSummary(
+            count = merged.count,
+            p50Minutes = merged.quantile(0.5),
+            p90Minutes = merged.quantile(0.9)
+        )
+    }
+
+    // 重建与写入互斥：事务内读到的完成记录和清除 dirty 标记是一致的，重建期间的新写入会再次标记
+    private suspend fun rebuildDirtyDays() {
+        rebuildMutex.withLock {
+            val dirtyDays = dao.getDirtyDays()
+            if (dirtyDays.isEmpty()) return
+            database.withTransaction {
+                dirtyDays.forEach { epochDay -> rebuildDay(epochDay) }
+            }
+        }
+    }
+
+    private suspend fun rebuildDay(epochDay: Long) {
+        val day = LocalDate.ofEpochDay(epochDay)
+        val spans = dao.getCompletionSpans(day.atStartOfDay(), day.plusDays(1).atStartOfDay())
+        if (spans.isEmpty()) {
+            dao.deleteSketch(epochDay)
+            return
+        }
+        val sketch = QuantileSketch()
+        spans.forEach { span ->
+            // 导入的数据可能出现完成早于创建，按 0 计
+            val minutes = Duration.between(span.createdAt, span.completedAt).toMillis() / 60_000.0
+            sketch.add(minutes.coerceAtLeast(0.0))
+        }
+        dao.upsertSketch(CycleTimeSketch(epochDay = epochDay, count = spans.size, data = sketch.toBytes(), dirty = false))
+    }
+}
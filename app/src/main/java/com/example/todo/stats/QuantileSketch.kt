@@ -0,0 +1,98 @@
+package com.example.todo.stats
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.pow
+
+/**
+ * 可合并的分位数草图（对数分桶，思路同 DDSketch）。
+ *
+ * 正数按 ceil(log_γ(x)) 落入桶中，γ = (1 + α) / (1 - α)，估算的分位数相对误差不超过 [relativeAccuracy]；
+ * 小于 [MIN_VALUE] 的值计入零桶。两个草图只要精度相同，合并就是桶计数相加，结果与把数据放在一起构建完全一致。
+ * 桶数只与数据的取值跨度有关：周期时间从 1 分钟到 1 年、精度 1% 时不超过约 700 个桶。
+ */
+class QuantileSketch(val relativeAccuracy: Double = DEFAULT_RELATIVE_ACCURACY) {
+    private val gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy)
+    private val logGamma = ln(gamma)
+    private val buckets = HashMap<Int, Long>()
+    private var zeroCount = 0L
+
+    var count = 0L
+        private set
+
+    fun add(value: Double) {
+        if (value < MIN_VALUE) {
+            zeroCount++
+        } else {
+            val index = ceil(ln(value) / logGamma).toInt()
+            buckets[index] = (buckets[index] ?: 0) + 1
+        }
+        count++
+    }
+
+    fun merge(other: QuantileSketch) {
+        require(other.relativeAccuracy == relativeAccuracy) { "sketches must use the same accuracy" }
+        other.buckets.forEach { (index, bucketCount) ->
+            buckets[index] = (buckets[index] ?: 0) + bucketCount
+        }
+        zeroCount += other.zeroCount
+        count += other.count
+    }
+
+    // q 取 [0, 1]；草图为空时返回 null
+    fun quantile(q: Double): Double? {
+        if (count == 0L) return null
+        val rank = (q.coerceIn(0.0, 1.0) * (count - 1)).toLong()
+        if (rank < zeroCount) return 0.0
+        var seen = zeroCount
+        for (index in buckets.keys.sorted()) {
+            seen += buckets.getValue(index)
+            if (seen > rank) {
+                // 桶 (γ^(i-1), γ^i] 的代表值，使相对误差对称
+                return 2 * gamma.pow(index) / (gamma + 1)
+            }
+        }
+        return null
+    }
+
+    fun toBytes(): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { out ->
+            out.writeByte(FORMAT_VERSION)
+            out.writeDouble(relativeAccuracy)
+            out.writeLong(zeroCount)
+            out.writeInt(buckets.size)
+            buckets.forEach { (index, bucketCount) ->
+                out.writeInt(index)
+                out.writeLong(bucketCount)
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    companion object {
+        const val DEFAULT_RELATIVE_ACCURACY = 0.01
+        const val MIN_VALUE = 1e-9
+        private const val FORMAT_VERSION = 1
+
+        fun fromBytes(data: ByteArray): QuantileSketch {
+            DataInputStream(ByteArrayInputStream(data)).use { input ->
+                require(input.readByte().toInt() == FORMAT_VERSION) { "unknown sketch format" }
+                val sketch = QuantileSketch(input.readDouble())
+                sketch.zeroCount = input.readLong()
+                sketch.count = sketch.zeroCount
+                repeat(input.readInt()) {
+                    val index = input.readInt()
+                    val bucketCount = input.readLong()
+                    sketch.buckets[index] = bucketCount
+                    sketch.count += bucketCount
+                }
+                return sketch
+            }
+        }
+    }
+}
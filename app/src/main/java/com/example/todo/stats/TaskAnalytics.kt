@@ -0,0 +1,151 @@
+package com.example.todo.stats
+
+import com.example.todo.data.StatsRange
+import com.example.todo.data.TaskDatabase
+import com.example.todo.data.TaskRepository
+import com.example.todo.di.AppDispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.withContext
+import java.time.LocalDate
+import java.util.concurrent.atomic.AtomicReference
+
+// 范围内完成且设置了到期时间的任务中，在到期当天或之前完成的数量
+data class OnTimeSummary(
+    val completedWithDue: Int,
+    val onTime: Int
+) {
+    val rate: Int
+        get() = if (completedWithDue > 0) onTime * 100 / completedWithDue else 0
+}
+
+/**
+ * 基于 [TaskColumns] 的内存统计。
+ *
+ * 快照由一次游标遍历构建并缓存，记下构建前仓库的写入代数（[TaskRepository.writeGeneration]），
+ * 读取时代数不同就重建。写入返回前代数已经更新，写入之后的统计不会读到旧快照。
+ *
+ * 行数达到 [parallelThreshold] 时汇总才并行：按行号把快照切成最多 [parallelism] 段，
+ * 每段在 compute 调度器上统计到自己的计数或直方图，最后相加。行数较少时分段和合并的开销大于收益，顺序执行。
+ */
+class TaskAnalytics(
+    databaseProvider: Lazy<TaskDatabase>,
+    private val taskRepository: TaskRepository,
+    private val dispatchers: AppDispatchers,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val parallelThreshold: Int = DEFAULT_PARALLEL_THRESHOLD
+) {
+    // 页面组合时在主线程创建，数据库在第一次构建快照时才解析
+    private val database: TaskDatabase by databaseProvider
+
+    private class Snapshot(val generation: Int, val columns: TaskColumns)
+
+    @Volatile
+    private var cached: Snapshot? = null
+
+    // onTimeSummary 的行号数组，用完放回；并发统计时取不到的一方临时分配
+    private val selectionBuffer = AtomicReference<IntArray?>()
+
+    suspend fun snapshot(): TaskColumns {
+        // 先取代数再查询：查询期间有写入时代数已变，下次读取会重建
+        val generation = taskRepository.writeGeneration()
+        cached?.let { if (it.generation == generation) return it.columns }
+        val columns = withContext(dispatchers.read) {
+            database.query(TaskColumns.QUERY, null).use { cursor -> TaskColumns.fromCursor(cursor) }
+        }
+        cached = Snapshot(generation, columns)
+        return columns
+    }
+
+    suspend fun onTimeSummary(range: StatsRange, today: LocalDate = LocalDate.now()): OnTimeSummary {
+        val columns = snapshot()
+        return withContext(dispatchers.read) {
+            val toDay = today.toEpochDay().toInt()
+            val fromDay = range.days?.let { toDay - it + 1 } ?: Int.MIN_VALUE
+            val selection = selectionBuffer.getAndSet(null)?.takeIf { it.size >= columns.size } ?: IntArray(columns.size)
+            try {
+                var count = columns.select(
+                    mask = TaskColumns.COMPLETED or TaskColumns.DELETED or TaskColumns.HAS_DUE,
+                    value = TaskColumns.COMPLETED or TaskColumns.HAS_DUE,
+                    selection = selection
+                )
+                count = columns.filter(selection, count) { row ->
+                    val day = columns.completedDays[row]
+                    day != TaskColumns.NO_DAY && day >= fromDay && day <= toDay
+                }
+                val onTime = columns.count(selection, count) { row ->
+                    columns.completedDays[row] <= Math.floorDiv(columns.dueEpochSeconds[row], SECONDS_PER_DAY)
+                }
+                OnTimeSummary(completedWithDue = count, onTime = onTime)
+            } finally {
+                selectionBuffer.set(selection)
+            }
+        }
+    }
+
+    // range 内完成的任务数（不含已删除），与 onTimeSummary 使用相同的起止日期
+    suspend fun completedCount(range: StatsRange, today: LocalDate = LocalDate.now()): Int {
+        val toDay = today.toEpochDay().toInt()
+        val fromDay = range.days?.let { toDay - it + 1 } ?: Int.MIN_VALUE
+        return completedCount(snapshot(), fromDay, toDay)
+    }
+
+    // [from, to] 内每天完成的任务数（不含已删除），下标 0 对应 from
+    suspend fun completedPerDay(from: LocalDate, to: LocalDate): IntArray {
+        val length = (to.toEpochDay() - from.toEpochDay() + 1).toInt().coerceAtLeast(0)
+        return completedPerDay(snapshot(), from.toEpochDay().toInt(), length)
+    }
+
+    internal suspend fun completedCount(columns: TaskColumns, fromDay: Int, toDay: Int): Int {
+        return bySegments(columns.size) { startRow, endRow ->
+            columns.countInDays(columns.completedDays, fromDay, toDay, COMPLETED_MASK, TaskColumns.COMPLETED, startRow, endRow)
+        }.sum()
+    }
+
+    internal suspend fun completedPerDay(columns: TaskColumns, fromDay: Int, length: Int): IntArray {
+        val partials = bySegments(columns.size) { startRow, endRow ->
+            IntArray(length).also {
+                columns.countByDay(columns.completedDays, fromDay, COMPLETED_MASK, TaskColumns.COMPLETED, startRow, endRow, it)
+            }
+        }
+        val merged = partials[0]
+        for (p in 1 until partials.size) {
+            val partial = partials[p]
+            for (i in 0 until length) {
+                merged[i] += partial[i]
+            }
+        }
+        return merged
+    }
+
+    // 在 compute 调度器上对 [0, size) 执行 block；行数达到阈值时按行号切段并行，返回各段的结果
+    private suspend fun <R> bySegments(size: Int, block: (startRow: Int, endRow: Int) -> R): List<R> {
+        val segments = minOf(parallelism, size / MIN_SEGMENT_ROWS)
+        if (size < parallelThreshold || segments <= 1) {
+            return listOf(withContext(dispatchers.compute) { block(0, size) })
+        }
+        return coroutineScope {
+            (0 until segments).map { segment ->
+                async(dispatchers.compute) {
+                    // 各段行数相差不超过 1
+                    val startRow = (size.toLong() * segment / segments).toInt()
+                    val endRow = (size.toLong() * (segment + 1) / segments).toInt()
+                    block(startRow, endRow)
+                }
+            }.awaitAll()
+        }
+    }
+
+    companion object {
+        private const val SECONDS_PER_DAY = 86_400L
+
+        private const val COMPLETED_MASK = TaskColumns.COMPLETED or TaskColumns.DELETED
+
+        // 单核 JVM 上实测顺序统计约 3.5 ns/行，20 万行约 0.7 ms；再少时并行最多省下几百微秒，
+        // 与唤醒工作线程、合并直方图的开销相当。多核设备上可用 TaskAnalyticsTest 的基准重新测量
+        const val DEFAULT_PARALLEL_THRESHOLD = 200_000
+        // 每段至少的行数，避免核数多时切出过小的段
+        private const val MIN_SEGMENT_ROWS = 10_000
+    }
+}
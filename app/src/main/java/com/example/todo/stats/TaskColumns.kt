@@ -0,0 +1,131 @@
+package com.example.todo.stats
+
+import android.database.Cursor
+
+/**
+ * 按列存放的任务快照，供内存统计使用。
+ *
+ * 每个任务只占几个基本类型数组中的一格：id、创建日与完成日（epoch day）、到期时间（按 UTC 换算的 epoch 秒，
+ * 与 PendingTasksSnapshot 的编码一致）以及状态位，不创建 Task、LocalDateTime 或 String。
+ * 算子把结果写入调用方提供的行号数组（selection）或直方图，运行时不分配内存。
+ */
+class TaskColumns(
+    val size: Int,
+    val ids: IntArray,
+    val createdDays: IntArray,
+    val completedDays: IntArray,
+    val dueEpochSeconds: LongArray,
+    val states: ByteArray
+) {
+    fun state(row: Int): Int = states[row].toInt()
+
+    // 状态满足 (state and mask) == value 的行号依次写入 selection，返回行数
+    fun select(mask: Int, value: Int, selection: IntArray): Int {
+        var count = 0
+        for (row in 0 until size) {
+            if (states[row].toInt() and mask == value) {
+                selection[count++] = row
+            }
+        }
+        return count
+    }
+
+    // 在 selection 的前 count 行中原地保留满足条件的行，返回保留的行数
+    inline fun filter(selection: IntArray, count: Int, predicate: (row: Int) -> Boolean): Int {
+        var kept = 0
+        for (i in 0 until count) {
+            val row = selection[i]
+            if (predicate(row)) {
+                selection[kept++] = row
+            }
+        }
+        return kept
+    }
+
+    inline fun count(selection: IntArray, count: Int, predicate: (row: Int) -> Boolean): Int {
+        var matched = 0
+        for (i in 0 until count) {
+            if (predicate(selection[i])) matched++
+        }
+        return matched
+    }
+
+    // 按 days 列（createdDays 或 completedDays）统计 selection 中每天的行数，
+    // histogram[i] 对应 fromDay + i，超出直方图范围或没有日期的行不计入
+    fun countByDay(days: IntArray, fromDay: Int, selection: IntArray, count: Int, histogram: IntArray) {
+        for (i in 0 until count) {
+            val day = days[selection[i]]
+            if (day == NO_DAY) continue
+            val index = day - fromDay
+            if (index >= 0 && index < histogram.size) {
+                histogram[index]++
+            }
+        }
+    }
+
+    // 不经过 selection，直接统计 [startRow, endRow) 中状态满足 (state and mask) == value 的行，
+    // 按行号分段后各段可以并行统计到各自的直方图
+    fun countByDay(days: IntArray, fromDay: Int, mask: Int, value: Int, startRow: Int, endRow: Int, histogram: IntArray) {
+        for (row in startRow until endRow) {
+            if (states[row].toInt() and mask != value) continue
+            val day = days[row]
+            if (day == NO_DAY) continue
+            val index = day - fromDay
+            if (index >= 0 && index < histogram.size) {
+                histogram[index]++
+            }
+        }
+    }
+
+    // [startRow, endRow) 中状态满足 (state and mask) == value、days 列在 [fromDay, toDay] 内的行数
+    fun countInDays(days: IntArray, fromDay: Int, toDay: Int, mask: Int, value: Int, startRow: Int, endRow: Int): Int {
+        var matched = 0
+        for (row in startRow until endRow) {
+            if (states[row].toInt() and mask != value) continue
+            val day = days[row]
+            if (day != NO_DAY && day >= fromDay && day <= toDay) matched++
+        }
+        return matched
+    }
+
+    companion object {
+        const val COMPLETED = 1
+        const val DELETED = 1 shl 1
+        const val HAS_DUE = 1 shl 2
+
+        const val NO_DAY = Int.MIN_VALUE
+        const val NO_DUE = Long.MIN_VALUE
+
+        // 日期在 SQL 中换算为 epoch day 和 epoch 秒，读取时只取基本类型
+        const val QUERY = "SELECT id, " +
+            "CAST(julianday(substr(createdAt, 1, 10)) - 2440587.5 AS INTEGER) AS createdDay, " +
+            "CAST(julianday(substr(completedAt, 1, 10)) - 2440587.5 AS INTEGER) AS completedDay, " +
+            "CAST(strftime('%s', substr(dueDate, 1, 19)) AS INTEGER) AS dueEpoch, " +
+            "isCompleted, isDeleted FROM tasks"
+
+        // 一次遍历游标填充全部列，游标由调用方关闭
+        fun fromCursor(cursor: Cursor): TaskColumns {
+            val capacity = cursor.count
+            val ids = IntArray(capacity)
+            val createdDays = IntArray(capacity)
+            val completedDays = IntArray(capacity)
+            val dueEpochSeconds = LongArray(capacity)
+            val states = ByteArray(capacity)
+            var row = 0
+            while (row < capacity && cursor.moveToNext()) {
+                ids[row] = cursor.getInt(0)
+                createdDays[row] = cursor.getInt(1)
+                completedDays[row] = if (cursor.isNull(2)) NO_DAY else cursor.getInt(2)
+                val hasDue = !cursor.isNull(3)
+                dueEpochSeconds[row] = if (hasDue) cursor.getLong(3) else NO_DUE
+                var state = 0
+                if (cursor.getInt(4) != 0) state = state or COMPLETED
+                if (cursor.getInt(5) != 0) state = state or DELETED
+                if (hasDue) state = state or HAS_DUE
+                states[row] = state.toByte()
+                row++
+            }
+            return TaskColumns(row, ids, createdDays, completedDays, dueEpochSeconds, states)
+        }
+    }
+}
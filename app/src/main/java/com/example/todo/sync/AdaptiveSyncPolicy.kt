@@ -0,0 +1,94 @@
+package com.example.todo.sync
+
+import java.time.Clock
+import java.util.ArrayDeque
+
+/**
+ * 根据近期本地修改频率和服务器提示计算下一次同步的间隔。
+ *
+ * - 最近 [activityWindowMillis] 内有本地修改时，修改越多间隔越短，最短 [minIntervalMillis]；
+ * - 没有本地修改时，每次没有拉到任何变更的同步都让间隔从 [baseIntervalMillis] 翻倍，最长 [maxIntervalMillis]；
+ * - 服务器在响应中给出的建议间隔优先于空闲退避，但不会拉长本地活跃时的间隔。
+ *
+ * 只做计算不做调度，时间来源由 [clock] 注入，便于在 JVM 上模拟。
+ * 输入通过 [state] / [restore] 导出和恢复，由调用方持久化，进程重启后空闲退避和近期修改数不会清零。
+ */
+class AdaptiveSyncPolicy(
+    private val clock: Clock = Clock.systemUTC(),
+    private val minIntervalMillis: Long = DEFAULT_MIN_INTERVAL_MILLIS,
+    private val baseIntervalMillis: Long = DEFAULT_BASE_INTERVAL_MILLIS,
+    private val maxIntervalMillis: Long = DEFAULT_MAX_INTERVAL_MILLIS,
+    private val activityWindowMillis: Long = DEFAULT_ACTIVITY_WINDOW_MILLIS
+) {
+    data class State(
+        val idleRuns: Int = 0,
+        // 近期本地修改的时间（毫秒），从早到晚
+        val recentChanges: List<Long> = emptyList(),
+        val serverHintMillis: Long? = null
+    )
+    
+    private val lock = Any()
+    private val recentChanges = ArrayDeque<Long>()
+    private var idleRuns = 0
+    private var serverHintMillis: Long? = null
+    
+    fun state(): State {
+        synchronized(lock) {
+            return State(idleRuns = idleRuns, recentChanges = recentChanges.toList(), serverHintMillis = serverHintMillis)
+        }
+    }
+    
+    fun restore(state: State) {
+        synchronized(lock) {
+            recentChanges.clear()
+            state.recentChanges.takeLast(MAX_TRACKED_CHANGES).forEach { recentChanges.addLast(it) }
+            idleRuns = state.idleRuns
+            serverHintMillis = state.serverHintMillis
+        }
+    }
+
+    fun recordLocalChange() {
+        synchronized(lock) {
+            recentChanges.addLast(clock.millis())
+            // 只需要知道窗口内的数量，超出上限的部分不影响结果
+            if (recentChanges.size > MAX_TRACKED_CHANGES) recentChanges.removeFirst()
+            idleRuns = 0
+        }
+    }
+
+    // changed 表示这次同步拉到了服务器变更；hintMillis 为服务器建议的下次同步间隔
+    fun recordSyncResult(changed: Boolean, hintMillis: Long?) {
+        synchronized(lock) {
+            idleRuns = if (changed) 0 else idleRuns + 1
+            serverHintMillis = hintMillis
+        }
+    }
+
+    fun nextDelayMillis(): Long {
+        synchronized(lock) {
+            val now = clock.millis()
+            while (recentChanges.isNotEmpty() && recentChanges.peekFirst() < now - activityWindowMillis) {
+                recentChanges.removeFirst()
+            }
+            val recent = recentChanges.size
+            val hint = serverHintMillis
+            val interval = if (recent > 0) {
+                val active = baseIntervalMillis / (1 + recent)
+                if (hint != null) minOf(active, hint) else active
+            } else {
+                hint ?: (baseIntervalMillis shl minOf(idleRuns, MAX_BACKOFF_SHIFT))
+            }
+            return interval.coerceIn(minIntervalMillis, maxIntervalMillis)
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MIN_INTERVAL_MILLIS = 60_000L
+        const val DEFAULT_BASE_INTERVAL_MILLIS = 15 * 60_000L
+        const val DEFAULT_MAX_INTERVAL_MILLIS = 6 * 60 * 60_000L
+        const val DEFAULT_ACTIVITY_WINDOW_MILLIS = 15 * 60_000L
+
+        private const val MAX_TRACKED_CHANGES = 256
+        private const val MAX_BACKOFF_SHIFT = 10
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.todo.sync
+
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.LoadType
+import androidx.paging.PagingState
+import androidx.paging.RemoteMediator
+import androidx.room.withTransaction
+import com.example.todo.data.RemoteKey
+import com.example.todo.data.Task
+import com.example.todo.data.TaskDatabase
+import com.example.todo.data.TaskRepository
+import com.example.todo.network.TaskApiService
+import retrofit2.HttpException
+import java.io.IOException
+
+/**
+ * 已完成页的远端分页：界面始终从 Room 读取，滚动到本地数据末尾时再向服务器请求下一页写入 Room。
+ * 续传游标保存在 remote_keys 表中，进程重启后从上次的位置继续：已有游标时跳过启动时的刷新，
+ * 手动刷新只重新拉取第一页，不把游标退回第二页，Room 中已有的后续页不会在滚动时重复下载。
+ */
+@OptIn(ExperimentalPagingApi::class)
+class CompletedTasksRemoteMediator(
+    private val api: TaskApiService,
+    databaseProvider: Lazy<TaskDatabase>,
+    // 写入经过仓库的写锁，与其它写入串行，依赖任务数据的缓存随之作废
+    private val taskRepository: TaskRepository
+) : RemoteMediator<Int, Task>() {
+    // 分页数据流在主线程创建，数据库在第一次加载时才解析
+    private val database: TaskDatabase by databaseProvider
+    private val taskDao by lazy { database.taskDao() }
+    private val remoteKeyDao by lazy { database.remoteKeyDao() }
+    
+    override suspend fun initialize(): InitializeAction {
+        return if (remoteKeyDao.getRemoteKey(LABEL) != null) {
+            InitializeAction.SKIP_INITIAL_REFRESH
+        } else {
+            InitializeAction.LAUNCH_INITIAL_REFRESH
+        }
+    }
+    
+    override suspend fun load(loadType: LoadType, state: PagingState<Int, Task>): MediatorResult {
+        val cursor = when (loadType) {
+            LoadType.REFRESH -> null
+            // 列表按 createdAt 倒序，新数据由增量同步写入，不需要向前翻页
+            LoadType.PREPEND -> return MediatorResult.Success(endOfPaginationReached = true)
+            LoadType.APPEND -> {
+                val remoteKey = remoteKeyDao.getRemoteKey(LABEL)
+                remoteKey?.nextCursor ?: return MediatorResult.Success(endOfPaginationReached = remoteKey != null)
+            }
+        }
+        
+        return try {
+            val page = api.getCompletedTasksPage(cursor = cursor, limit = state.config.pageSize)
+            val nextCursor = taskRepository.writeRemotePage(mergesTasks = page.tasks.isNotEmpty()) {
+                database.withTransaction {
+                    if (page.tasks.isNotEmpty()) {
+                        taskDao.mergeRemoteTasks(page.tasks)
+                    }
+                    // 刷新时保留已有的游标，它之前的页已经在 Room 中
+                    val saved = if (loadType == LoadType.REFRESH) remoteKeyDao.getRemoteKey(LABEL) else null
+                    if (saved == null) {
+                        remoteKeyDao.upsertRemoteKey(RemoteKey(label = LABEL, nextCursor = page.nextCursor))
+                        page.nextCursor
+                    } else {
+                        saved.nextCursor
+                    }
+                }
+            }
+            MediatorResult.Success(endOfPaginationReached = nextCursor == null)
+        } catch (e: IOException) {
+            MediatorResult.Error(e)
+        } catch (e: HttpException) {
+            MediatorResult.Error(e)
+        }
+    }
+    
+    companion object {
+        const val LABEL = "completed"
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.todo.sync
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+
+/**
+ * 决定何时上传 outbox：本地变更累计到 [maxBatchSize] 条立即上传，
+ * 否则在第一条变更后最多等待 [maxDelayMillis] 再上传，同一时刻只有一次上传在进行。
+ */
+class OutboxBatcher(
+    private val scope: CoroutineScope,
+    private val sender: OutboxSender,
+    private val maxBatchSize: Int = OutboxSender.DEFAULT_MAX_BATCH_SIZE,
+    private val maxDelayMillis: Long = DEFAULT_MAX_DELAY_MILLIS
+) {
+    private val lock = Any()
+    private val flushMutex = Mutex()
+    private var pendingChanges = 0
+    private var timer: Job? = null
+
+    fun onLocalChange() {
+        synchronized(lock) {
+            pendingChanges++
+            if (pendingChanges >= maxBatchSize) {
+                timer?.cancel()
+                timer = null
+                pendingChanges = 0
+                scope.launch { flush() }
+            } else if (timer == null) {
+                timer = scope.launch {
+                    delay(maxDelayMillis)
+                    synchronized(lock) {
+                        timer = null
+                        pendingChanges = 0
+                    }
+                    flush()
+                }
+            }
+        }
+    }
+
+    suspend fun flush(): OutboxSender.FlushResult? {
+        return flushMutex.withLock {
+            try {
+                sender.flush()
+            } catch (e: Exception) {
+                // 留在 outbox 中，下次变更或同步时再上传
+                null
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_DELAY_MILLIS = 5_000L
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.todo.sync
+
+import com.example.todo.data.OutboxEntry
+import com.example.todo.data.OutboxOp
+import com.example.todo.data.TaskField
+
+/**
+ * 把 outbox 中同一任务的多条记录合并为至多一次网络操作：
+ * 新建后的修改并入新建，新建后删除则两者都丢弃，连续修改合并为一次，修改后删除只保留删除。
+ * 合并后的修改涉及的字段取各条记录改动字段的并集，服务器 id 取最后一条记录中的值。
+ */
+object OutboxCompactor {
+    // op 为 null 表示这些记录相互抵消，无需发送，直接删除 entryIds 即可
+    data class Operation(
+        val taskId: Int,
+        val op: OutboxOp?,
+        val entryIds: List<Long>,
+        val changedFields: Int = TaskField.ALL,
+        val remoteId: Int? = null
+    )
+    
+    fun compact(entries: List<OutboxEntry>): List<Operation> {
+        val byTask = LinkedHashMap<Int, MutableList<OutboxEntry>>()
+        entries.sortedBy { it.id }.forEach { entry ->
+            byTask.getOrPut(entry.taskId) { mutableListOf() }.add(entry)
+        }
+        return byTask.map { (taskId, taskEntries) ->
+            var op: OutboxOp? = null
+            var changedFields = 0
+            var remoteId: Int? = null
+            taskEntries.forEach { entry ->
+                op = merge(op, entry.op)
+                changedFields = changedFields or entry.changedFields
+                remoteId = entry.remoteId ?: remoteId
+            }
+            Operation(taskId, op, taskEntries.map { it.id }, changedFields, remoteId)
+        }
+    }
+    
+    private fun merge(current: OutboxOp?, next: OutboxOp): OutboxOp? {
+        return when (current) {
+            null -> next
+            OutboxOp.CREATE -> when (next) {
+                OutboxOp.CREATE, OutboxOp.UPDATE -> OutboxOp.CREATE
+                // 服务器从未见过这个任务
+                OutboxOp.DELETE -> null
+            }
+            OutboxOp.UPDATE -> when (next) {
+                OutboxOp.CREATE, OutboxOp.UPDATE -> OutboxOp.UPDATE
+                OutboxOp.DELETE -> OutboxOp.DELETE
+            }
+            OutboxOp.DELETE -> when (next) {
+                OutboxOp.CREATE -> OutboxOp.UPDATE
+                OutboxOp.UPDATE, OutboxOp.DELETE -> OutboxOp.DELETE
+            }
+        }
+    }
+}
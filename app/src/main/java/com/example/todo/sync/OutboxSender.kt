@@ -0,0 +1,190 @@
+package com.example.todo.sync
+
+import com.example.todo.data.OutboxDao
+import com.example.todo.data.OutboxOp
+import com.example.todo.data.TaskField
+import com.example.todo.data.TaskRepository
+import com.example.todo.network.TaskApiService
+import com.example.todo.network.TaskBatchRequest
+import com.example.todo.network.TaskMutation
+import com.example.todo.network.TaskPatch
+import kotlinx.coroutines.delay
+import retrofit2.HttpException
+import java.io.IOException
+
+/**
+ * 上传 outbox 中的本地变更。
+ *
+ * 发送前先用 [OutboxCompactor] 合并，每个任务至多一项，内容取任务的最新状态，修改只携带改动过的字段；
+ * 修改和删除按服务器 id 指定目标，服务器还不知道的任务改为新建或直接丢弃；新建成功后记录服务器分配的 id。
+ * outbox 按任务分页读取，每页至多 [maxBatchSize] 个任务，合并后作为一批通过批量接口提交，每项独立返回结果。
+ * 成功的项立即删除对应记录，之后的重试不会再发送；可重试的失败项按指数退避重试，
+ * 超过 [maxAttempts] 次后留在 outbox 中等待下一次 flush。
+ * 整个请求被 4xx 拒绝时不丢弃整批：原因可能只是其中一项（格式错误、冲突）或请求过大（413），
+ * 对半拆开分别重发，直到找出被拒绝的单项，只丢弃这一项；单项仍然 413 时无法再拆，留在 outbox 中。
+ */
+class OutboxSender(
+    private val api: TaskApiService,
+    private val outboxDao: OutboxDao,
+    private val taskRepository: TaskRepository,
+    private val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE,
+    private val maxAttempts: Int = DEFAULT_MAX_ATTEMPTS,
+    private val initialBackoffMillis: Long = DEFAULT_INITIAL_BACKOFF_MILLIS
+) {
+    data class FlushResult(
+        val requests: Int,
+        val succeeded: Int,
+        val dropped: Int,
+        val remaining: Int
+    )
+
+    private class PendingMutation(
+        val mutation: TaskMutation,
+        val entryIds: List<Long>
+    )
+
+    private class Tally {
+        var requests = 0
+        var succeeded = 0
+        var dropped = 0
+        var remaining = 0
+    }
+
+    suspend fun flush(): FlushResult {
+        val tally = Tally()
+        // 按任务分页读取，一页至多 maxBatchSize 个任务，合并后正好是一批；内存中只保留当前一页
+        var afterTaskId = 0
+        while (true) {
+            val entries = outboxDao.getEntriesPage(afterTaskId, maxBatchSize)
+            if (entries.isEmpty()) break
+            afterTaskId = entries.maxOf { it.taskId }
+            val batch = prepare(OutboxCompactor.compact(entries))
+            if (batch.isNotEmpty()) {
+                send(batch, tally)
+            }
+        }
+        return FlushResult(requests = tally.requests, succeeded = tally.succeeded, dropped = tally.dropped, remaining = tally.remaining)
+    }
+
+    private suspend fun send(batch: List<PendingMutation>, tally: Tally) {
+        var inFlight = batch
+        var attempt = 0
+        while (inFlight.isNotEmpty()) {
+            tally.requests++
+            val results = try {
+                api.applyBatch(TaskBatchRequest(inFlight.map { it.mutation })).results
+                    .associateBy { it.taskId }
+            } catch (e: IOException) {
+                // 整个请求失败，全部视为可重试
+                emptyMap()
+            } catch (e: HttpException) {
+                when (e.code()) {
+                    // 认证失败对所有批次都一样，保留记录，结束这次上传
+                    401, 403 -> throw e
+                    408, 429 -> emptyMap()
+                    in 400..499 -> {
+                        bisect(inFlight, e.code(), tally)
+                        return
+                    }
+                    else -> emptyMap()
+                }
+            }
+            val retry = ArrayList<PendingMutation>()
+            inFlight.forEach { item ->
+                val result = results[item.mutation.taskId]
+                when {
+                    result == null -> retry.add(item)
+                    result.success -> {
+                        outboxDao.deleteEntries(item.entryIds)
+                        if (item.mutation.op == OutboxOp.CREATE) {
+                            result.remoteId?.let { taskRepository.assignRemoteId(item.mutation.taskId, it) }
+                        }
+                        tally.succeeded++
+                    }
+                    result.isRetryable -> retry.add(item)
+                    else -> {
+                        // 服务器明确拒绝，重试也不会成功，丢弃以免阻塞后续上传
+                        outboxDao.deleteEntries(item.entryIds)
+                        tally.dropped++
+                    }
+                }
+            }
+            attempt++
+            if (retry.isEmpty() || attempt >= maxAttempts) {
+                tally.remaining += retry.size
+                return
+            }
+            delay(initialBackoffMillis shl (attempt - 1))
+            inFlight = retry
+        }
+    }
+
+    // 整个请求被拒绝：对半拆开分别发送，被拒绝的一半继续拆分，最终只有被拒绝的单项受影响
+    private suspend fun bisect(items: List<PendingMutation>, code: Int, tally: Tally) {
+        when {
+            items.size > 1 -> {
+                val middle = items.size / 2
+                send(items.subList(0, middle), tally)
+                send(items.subList(middle, items.size), tally)
+            }
+            // 单项也超过服务器的大小限制，保留记录，修改变小后还能上传
+            code == 413 -> tally.remaining++
+            else -> {
+                outboxDao.deleteEntries(items[0].entryIds)
+                tally.dropped++
+            }
+        }
+    }
+
+    // 合并后的操作转换为请求项，内容取任务的最新状态；无需发送的操作直接删除记录
+    private suspend fun prepare(operations: List<OutboxCompactor.Operation>): List<PendingMutation> {
+        val pending = ArrayList<PendingMutation>()
+        // 一次查询取回这一页任务的最新状态
+        val tasks = taskRepository.getTasksByIds(
+            operations.filter { it.op == OutboxOp.CREATE || it.op == OutboxOp.UPDATE }.map { it.taskId }
+        ).associateBy { it.id }
+        operations.forEach { operation ->
+            val mutation = when (operation.op) {
+                OutboxOp.CREATE, OutboxOp.UPDATE -> tasks[operation.taskId]?.let { task ->
+                    val remoteId = task.remoteId ?: operation.remoteId
+                    when {
+                        // 服务器还没有这个任务，上传完整内容
+                        remoteId == null -> TaskMutation(op = OutboxOp.CREATE, taskId = operation.taskId, task = task)
+                        // 上次新建已被接受但结果没有收到，不再重复新建，改为全字段修改
+                        operation.op == OutboxOp.CREATE -> TaskMutation(
+                            op = OutboxOp.UPDATE,
+                            taskId = operation.taskId,
+                            remoteId = remoteId,
+                            patch = TaskPatch.of(remoteId, task, TaskField.ALL)
+                        )
+                        // 修改只上传改动过的字段
+                        else -> TaskMutation(
+                            op = OutboxOp.UPDATE,
+                            taskId = operation.taskId,
+                            remoteId = remoteId,
+                            patch = TaskPatch.of(remoteId, task, operation.changedFields)
+                        )
+                    }
+                }
+                // 服务器从未见过的任务无需删除
+                OutboxOp.DELETE -> operation.remoteId?.let { remoteId ->
+                    TaskMutation(op = OutboxOp.DELETE, taskId = operation.taskId, remoteId = remoteId)
+                }
+                // 新建后又删除，服务器无需知道
+                null -> null
+            }
+            if (mutation != null) {
+                pending.add(PendingMutation(mutation, operation.entryIds))
+            } else {
+                outboxDao.deleteEntries(operation.entryIds)
+            }
+        }
+        return pending
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BATCH_SIZE = 100
+        const val DEFAULT_MAX_ATTEMPTS = 4
+        const val DEFAULT_INITIAL_BACKOFF_MILLIS = 1_000L
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.todo.sync
+
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import kotlinx.coroutines.CancellationException
+import java.time.Clock
+import java.util.concurrent.TimeUnit
+
+/**
+ * 用 WorkManager 调度增量同步，间隔由 [AdaptiveSyncPolicy] 决定。
+ *
+ * 任何时刻只有一个名为 [WORK_NAME] 的一次性任务排队；每次同步结束后按新的间隔排下一次。
+ * 触发只会把排队的同步提前，不会推后：已排队任务的计划时间不晚于新的截止时间时保持原计划。
+ * 同步进行中到达的触发（本地修改、手动刷新）不会打断当前同步，只记一个标记，
+ * 当前同步结束后立即再跑一轮，多个触发合并为这一轮。
+ * 计划时间和策略的输入保存在 [syncState] 中，进程重启后继续使用。
+ */
+class SyncScheduler(
+    private val workManager: WorkManager,
+    private val policy: AdaptiveSyncPolicy,
+    private val syncState: SyncStateStore,
+    private val sync: suspend () -> TaskSyncEngine.SyncResult,
+    private val clock: Clock = Clock.systemUTC()
+) {
+    private val lock = Any()
+    private var running = false
+    private var followUpRequested = false
+    // 排队任务的计划执行时间，0 表示没有已知的排队任务
+    private var scheduledAt: Long
+
+    init {
+        policy.restore(syncState.policyState)
+        scheduledAt = syncState.nextSyncAt
+    }
+
+    // 应用启动时调用；已有排队的同步时保持原计划，没有时按保存的计划时间重新排队
+    fun start() {
+        synchronized(lock) {
+            val now = clock.millis()
+            val delayMillis = if (scheduledAt > now) scheduledAt - now else policy.nextDelayMillis()
+            enqueue(delayMillis, ExistingWorkPolicy.KEEP)
+        }
+    }
+
+    fun onLocalChange() {
+        policy.recordLocalChange()
+        syncState.policyState = policy.state()
+        trigger(policy.nextDelayMillis())
+    }
+
+    // 手动刷新等需要尽快同步的场景
+    fun requestSync() {
+        trigger(0)
+    }
+
+    private fun trigger(delayMillis: Long) {
+        synchronized(lock) {
+            if (running) {
+                followUpRequested = true
+                return
+            }
+            // 每次都从现在起重新计时的话，持续的修改会让同步一直推迟
+            if (scheduledAt > 0 && scheduledAt <= clock.millis() + delayMillis) return
+            enqueue(delayMillis, ExistingWorkPolicy.REPLACE)
+        }
+    }
+
+    // 由 SyncWorker 调用；返回 false 时交给 WorkManager 按退避策略重试
+    suspend fun runSync(): Boolean {
+        synchronized(lock) {
+            running = true
+            followUpRequested = false
+            setScheduledAt(0)
+        }
+        try {
+            do {
+                val result = sync()
+                policy.recordSyncResult(
+                    changed = result.upserted > 0 || result.deleted > 0,
+                    hintMillis = result.nextSyncHintSeconds?.let { it * 1000 }
+                )
+                syncState.policyState = policy.state()
+            } while (takeFollowUp())
+        } catch (e: Exception) {
+            synchronized(lock) {
+                running = false
+                followUpRequested = false
+                // 按最短的退避估计重试时间，比它更早的触发才替换重试
+                setScheduledAt(clock.millis() + RETRY_BACKOFF_MILLIS)
+            }
+            if (e is CancellationException) throw e
+            return false
+        }
+        return true
+    }
+
+    // 同步期间有触发时清除标记再跑一轮；否则排好下一次再结束运行状态，
+    // 两步在同一把锁内，之后到达的触发一定能看到这次的计划
+    private fun takeFollowUp(): Boolean {
+        synchronized(lock) {
+            if (followUpRequested) {
+                followUpRequested = false
+                return true
+            }
+            // 当前任务仍处于运行状态，用 APPEND 排在它之后，REPLACE 会取消自己
+            enqueue(policy.nextDelayMillis(), ExistingWorkPolicy.APPEND_OR_REPLACE)
+            running = false
+            return false
+        }
+    }
+
+    private fun setScheduledAt(millis: Long) {
+        scheduledAt = millis
+        syncState.nextSyncAt = millis
+    }
+
+    private fun enqueue(delayMillis: Long, existingWorkPolicy: ExistingWorkPolicy) {
+        val request = OneTimeWorkRequestBuilder<SyncWorker>()
+            .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+            .setConstraints(
+                Constraints.Builder()
+                    .setRequiredNetworkType(NetworkType.CONNECTED)
+                    .build()
+            )
+            .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, RETRY_BACKOFF_MILLIS, TimeUnit.MILLISECONDS)
+            .build()
+        // enqueueUniqueWork 只提交到 WorkManager 的后台线程，可以在锁内调用
+        workManager.enqueueUniqueWork(WORK_NAME, existingWorkPolicy, request)
+        setScheduledAt(clock.millis() + delayMillis)
+    }
+
+    companion object {
+        const val WORK_NAME = "task_sync"
+        private const val RETRY_BACKOFF_MILLIS = 30_000L
+    }
+}
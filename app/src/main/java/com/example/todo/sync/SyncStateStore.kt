@@ -0,0 +1,57 @@
+package com.example.todo.sync
+
+import android.content.Context
+
+// 同步进度和调度状态持久化在 SharedPreferences 中，进程重启后从上次的水位和间隔继续
+class SyncStateStore(context: Context) {
+    private val prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+    
+    // 已完整写入本地的最后一页服务器水位
+    var watermark: String?
+        get() = prefs.getString(KEY_WATERMARK, null)
+        set(value) {
+            prefs.edit().putString(KEY_WATERMARK, value).apply()
+        }
+    
+    // 变更推送已写入本地的最后一条序号，重连时从它之后继续；0 表示还没有收到过推送
+    var feedSequence: Long
+        get() = prefs.getLong(KEY_FEED_SEQUENCE, 0)
+        set(value) {
+            prefs.edit().putLong(KEY_FEED_SEQUENCE, value).apply()
+        }
+    
+    // 自适应同步间隔的输入，进程重启后恢复
+    var policyState: AdaptiveSyncPolicy.State
+        get() = AdaptiveSyncPolicy.State(
+            idleRuns = prefs.getInt(KEY_IDLE_RUNS, 0),
+            recentChanges = prefs.getString(KEY_RECENT_CHANGES, null)
+                ?.split(',')
+                ?.mapNotNull { it.toLongOrNull() }
+                ?: emptyList(),
+            serverHintMillis = prefs.getLong(KEY_SERVER_HINT, -1).takeIf { it >= 0 }
+        )
+        set(value) {
+            prefs.edit()
+                .putInt(KEY_IDLE_RUNS, value.idleRuns)
+                .putString(KEY_RECENT_CHANGES, value.recentChanges.joinToString(","))
+                .putLong(KEY_SERVER_HINT, value.serverHintMillis ?: -1)
+                .apply()
+        }
+    
+    // 排队中的同步计划执行的时间（毫秒），0 表示没有已知的排队任务
+    var nextSyncAt: Long
+        get() = prefs.getLong(KEY_NEXT_SYNC_AT, 0)
+        set(value) {
+            prefs.edit().putLong(KEY_NEXT_SYNC_AT, value).apply()
+        }
+    
+    companion object {
+        private const val PREFS_NAME = "task_sync"
+        private const val KEY_WATERMARK = "watermark"
+        private const val KEY_FEED_SEQUENCE = "feed_sequence"
+        private const val KEY_IDLE_RUNS = "idle_runs"
+        private const val KEY_RECENT_CHANGES = "recent_changes"
+        private const val KEY_SERVER_HINT = "server_hint_millis"
+        private const val KEY_NEXT_SYNC_AT = "next_sync_at"
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.todo.sync
+
+import android.content.Context
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import com.example.todo.TodoApplication
+
+// WorkManager 执行的同步任务，具体逻辑和下一次调度都在 SyncScheduler 中
+class SyncWorker(
+    context: Context,
+    params: WorkerParameters
+) : CoroutineWorker(context, params) {
+    override suspend fun doWork(): Result {
+        val scheduler = (applicationContext as TodoApplication).container.syncScheduler
+        return if (scheduler.runSync()) Result.success() else Result.retry()
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.todo.sync
+
+import com.example.todo.data.Task
+import com.example.todo.data.TaskRepository
+import com.example.todo.data.TaskTombstone
+import com.example.todo.network.TaskFeedEvent
+import com.example.todo.network.TaskPatch
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
+import kotlinx.coroutines.channels.trySendBlocking
+import kotlinx.coroutines.delay
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.WebSocket
+import okhttp3.WebSocketListener
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.random.Random
+
+/**
+ * 服务器变更推送：通过 WebSocket 接收任务变更，合并成小批次写入 Room。
+ *
+ * 连接时带上已写入的最后一条序号（after=seq），服务器从它之后继续推送，断线重连不会漏掉或重复应用变更。
+ * 第一条事件到达后最多再等 [maxBatchDelayMillis] 凑批，每批至多 [maxBatchSize] 条，在一个事务中写入并只发一次变更通知；
+ * 同一任务在批内的多次变更合并为一次，只含部分字段的 patch 依次叠加；删除与之后的修改分开保存，按修改时间合并。
+ * 写入成功后才推进序号，格式错误的事件跳过但同样推进序号。
+ * 连接断开后按指数退避（带随机抖动）重连，连接期间收到过事件则退避从头开始。
+ */
+class TaskChangeFeed(
+    private val client: OkHttpClient,
+    private val url: String,
+    private val gson: Gson,
+    private val taskRepository: TaskRepository,
+    private val syncState: SyncStateStore,
+    private val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE,
+    private val maxBatchDelayMillis: Long = DEFAULT_MAX_BATCH_DELAY_MILLIS,
+    private val initialBackoffMillis: Long = DEFAULT_INITIAL_BACKOFF_MILLIS,
+    private val maxBackoffMillis: Long = DEFAULT_MAX_BACKOFF_MILLIS
+) {
+    data class FeedStats(
+        // 写入的事件数，批内合并前的条数
+        val appliedEvents: Long,
+        val appliedBatches: Long,
+        val applyMillis: Long,
+        // 格式错误而跳过的事件数
+        val skippedEvents: Long = 0
+    ) {
+        // 写入吞吐（条/秒），只计算事务耗时，不含等待网络的时间
+        val eventsPerSecond: Long
+            get() = if (applyMillis == 0L) 0 else appliedEvents * 1000 / applyMillis
+    }
+
+    private val appliedEvents = AtomicLong()
+    private val appliedBatches = AtomicLong()
+    private val applyNanos = AtomicLong()
+    private val skippedEvents = AtomicLong()
+
+    fun stats(): FeedStats = FeedStats(
+        appliedEvents = appliedEvents.get(),
+        appliedBatches = appliedBatches.get(),
+        applyMillis = applyNanos.get() / 1_000_000,
+        skippedEvents = skippedEvents.get()
+    )
+
+    // 保持连接并应用推送，直到所在协程被取消
+    suspend fun run() {
+        var backoff = initialBackoffMillis
+        while (true) {
+            val received = try {
+                connectOnce()
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                // 写入失败时序号没有推进，重连后服务器会重新推送这些事件
+                0
+            }
+            if (received > 0) {
+                backoff = initialBackoffMillis
+            }
+            delay(backoff + Random.nextLong(backoff / 2 + 1))
+            backoff = (backoff * 2).coerceAtMost(maxBackoffMillis)
+        }
+    }
+
+    // 建立一次连接并应用收到的事件，连接关闭或失败时返回本次应用的事件数
+    private suspend fun connectOnce(): Int {
+        val events = Channel<TaskFeedEvent>(capacity = maxBatchSize * 2)
+        val listener = object : WebSocketListener() {
+            override fun onMessage(webSocket: WebSocket, text: String) {
+                val event = try {
+                    gson.fromJson(text, TaskFeedEvent::class.java)
+                } catch (e: JsonParseException) {
+                    null
+                } ?: return
+                // 在 OkHttp 的读线程上等待：写入跟不上时暂停读取套接字，由 TCP 流控让服务器放慢
+                events.trySendBlocking(event)
+            }
+
+            override fun onClosing(webSocket: WebSocket, code: Int, reason: String) {
+                webSocket.close(NORMAL_CLOSURE, null)
+                events.close()
+            }
+
+            override fun onFailure(webSocket: WebSocket, t: Throwable, response: Response?) {
+                events.close()
+            }
+        }
+        val since = syncState.feedSequence
+        val request = Request.Builder()
+            .url(if (since > 0) "$url?after=$since" else url)
+            .build()
+        val socket = client.newWebSocket(request, listener)
+        try {
+            return applyEvents(events)
+        } finally {
+            // 先关闭 channel，唤醒可能阻塞在 trySendBlocking 上的读线程
+            events.cancel()
+            socket.cancel()
+        }
+    }
+
+    // 应用一个连接收到的事件，channel 关闭时返回本次写入的事件数（含跳过的格式错误事件）
+    internal suspend fun applyEvents(events: ReceiveChannel<TaskFeedEvent>): Int {
+        var applied = 0
+        var lastSeq = syncState.feedSequence
+        // 新建、完整任务和 patch 按任务合并；删除单独保存，不会被同批之后的 patch 覆盖，
+        // 写入时两者按各字段的修改时间合并，结果与逐条应用相同
+        val batch = LinkedHashMap<Int, TaskFeedEvent>()
+        val deletes = LinkedHashMap<Int, TaskTombstone>()
+        var batchSeq = lastSeq
+        var batchEvents = 0
+        var batchSkipped = 0
+
+        fun add(event: TaskFeedEvent) {
+            // 重连后服务器可能重放已应用的事件
+            if (event.seq <= lastSeq) return
+            if (event.seq > batchSeq) batchSeq = event.seq
+            val taskId = event.taskId
+            if (taskId == null || !event.isWellFormed) {
+                // 格式错误的事件重放也不会变好，跳过并照常推进序号，否则每次重连都会卡在这里
+                batchSkipped++
+                return
+            }
+            batchEvents++
+            val tombstone = event.tombstone
+            if (event.task == null && event.patch == null && tombstone != null) {
+                val previous = deletes[taskId]
+                if (previous == null || tombstone.deletedChangedAt > previous.deletedChangedAt) {
+                    deletes[taskId] = tombstone
+                }
+                return
+            }
+            val previous = batch.remove(taskId)
+            val patch = event.patch
+            val previousTask = previous?.task
+            val previousPatch = previous?.patch
+            // 批内连续的 patch 叠加到之前的完整任务或 patch 上，避免丢掉前一次改动的字段
+            batch[taskId] = when {
+                patch == null -> event
+                previousTask != null -> event.copy(task = patch.applyTo(previousTask), patch = null)
+                previousPatch != null -> event.copy(patch = previousPatch + patch)
+                else -> event
+            }
+        }
+
+        fun drain() {
+            while (batch.size + deletes.size < maxBatchSize) {
+                add(events.tryReceive().getOrNull() ?: return)
+            }
+        }
+
+        while (true) {
+            add(events.receiveCatching().getOrNull() ?: return applied)
+            drain()
+            if (batch.size + deletes.size < maxBatchSize) {
+                delay(maxBatchDelayMillis)
+                drain()
+            }
+            if (batchSeq == lastSeq) continue
+
+            if (batch.isNotEmpty() || deletes.isNotEmpty()) {
+                val start = System.nanoTime()
+                val tasks = ArrayList<Task>(batch.size)
+                val patches = ArrayList<TaskPatch>()
+                batch.values.forEach { event ->
+                    event.task?.let { tasks.add(it) }
+                    event.patch?.let { patches.add(it) }
+                }
+                // patch 套用到本地行上得到完整任务，再与其他变更一起逐字段合并；本地没有的任务等待全量同步补齐
+                if (patches.isNotEmpty()) {
+                    val local = taskRepository.getTasksByRemoteIds(patches.map { it.taskId }).associateBy { it.remoteId }
+                    patches.forEach { patch ->
+                        local[patch.taskId]?.let { tasks.add(patch.applyTo(it)) }
+                    }
+                }
+                taskRepository.applyRemoteChanges(tasks, deletes.values.toList())
+                applyNanos.addAndGet(System.nanoTime() - start)
+                appliedEvents.addAndGet(batchEvents.toLong())
+                appliedBatches.incrementAndGet()
+            }
+            skippedEvents.addAndGet(batchSkipped.toLong())
+
+            applied += batchEvents + batchSkipped
+            lastSeq = batchSeq
+            syncState.feedSequence = lastSeq
+            batch.clear()
+            deletes.clear()
+            batchEvents = 0
+            batchSkipped = 0
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BATCH_SIZE = 200
+        const val DEFAULT_MAX_BATCH_DELAY_MILLIS = 100L
+        const val DEFAULT_INITIAL_BACKOFF_MILLIS = 1_000L
+        const val DEFAULT_MAX_BACKOFF_MILLIS = 60_000L
+        private const val NORMAL_CLOSURE = 1000
+    }
+}
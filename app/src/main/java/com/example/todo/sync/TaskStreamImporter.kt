@@ -0,0 +1,74 @@
+package com.example.todo.sync
+
+import com.example.todo.data.Task
+import com.example.todo.data.TaskRepository
+import com.example.todo.di.AppDispatchers
+import com.example.todo.network.TaskApiService
+import com.google.gson.Gson
+import com.google.gson.stream.JsonReader
+import kotlinx.coroutines.withContext
+import retrofit2.HttpException
+
+/**
+ * 全量下载任务列表时边读边写：用 JsonReader 逐个解析数组元素，每满 [chunkSize] 个在一个事务中写入 Room。
+ * 内存中最多只保留一个分块，峰值占用与响应大小无关。
+ *
+ * 分块写入时不作废完成日历也不通知订阅方，全部写完（或中途失败）后统一处理一次。
+ * 由 [TaskSyncEngine] 在还没有水位的首次同步时调用。
+ */
+class TaskStreamImporter(
+    private val api: TaskApiService,
+    private val taskRepository: TaskRepository,
+    private val gson: Gson,
+    private val dispatchers: AppDispatchers,
+    private val chunkSize: Int = DEFAULT_CHUNK_SIZE
+) {
+    data class ImportResult(
+        val imported: Int,
+        // 服务器生成列表时的水位，没有返回时为空
+        val watermark: String?
+    )
+    
+    suspend fun importAll(): ImportResult {
+        val response = api.streamAllTasks()
+        val body = response.body()
+        if (!response.isSuccessful || body == null) {
+            throw HttpException(response)
+        }
+        val adapter = gson.getAdapter(Task::class.java)
+        var imported = 0
+        try {
+            // 阻塞读取在 IO 线程进行；写入分块时挂起，解析随之暂停
+            withContext(dispatchers.read) {
+                JsonReader(body.charStream()).use { reader ->
+                    val chunk = ArrayList<Task>(chunkSize)
+                    reader.beginArray()
+                    while (reader.hasNext()) {
+                        chunk.add(adapter.read(reader))
+                        if (chunk.size == chunkSize) {
+                            taskRepository.applyRemoteChanges(chunk.toList(), emptyList(), notify = false)
+                            imported += chunk.size
+                            chunk.clear()
+                        }
+                    }
+                    reader.endArray()
+                    if (chunk.isNotEmpty()) {
+                        taskRepository.applyRemoteChanges(chunk.toList(), emptyList(), notify = false)
+                        imported += chunk.size
+                    }
+                }
+            }
+        } finally {
+            body.close()
+            if (imported > 0) {
+                taskRepository.notifyRemoteChangesApplied()
+            }
+        }
+        return ImportResult(imported = imported, watermark = response.headers()[WATERMARK_HEADER])
+    }
+    
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 500
+        const val WATERMARK_HEADER = "X-Sync-Watermark"
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.todo.sync
+
+import com.example.todo.data.TaskRepository
+import com.example.todo.network.TaskApiService
+
+/**
+ * 基于 updatedAt 水位的增量同步。
+ *
+ * 每次只拉取水位之后变更的任务，逐页在一个事务中写入 Room，服务器删除的任务按删除时间逐字段合并为 isDeleted。
+ * 每页写入成功后才推进水位，中途失败时下次从最后一个完整写入的页继续。
+ *
+ * 还没有水位（首次同步或清除了同步状态）时先用 [importer] 流式导入全量列表，
+ * 从列表附带的水位开始增量拉取，避免按页把全部历史变更拉一遍。
+ */
+class TaskSyncEngine(
+    private val api: TaskApiService,
+    private val taskRepository: TaskRepository,
+    private val syncState: SyncStateStore,
+    private val importer: TaskStreamImporter? = null,
+    private val pageSize: Int = DEFAULT_PAGE_SIZE
+) {
+    data class SyncResult(
+        val pages: Int,
+        val upserted: Int,
+        val deleted: Int,
+        // 最后一页响应中服务器建议的下次同步间隔
+        val nextSyncHintSeconds: Long? = null
+    )
+    
+    suspend fun sync(): SyncResult {
+        var watermark = syncState.watermark
+        var pages = 0
+        var upserted = 0
+        if (watermark == null && importer != null) {
+            val result = importer.importAll()
+            upserted += result.imported
+            // 没有返回水位时从头增量拉取，合并是幂等的，只是多拉一遍
+            if (result.watermark != null) {
+                watermark = result.watermark
+                syncState.watermark = watermark
+            }
+        }
+        var deleted = 0
+        var hint: Long? = null
+        do {
+            val page = api.getTaskChanges(since = watermark, limit = pageSize)
+            if (page.tasks.isNotEmpty() || page.deleted.isNotEmpty()) {
+                taskRepository.applyRemoteChanges(page.tasks, page.deleted)
+            }
+            pages++
+            upserted += page.tasks.size
+            deleted += page.deleted.size
+            hint = page.nextSyncHintSeconds
+            if (page.watermark != null && page.watermark != watermark) {
+                watermark = page.watermark
+                syncState.watermark = watermark
+            } else if (page.hasMore) {
+                // 水位没有推进却声称还有数据，继续请求只会重复拉取同一页
+                break
+            }
+        } while (page.hasMore)
+        return SyncResult(pages = pages, upserted = upserted, deleted = deleted, nextSyncHintSeconds = hint)
+    }
+    
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 500
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.todo.ui.components
+
+import androidx.compose.animation.core.Animatable
+import androidx.compose.animation.core.tween
+import androidx.compose.foundation.Canvas
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.LaunchedEffect
+import androidx.compose.runtime.Stable
+import androidx.compose.runtime.remember
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.geometry.CornerRadius
+import androidx.compose.ui.geometry.Offset
+import androidx.compose.ui.geometry.Size
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.text.TextLayoutResult
+import androidx.compose.ui.text.drawText
+import androidx.compose.ui.text.rememberTextMeasurer
+import androidx.compose.ui.unit.dp
+
+/**
+ * 柱状图的几何状态：每根柱的高度比例（相对最大值），数据变化时从当前高度过渡到新高度。
+ * 高度数组按 [capacity] 预先分配，柱数不超过容量时切换数据集和动画过程中不产生新对象；
+ * 超过时才按倍数扩容。
+ */
+@Stable
+class BarChartGeometry(capacity: Int = DEFAULT_MAX_BARS) {
+    var count = 0
+        private set
+    internal var from = FloatArray(capacity)
+        private set
+    internal var to = FloatArray(capacity)
+        private set
+    internal val progress = Animatable(1f)
+
+    fun heightAt(index: Int): Float {
+        val p = progress.value
+        return from[index] + (to[index] - from[index]) * p
+    }
+
+    // 以当前显示的高度为起点设置新目标；新增的柱从 0 开始
+    internal fun retarget(values: IntArray, maxValue: Int) {
+        val newCount = values.size
+        if (newCount > from.size) {
+            val capacity = maxOf(newCount, from.size * 2)
+            val current = FloatArray(capacity)
+            for (i in 0 until count) current[i] = heightAt(i)
+            from = current
+            to = FloatArray(capacity)
+        } else {
+            for (i in 0 until count) from[i] = heightAt(i)
+            for (i in count until newCount) from[i] = 0f
+        }
+        for (i in 0 until newCount) {
+            to[i] = if (maxValue > 0) values[i].toFloat() / maxValue else 0f
+        }
+        count = newCount
+    }
+}
+
+/**
+ * 在 Canvas 上直接绘制的柱状图。
+ *
+ * 数据点多于 [maxBars] 时把相邻的点相加合并为一根柱（如 365 天合并为每 7 天一根），
+ * 合并后的柱沿用组内第一个点的标签，底部最多显示 [maxLabels] 个标签。
+ * 标签文字在数据变化时预先测量，绘制阶段只做定位。
+ */
+@Composable
+fun rememberBarChartGeometry(capacity: Int = DEFAULT_MAX_BARS): BarChartGeometry {
+    return remember(capacity) { BarChartGeometry(capacity) }
+}
+
+@Composable
+fun BarChart(
+    values: List<Int>,
+    labels: List<String>,
+    modifier: Modifier = Modifier,
+    barColor: Color = MaterialTheme.colorScheme.primary,
+    maxBars: Int = DEFAULT_MAX_BARS,
+    maxLabels: Int = DEFAULT_MAX_LABELS,
+    // 合并后的柱数不超过 maxBars，按它预分配的数组在数据变化时不需要扩容
+    geometry: BarChartGeometry = rememberBarChartGeometry(maxBars)
+) {
+    val textMeasurer = rememberTextMeasurer()
+    val labelStyle = MaterialTheme.typography.labelSmall.copy(color = MaterialTheme.colorScheme.onSurfaceVariant)
+    val axisColor = MaterialTheme.colorScheme.outlineVariant
+
+    val bars = remember(values, labels, maxBars) { downsample(values, labels, maxBars) }
+    val maxValue = remember(bars) { bars.values.maxOrNull() ?: 0 }
+    // 标签和数值文字只在数据变化时测量
+    val labelLayouts = remember(bars, labelStyle, maxLabels) {
+        val step = maxOf(1, (bars.labels.size + maxLabels - 1) / maxLabels)
+        bars.labels.mapIndexedNotNull { index, label ->
+            if (index % step == 0) index to textMeasurer.measure(label, labelStyle) else null
+        }
+    }
+    val valueLayouts: List<TextLayoutResult> = remember(bars, labelStyle) {
+        // 柱数较少时在柱顶显示数值
+        if (bars.values.size <= VALUE_LABEL_MAX_BARS) {
+            bars.values.map { textMeasurer.measure(it.toString(), labelStyle) }
+        } else {
+            emptyList()
+        }
+    }
+    val maxValueLayout = remember(maxValue, labelStyle) {
+        textMeasurer.measure(maxValue.toString(), labelStyle)
+    }
+
+    LaunchedEffect(bars) {
+        geometry.retarget(bars.values, maxValue)
+        geometry.progress.snapTo(0f)
+        geometry.progress.animateTo(1f, tween(ANIMATION_MILLIS))
+    }
+
+    Canvas(modifier = modifier) {
+        val labelHeight = labelLayouts.firstOrNull()?.second?.size?.height?.toFloat() ?: 0f
+        val valueHeight = maxValueLayout.size.height.toFloat()
+        val axisWidth = maxValueLayout.size.width + 4.dp.toPx()
+        val chartTop = valueHeight
+        val chartBottom = size.height - labelHeight - 4.dp.toPx()
+        val chartHeight = (chartBottom - chartTop).coerceAtLeast(0f)
+        val chartWidth = size.width - axisWidth
+        val count = geometry.count
+        if (count == 0 || chartWidth <= 0f) return@Canvas
+
+        val slot = chartWidth / count
+        val barWidth = slot * BAR_WIDTH_RATIO
+        val corner = CornerRadius(minOf(barWidth / 4, 4.dp.toPx()))
+
+        // 纵轴只标出最大值，并画出基线
+        drawText(maxValueLayout, topLeft = Offset(0f, chartTop - valueHeight / 2))
+        drawLine(axisColor, Offset(axisWidth, chartBottom), Offset(size.width, chartBottom), strokeWidth = 1.dp.toPx())
+
+        for (i in 0 until count) {
+            val height = geometry.heightAt(i) * chartHeight
+            if (height <= 0f) continue
+            val left = axisWidth + slot * i + (slot - barWidth) / 2
+            drawRoundRect(
+                color = barColor,
+                topLeft = Offset(left, chartBottom - height),
+                size = Size(barWidth, height),
+                cornerRadius = corner
+            )
+            if (i < valueLayouts.size) {
+                val layout = valueLayouts[i]
+                drawText(
+                    layout,
+                    topLeft = Offset(left + (barWidth - layout.size.width) / 2, chartBottom - height - layout.size.height)
+                )
+            }
+        }
+        labelLayouts.forEach { (index, layout) ->
+            if (index >= count) return@forEach
+            val center = axisWidth + slot * index + slot / 2
+            val x = (center - layout.size.width / 2).coerceIn(axisWidth, size.width - layout.size.width)
+            drawText(layout, topLeft = Offset(x, size.height - labelHeight))
+        }
+    }
+}
+
+private class Bars(val values: IntArray, val labels: List<String>)
+
+// 相邻的点按组求和，使柱数不超过 maxBars
+private fun downsample(values: List<Int>, labels: List<String>, maxBars: Int): Bars {
+    if (values.size <= maxBars) {
+        return Bars(values.toIntArray(), labels)
+    }
+    val groupSize = (values.size + maxBars - 1) / maxBars
+    val groups = (values.size + groupSize - 1) / groupSize
+    val summed = IntArray(groups)
+    val groupLabels = ArrayList<String>(groups)
+    for (group in 0 until groups) {
+        val start = group * groupSize
+        val end = minOf(start + groupSize, values.size)
+        var sum = 0
+        for (i in start until end) sum += values[i]
+        summed[group] = sum
+        groupLabels.add(labels.getOrElse(start) { "" })
+    }
+    return Bars(summed, groupLabels)
+}
+
+private const val DEFAULT_MAX_BARS = 60
+private const val DEFAULT_MAX_LABELS = 7
+private const val VALUE_LABEL_MAX_BARS = 14
+private const val BAR_WIDTH_RATIO = 0.6f
+private const val ANIMATION_MILLIS = 600
@@ -0,0 +1,64 @@
+package com.example.todo.ui.components
+
+import androidx.compose.foundation.Canvas
+import androidx.compose.foundation.layout.aspectRatio
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.remember
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.geometry.CornerRadius
+import androidx.compose.ui.geometry.Offset
+import androidx.compose.ui.geometry.Size
+import androidx.compose.ui.graphics.Color
+import java.time.LocalDate
+
+/**
+ * 热力图的数据：从 firstDay（周一）开始按天排列的完成数，共 weeks * 7 格，today 之后的格子不绘制。
+ */
+class HeatmapData(
+    val firstDay: LocalDate,
+    val weeks: Int,
+    val today: LocalDate,
+    val counts: IntArray
+) {
+    val days: Int = minOf(counts.size, (today.toEpochDay() - firstDay.toEpochDay() + 1).toInt())
+    val max: Int = counts.maxOrNull() ?: 0
+}
+
+/**
+ * 按周分列、按星期分行的完成数热力图，在一次 Canvas 绘制中画出全部格子。
+ * 颜色分为 [LEVELS] 级：0 为空格，其余按与最大值的比例分级，颜色在配色变化时预先计算。
+ */
+@Composable
+fun CompletionHeatmap(
+    data: HeatmapData,
+    modifier: Modifier = Modifier,
+    color: Color = MaterialTheme.colorScheme.primary
+) {
+    val emptyColor = MaterialTheme.colorScheme.surfaceVariant
+    val levelColors = remember(color, emptyColor) {
+        Array(LEVELS) { level ->
+            if (level == 0) emptyColor else color.copy(alpha = 0.25f + 0.75f * level / (LEVELS - 1))
+        }
+    }
+
+    Canvas(modifier = modifier.aspectRatio(data.weeks / 7f)) {
+        val cell = minOf(size.width / data.weeks, size.height / 7)
+        val side = cell * CELL_RATIO
+        val corner = CornerRadius(side / 5)
+        val max = data.max
+        for (i in 0 until data.days) {
+            val count = data.counts[i]
+            val level = if (count == 0 || max == 0) 0 else 1 + (count - 1) * (LEVELS - 1) / max
+            drawRoundRect(
+                color = levelColors[level],
+                topLeft = Offset((i / 7) * cell, (i % 7) * cell),
+                size = Size(side, side),
+                cornerRadius = corner
+            )
+        }
+    }
+}
+
+private const val LEVELS = 5
+private const val CELL_RATIO = 0.82f
@@ -42,7 +42,9 @@ fun TaskItem(
     task: Task,
     onEdit: () -> Unit,
     onDelete: () -> Unit,
-    onToggleComplete: () -> Unit
+    onToggleComplete: () -> Unit,
+    // 由所在页面用逾期查询得出，行内不再逐条比较当前时间
+    isOverdue: Boolean = false
 ) {
     val cardColor = if (task.isCompleted) {
         MaterialTheme.colorScheme.surface.copy(alpha = 0.7f)
@@ -122,7 +124,7 @@ fun TaskItem(
                         textDecoration = if (task.isCompleted) TextDecoration.LineThrough else TextDecoration.None,
                         color = if (task.isCompleted) {
                             MaterialTheme.colorScheme.onSurface.copy(alpha = 0.4f)
-                        } else if (task.dueDate.isBefore(java.time.LocalDateTime.now())) {
+                        } else if (isOverdue) {
                             MaterialTheme.colorScheme.error
                         } else {
                             MaterialTheme.colorScheme.primary
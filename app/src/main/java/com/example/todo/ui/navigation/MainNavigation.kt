@@ -6,6 +6,7 @@ import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Add
 import androidx.compose.material.icons.filled.CheckCircle
 import androidx.compose.material.icons.filled.Delete
+import androidx.compose.material.icons.filled.Info
 import androidx.compose.material.icons.filled.Search
 import androidx.compose.material.icons.filled.MoreVert
 import androidx.compose.material.icons.filled.Refresh
@@ -20,23 +21,27 @@ import androidx.compose.runtime.Composable
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
+import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.runtime.setValue
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.res.stringResource
+import androidx.paging.PagingData
+import com.example.todo.BuildConfig
 import com.example.todo.R
-import com.example.todo.data.NotificationService
 import com.example.todo.data.TaskRepository
 import com.example.todo.data.Task
+import com.example.todo.network.NetworkMetrics
 import com.example.todo.ui.screens.PendingTasksScreen
 import com.example.todo.ui.screens.CompletedTasksScreen
 import com.example.todo.ui.screens.TrashScreen
 import com.example.todo.ui.screens.StatsScreen
 import com.example.todo.ui.screens.SearchScreen
+import com.example.todo.ui.screens.NetworkMetricsScreen
+import com.example.todo.stats.CycleTimeStats
+import com.example.todo.stats.TaskAnalytics
 import com.example.todo.ui.components.TaskDialog
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.launch
-import java.time.LocalDateTime
 
 sealed class Screen(val route: String, val label: Int, val icon: androidx.compose.ui.graphics.vector.ImageVector) {
     object Pending : Screen("pending", R.string.pending_tasks, Icons.Default.List)
@@ -44,12 +49,23 @@ sealed class Screen(val route: String, val label: Int, val icon: androidx.compos
     object Trash : Screen("trash", R.string.trash, Icons.Default.Delete)
     object Search : Screen("search", R.string.search, Icons.Default.Search)
     object Stats : Screen("stats", R.string.stats, Icons.Default.MoreVert)
+    // 调试页，不在底部导航中，只在 debug 构建中从统计页进入
+    object NetworkDebug : Screen("network_debug", R.string.network_metrics_title, Icons.Default.Info)
 }
 
 @Composable
-fun MainNavigation(taskRepository: TaskRepository, notificationService: NotificationService) {
+fun MainNavigation(
+    taskRepository: TaskRepository,
+    completedTasks: Flow<PagingData<Task>>,
+    networkMetrics: NetworkMetrics,
+    cycleTimeStats: CycleTimeStats,
+    taskAnalytics: TaskAnalytics,
+    // 手动刷新时请求尽快与服务器同步
+    onRequestSync: () -> Unit = {}
+) {
     var currentScreen by remember { mutableStateOf<Screen>(Screen.Pending) }
     var showAddDialog by remember { mutableStateOf(false) }
+    val coroutineScope = rememberCoroutineScope()
     
     val screens = listOf(
         Screen.Pending,
@@ -87,10 +103,13 @@ fun MainNavigation(taskRepository: TaskRepository, notificationService: Notifica
         when (currentScreen) {
             is Screen.Pending -> PendingTasksScreen(
                 taskRepository = taskRepository,
+                onRequestSync = onRequestSync,
                 modifier = Modifier.padding(paddingValues)
             )
             is Screen.Completed -> CompletedTasksScreen(
                 taskRepository = taskRepository,
+                completedTasks = completedTasks,
+                onRequestSync = onRequestSync,
                 modifier = Modifier.padding(paddingValues)
             )
             is Screen.Trash -> TrashScreen(
@@ -103,8 +122,22 @@ fun MainNavigation(taskRepository: TaskRepository, notificationService: Notifica
             )
             is Screen.Stats -> StatsScreen(
                 taskRepository = taskRepository,
+                cycleTimeStats = cycleTimeStats,
+                taskAnalytics = taskAnalytics,
+                onOpenNetworkMetrics = if (BuildConfig.DEBUG) {
+                    { currentScreen = Screen.NetworkDebug }
+                } else {
+                    null
+                },
                 modifier = Modifier.padding(paddingValues)
             )
+            is Screen.NetworkDebug -> if (BuildConfig.DEBUG) {
+                NetworkMetricsScreen(
+                    networkMetrics = networkMetrics,
+                    onBack = { currentScreen = Screen.Stats },
+                    modifier = Modifier.padding(paddingValues)
+                )
+            }
         }
         
 
@@ -114,11 +147,11 @@ fun MainNavigation(taskRepository: TaskRepository, notificationService: Notifica
                 task = null,
                 onDismiss = { showAddDialog = false },
                 onSave = { task ->
-                    CoroutineScope(Dispatchers.IO).launch {
+                    // 写入在仓库的应用级作用域中完成，这里只在主线程等待结果并关闭对话框
+                    coroutineScope.launch {
                         try {
+                            // 提醒由 ReminderScheduler 根据仓库变更事件调度
                             taskRepository.addTask(task)
-                            // 检查是否需要发送提醒
-                            notificationService.checkTasksForReminders(listOf(task))
                             showAddDialog = false
                         } catch (e: Exception) {
                             showAddDialog = false
@@ -3,10 +3,11 @@ package com.example.todo.ui.screens
 import androidx.compose.foundation.layout.Box
 import androidx.compose.foundation.layout.Column
 import androidx.compose.foundation.layout.PaddingValues
+import androidx.compose.foundation.layout.Row
 import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.LazyColumn
-import androidx.compose.foundation.lazy.items
 import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Refresh
@@ -15,11 +16,10 @@ import androidx.compose.material3.Icon
 import androidx.compose.material3.IconButton
 import androidx.compose.material3.Scaffold
 import androidx.compose.material3.Text
+import androidx.compose.material3.TextButton
 import androidx.compose.material3.TopAppBar
 import androidx.compose.material3.ExperimentalMaterial3Api
 import androidx.compose.runtime.Composable
-import androidx.compose.runtime.LaunchedEffect
-import androidx.compose.runtime.mutableStateListOf
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
 import androidx.compose.runtime.rememberCoroutineScope
@@ -28,21 +28,29 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.unit.dp
+import androidx.paging.LoadState
+import androidx.paging.PagingData
+import androidx.paging.compose.collectAsLazyPagingItems
+import androidx.paging.compose.itemKey
 import com.example.todo.R
 import com.example.todo.data.Task
 import com.example.todo.data.TaskRepository
 import com.example.todo.ui.components.TaskDialog
 import com.example.todo.ui.components.TaskItem
+import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.launch
 
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
 fun CompletedTasksScreen(
     taskRepository: TaskRepository,
+    completedTasks: Flow<PagingData<Task>>,
+    // 刷新按钮在重新拉取第一页的同时请求一次增量同步
+    onRequestSync: () -> Unit = {},
     modifier: Modifier = Modifier
 ) {
-    val tasks = remember { mutableStateListOf<Task>() }
-    val isLoading = remember { mutableStateOf(false) }
+    // 列表由 Room 分页读取，写入后 Room 失效通知会自动刷新当前页，不需要手动修改列表
+    val lazyPagingItems = completedTasks.collectAsLazyPagingItems()
     val errorMessage = remember { mutableStateOf<String?>(null) }
     val selectedTask = remember { mutableStateOf<Task?>(null) }
     val showTaskDialog = remember { mutableStateOf(false) }
@@ -50,34 +58,14 @@ fun CompletedTasksScreen(
     val listState = rememberLazyListState()
     
     fun loadTasks() {
-        coroutineScope.launch {
-            isLoading.value = true
-            errorMessage.value = null
-            try {
-                val loadedTasks = taskRepository.getCompletedTasks()
-                tasks.clear()
-                tasks.addAll(loadedTasks)
-            } catch (e: Exception) {
-                errorMessage.value = "加载任务失败，请重试"
-            } finally {
-                isLoading.value = false
-            }
-        }
-    }
-    
-    // 加载任务列表
-    LaunchedEffect(Unit) {
-        loadTasks()
+        errorMessage.value = null
+        lazyPagingItems.refresh()
     }
     
     fun handleSaveTask(updatedTask: Task) {
         coroutineScope.launch {
             try {
                 taskRepository.updateTask(updatedTask)
-                val index = tasks.indexOfFirst { it.id == updatedTask.id }
-                if (index != -1) {
-                    tasks[index] = updatedTask
-                }
                 showTaskDialog.value = false
                 selectedTask.value = null
             } catch (e: Exception) {
@@ -86,13 +74,27 @@ fun CompletedTasksScreen(
         }
     }
     
+    // 阻塞列表的只有读取 Room 失败；向服务器拉取失败时本地数据照常展示，在顶部提示并可重试
+    val loadState = lazyPagingItems.loadState
+    val isEmpty = lazyPagingItems.itemCount == 0
+    val isLoading = isEmpty && loadState.refresh is LoadState.Loading
+    val loadError = when {
+        errorMessage.value != null -> errorMessage.value
+        isEmpty && loadState.source.refresh is LoadState.Error -> "加载任务失败，请重试"
+        else -> null
+    }
+    val syncFailed = loadState.mediator?.refresh is LoadState.Error || loadState.mediator?.append is LoadState.Error
+    
     Scaffold(
         topBar = {
             TopAppBar(
                 title = { Text(stringResource(R.string.completed_tasks_title)) },
                 actions = {
                     IconButton(
-                        onClick = { loadTasks() }
+                        onClick = {
+                            loadTasks()
+                            onRequestSync()
+                        }
                     ) {
                         Icon(Icons.Default.Refresh, contentDescription = "Refresh")
                     }
@@ -105,103 +107,123 @@ fun CompletedTasksScreen(
                 .fillMaxSize()
                 .padding(paddingValues)
         ) {
-            when {
-                isLoading.value -> {
-                    // 加载状态
-                    Column(
-                        modifier = Modifier.fillMaxSize(),
-                        verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
-                        horizontalAlignment = Alignment.CenterHorizontally
-                    ) {
-                        CircularProgressIndicator()
-                        Text(
-                            text = "加载中...",
-                            modifier = Modifier.padding(top = 16.dp)
-                        )
-                    }
-                }
-                errorMessage.value != null -> {
-                    // 错误状态
-                    Column(
-                        modifier = Modifier.fillMaxSize(),
-                        verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
-                        horizontalAlignment = Alignment.CenterHorizontally
+            Column(modifier = Modifier.fillMaxSize()) {
+                if (syncFailed && loadError == null) {
+                    // 同步失败提示，不遮挡本地数据
+                    Row(
+                        modifier = Modifier
+                            .fillMaxWidth()
+                            .padding(horizontal = 16.dp, vertical = 8.dp),
+                        verticalAlignment = Alignment.CenterVertically
                     ) {
                         Text(
-                            text = errorMessage.value ?: "",
-                            modifier = Modifier.padding(bottom = 16.dp)
+                            text = "无法从服务器加载更多任务",
+                            style = androidx.compose.material3.MaterialTheme.typography.bodyMedium,
+                            color = androidx.compose.material3.MaterialTheme.colorScheme.error,
+                            modifier = Modifier.weight(1f)
                         )
-                        androidx.compose.material3.Button(
-                            onClick = { loadTasks() }
-                        ) {
+                        TextButton(onClick = { lazyPagingItems.retry() }) {
                             Text("重试")
                         }
                     }
                 }
-                tasks.isEmpty() -> {
-                    // 空状态
-                    Column(
-                        modifier = Modifier.fillMaxSize(),
-                        verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
-                        horizontalAlignment = Alignment.CenterHorizontally
-                    ) {
-                        Text(
-                            text = stringResource(R.string.empty_tasks),
-                            style = androidx.compose.material3.MaterialTheme.typography.titleLarge
-                        )
-                        Text(
-                            text = "暂无已完成的任务",
-                            style = androidx.compose.material3.MaterialTheme.typography.bodyLarge,
-                            modifier = Modifier.padding(top = 8.dp)
-                        )
-                    }
-                }
-                else -> {
-                    // 任务列表
-                    LazyColumn(
-                        state = listState,
-                        modifier = Modifier.fillMaxSize(),
-                        contentPadding = PaddingValues(16.dp)
-                    ) {
-                        items(tasks) { task ->
-                            TaskItem(
-                                task = task,
-                                onEdit = {
-                                    // 编辑已完成任务 - 显示任务详情对话框
-                                    selectedTask.value = task
-                                    showTaskDialog.value = true
-                                },
-                                onDelete = {
-                                    coroutineScope.launch {
-                                        try {
-                                            taskRepository.markAsDeleted(task.id)
-                                            val index = tasks.indexOf(task)
-                                            if (index != -1) {
-                                                tasks.removeAt(index)
+                Box(modifier = Modifier.weight(1f)) {
+                    when {
+                        isLoading -> {
+                            // 加载状态
+                            Column(
+                                modifier = Modifier.fillMaxSize(),
+                                verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
+                                horizontalAlignment = Alignment.CenterHorizontally
+                            ) {
+                                CircularProgressIndicator()
+                                Text(
+                                    text = "加载中...",
+                                    modifier = Modifier.padding(top = 16.dp)
+                                )
+                            }
+                        }
+                        loadError != null -> {
+                            // 错误状态
+                            Column(
+                                modifier = Modifier.fillMaxSize(),
+                                verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
+                                horizontalAlignment = Alignment.CenterHorizontally
+                            ) {
+                                Text(
+                                    text = loadError,
+                                    modifier = Modifier.padding(bottom = 16.dp)
+                                )
+                                androidx.compose.material3.Button(
+                                    onClick = { loadTasks() }
+                                ) {
+                                    Text("重试")
+                                }
+                            }
+                        }
+                        isEmpty -> {
+                            // 空状态
+                            Column(
+                                modifier = Modifier.fillMaxSize(),
+                                verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
+                                horizontalAlignment = Alignment.CenterHorizontally
+                            ) {
+                                Text(
+                                    text = stringResource(R.string.empty_tasks),
+                                    style = androidx.compose.material3.MaterialTheme.typography.titleLarge
+                                )
+                                Text(
+                                    text = "暂无已完成的任务",
+                                    style = androidx.compose.material3.MaterialTheme.typography.bodyLarge,
+                                    modifier = Modifier.padding(top = 8.dp)
+                                )
+                            }
+                        }
+                        else -> {
+                            // 任务列表
+                            LazyColumn(
+                                state = listState,
+                                modifier = Modifier.fillMaxSize(),
+                                contentPadding = PaddingValues(16.dp)
+                            ) {
+                                items(
+                                    count = lazyPagingItems.itemCount,
+                                    key = lazyPagingItems.itemKey { it.id }
+                                ) { index ->
+                                    // 未启用占位符，已加载范围内的项不会为 null
+                                    val task = lazyPagingItems[index] ?: return@items
+                                    TaskItem(
+                                        task = task,
+                                        onEdit = {
+                                            // 编辑已完成任务 - 显示任务详情对话框
+                                            selectedTask.value = task
+                                            showTaskDialog.value = true
+                                        },
+                                        onDelete = {
+                                            coroutineScope.launch {
+                                                try {
+                                                    taskRepository.markAsDeleted(task.id)
+                                                } catch (e: Exception) {
+                                                    errorMessage.value = "删除任务失败，请重试"
+                                                }
                                             }
-                                        } catch (e: Exception) {
-                                            errorMessage.value = "删除任务失败，请重试"
-                                        }
-                                    }
-                                },
-                                onToggleComplete = {
-                                    val updatedTask = task.copy(
-                                        isCompleted = !task.isCompleted,
-                                        updatedAt = java.time.LocalDateTime.now()
-                                    )
-                                    coroutineScope.launch {
-                                        try {
-                                            taskRepository.updateTask(updatedTask)
-                                            val index = tasks.indexOf(task)
-                                            if (index != -1) {
-                                                tasks.removeAt(index)
+                                        },
+                                        onToggleComplete = {
+                                            val updatedTask = task.copy(
+                                                isCompleted = !task.isCompleted,
+                                                updatedAt = java.time.LocalDateTime.now()
+                                            )
+                                            coroutineScope.launch {
+                                                try {
+                                                    taskRepository.updateTask(updatedTask)
+                                                } catch (e: Exception) {
+                                                    errorMessage.value = "更新任务失败，请重试"
+                                                }
                                             }
-                                        } catch (e: Exception) {
-                                            errorMessage.value = "更新任务失败，请重试"
                                         }
-                                    }
+                                    )
                                 }
-                            )
+                            }
                         }
                     }
                 }
@@ -37,6 +37,8 @@ import com.example.todo.data.Task
 import com.example.todo.data.TaskRepository
 import com.example.todo.ui.components.TaskItem
 import com.example.todo.ui.components.TaskDialog
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 
 @OptIn(ExperimentalMaterial3Api::class)
@@ -47,22 +49,29 @@ fun MainScreen(taskRepository: TaskRepository) {
     val selectedTask = remember { mutableStateOf<Task?>(null) }
     val isLoading = remember { mutableStateOf(false) }
     val errorMessage = remember { mutableStateOf<String?>(null) }
+    // 逾期任务的 id，随列表一起加载
+    val overdueIds = remember { mutableStateOf<Set<Int>>(emptySet()) }
     val coroutineScope = rememberCoroutineScope()
+    val loadJob = remember { mutableStateOf<Job?>(null) }
     val listState = rememberLazyListState()
     
     fun loadTasks() {
-        coroutineScope.launch {
+        // 新的刷新取消尚未完成的旧刷新，旧结果不会再覆盖列表；底层查询由仓库合并
+        loadJob.value?.cancel()
+        loadJob.value = coroutineScope.launch {
             isLoading.value = true
             errorMessage.value = null
             try {
                 val loadedTasks = taskRepository.getAllActiveTasks()
+                overdueIds.value = taskRepository.getOverdueTasks(java.time.LocalDateTime.now()).mapTo(HashSet()) { it.id }
                 tasks.clear()
                 tasks.addAll(loadedTasks)
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
                 errorMessage.value = "加载任务失败，请重试"
-            } finally {
-                isLoading.value = false
             }
+            isLoading.value = false
         }
     }
     
@@ -161,6 +170,7 @@ fun MainScreen(taskRepository: TaskRepository) {
                         items(tasks) { task ->
                             TaskItem(
                                 task = task,
+                                isOverdue = task.id in overdueIds.value,
                                 onEdit = {
                                     selectedTask.value = task
                                     showDialog.value = true
@@ -0,0 +1,105 @@
+package com.example.todo.ui.screens
+
+import androidx.compose.foundation.layout.Box
+import androidx.compose.foundation.layout.Column
+import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.padding
+import androidx.compose.foundation.rememberScrollState
+import androidx.compose.foundation.verticalScroll
+import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.ArrowBack
+import androidx.compose.material.icons.filled.Delete
+import androidx.compose.material.icons.filled.Refresh
+import androidx.compose.material.icons.filled.Share
+import androidx.compose.material3.ExperimentalMaterial3Api
+import androidx.compose.material3.Icon
+import androidx.compose.material3.IconButton
+import androidx.compose.material3.Scaffold
+import androidx.compose.material3.Text
+import androidx.compose.material3.TopAppBar
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.ui.Alignment
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalClipboardManager
+import androidx.compose.ui.res.stringResource
+import androidx.compose.ui.text.AnnotatedString
+import androidx.compose.ui.text.font.FontFamily
+import androidx.compose.ui.unit.dp
+import com.example.todo.R
+import com.example.todo.network.NetworkMetrics
+
+// 网络指标调试页：展示 NetworkMetrics.dump() 的内容，可复制到剪贴板或清零后重新测量
+@OptIn(ExperimentalMaterial3Api::class)
+@Composable
+fun NetworkMetricsScreen(
+    networkMetrics: NetworkMetrics,
+    onBack: () -> Unit,
+    modifier: Modifier = Modifier
+) {
+    val dump = remember { mutableStateOf(networkMetrics.dump()) }
+    val clipboardManager = LocalClipboardManager.current
+
+    Scaffold(
+        topBar = {
+            TopAppBar(
+                title = { Text(stringResource(R.string.network_metrics_title)) },
+                navigationIcon = {
+                    IconButton(onClick = onBack) {
+                        Icon(Icons.Default.ArrowBack, contentDescription = stringResource(R.string.back))
+                    }
+                },
+                actions = {
+                    IconButton(
+                        onClick = { dump.value = networkMetrics.dump() }
+                    ) {
+                        Icon(Icons.Default.Refresh, contentDescription = stringResource(R.string.refresh))
+                    }
+                    IconButton(
+                        onClick = { clipboardManager.setText(AnnotatedString(dump.value)) }
+                    ) {
+                        Icon(Icons.Default.Share, contentDescription = stringResource(R.string.copy_metrics))
+                    }
+                    IconButton(
+                        onClick = {
+                            networkMetrics.reset()
+                            dump.value = networkMetrics.dump()
+                        }
+                    ) {
+                        Icon(Icons.Default.Delete, contentDescription = stringResource(R.string.reset_metrics))
+                    }
+                }
+            )
+        }
+    ) { paddingValues ->
+        Box(
+            modifier = modifier
+                .fillMaxSize()
+                .padding(paddingValues)
+        ) {
+            if (dump.value.isEmpty()) {
+                Column(
+                    modifier = Modifier.fillMaxSize(),
+                    verticalArrangement = androidx.compose.foundation.layout.Arrangement.Center,
+                    horizontalAlignment = Alignment.CenterHorizontally
+                ) {
+                    Text(
+                        text = "暂无网络请求记录",
+                        style = androidx.compose.material3.MaterialTheme.typography.bodyLarge
+                    )
+                }
+            } else {
+                Text(
+                    text = dump.value,
+                    fontFamily = FontFamily.Monospace,
+                    style = androidx.compose.material3.MaterialTheme.typography.bodySmall,
+                    modifier = Modifier
+                        .fillMaxSize()
+                        .verticalScroll(rememberScrollState())
+                        .padding(16.dp)
+                )
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import androidx.compose.foundation.layout.Box
 import androidx.compose.foundation.layout.Column
 import androidx.compose.foundation.layout.PaddingValues
 import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
@@ -15,6 +16,7 @@ import androidx.compose.material3.CircularProgressIndicator
 import androidx.compose.material3.FloatingActionButton
 import androidx.compose.material3.Icon
 import androidx.compose.material3.IconButton
+import androidx.compose.material3.LinearProgressIndicator
 import androidx.compose.material3.Scaffold
 import androidx.compose.material3.Text
 import androidx.compose.material3.TopAppBar
@@ -33,40 +35,68 @@ import androidx.compose.ui.unit.dp
 import com.example.todo.R
 import com.example.todo.data.Task
 import com.example.todo.data.TaskRepository
+import com.example.todo.di.StartupTimings
 import com.example.todo.ui.components.TaskDialog
 import com.example.todo.ui.components.TaskItem
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
 fun PendingTasksScreen(
     taskRepository: TaskRepository,
+    // 刷新按钮在重新读取本地列表的同时请求一次同步
+    onRequestSync: () -> Unit = {},
     modifier: Modifier = Modifier
 ) {
-    val tasks = remember { mutableStateListOf<Task>() }
+    // 先用上次保存的快照渲染首屏，数据库结果返回后再覆盖。
+    // 快照中的任务缺少完成时间和字段修改时间，isLive 之前的行在修改前按 id 重新读取，不直接写回
+    val tasks = remember {
+        val snapshot = taskRepository.getPendingSnapshot()
+        if (snapshot.isNotEmpty()) {
+            StartupTimings.mark(StartupTimings.FIRST_SNAPSHOT_LIST)
+        }
+        mutableStateListOf<Task>().apply { addAll(snapshot) }
+    }
     val showDialog = remember { mutableStateOf(false) }
     val selectedTask = remember { mutableStateOf<Task?>(null) }
     val isLoading = remember { mutableStateOf(false) }
+    val isLive = remember { mutableStateOf(false) }
     val errorMessage = remember { mutableStateOf<String?>(null) }
+    // 逾期任务的 id，随列表一起加载
+    val overdueIds = remember { mutableStateOf<Set<Int>>(emptySet()) }
     val coroutineScope = rememberCoroutineScope()
+    val loadJob = remember { mutableStateOf<Job?>(null) }
     val listState = rememberLazyListState()
     
     fun loadTasks() {
-        coroutineScope.launch {
+        // 新的刷新取消尚未完成的旧刷新，旧结果不会再覆盖列表；底层查询由仓库合并
+        loadJob.value?.cancel()
+        loadJob.value = coroutineScope.launch {
             isLoading.value = true
             errorMessage.value = null
             try {
                 val loadedTasks = taskRepository.getPendingTasks()
+                overdueIds.value = taskRepository.getOverdueTasks(java.time.LocalDateTime.now()).mapTo(HashSet()) { it.id }
                 tasks.clear()
                 tasks.addAll(loadedTasks)
+                isLive.value = true
+                StartupTimings.mark(StartupTimings.FIRST_TASK_LIST)
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
                 errorMessage.value = "加载任务失败，请重试"
-            } finally {
-                isLoading.value = false
             }
+            isLoading.value = false
         }
     }
     
+    // 快照中的行先从数据库取回完整的任务；已被删除或完成时返回 null
+    suspend fun currentTask(task: Task): Task? {
+        return if (isLive.value) task else taskRepository.getTaskById(task.id)
+    }
+    
     // 加载任务列表
     LaunchedEffect(Unit) {
         loadTasks()
@@ -78,7 +108,10 @@ fun PendingTasksScreen(
                 title = { Text(stringResource(R.string.pending_tasks_title)) },
                 actions = {
                     IconButton(
-                        onClick = { loadTasks() }
+                        onClick = {
+                            loadTasks()
+                            onRequestSync()
+                        }
                     ) {
                         Icon(Icons.Default.Refresh, contentDescription = "Refresh")
                     }
@@ -102,7 +135,7 @@ fun PendingTasksScreen(
                 .padding(paddingValues)
         ) {
             when {
-                isLoading.value -> {
+                isLoading.value && tasks.isEmpty() -> {
                     // 加载状态
                     Column(
                         modifier = Modifier.fillMaxSize(),
@@ -162,9 +195,21 @@ fun PendingTasksScreen(
                         items(tasks) { task ->
                             TaskItem(
                                 task = task,
+                                isOverdue = task.id in overdueIds.value,
                                 onEdit = {
-                                    selectedTask.value = task
-                                    showDialog.value = true
+                                    coroutineScope.launch {
+                                        try {
+                                            val current = currentTask(task)
+                                            if (current == null) {
+                                                tasks.remove(task)
+                                                return@launch
+                                            }
+                                            selectedTask.value = current
+                                            showDialog.value = true
+                                        } catch (e: Exception) {
+                                            errorMessage.value = "加载任务失败，请重试"
+                                        }
+                                    }
                                 },
                                 onDelete = {
                                     coroutineScope.launch {
@@ -177,13 +222,17 @@ fun PendingTasksScreen(
                                     }
                                 },
                                 onToggleComplete = {
-                                    val updatedTask = task.copy(
-                                        isCompleted = !task.isCompleted,
-                                        updatedAt = java.time.LocalDateTime.now()
-                                    )
                                     coroutineScope.launch {
                                         try {
-                                            taskRepository.updateTask(updatedTask)
+                                            val current = currentTask(task)
+                                            if (current != null) {
+                                                taskRepository.updateTask(
+                                                    current.copy(
+                                                        isCompleted = !current.isCompleted,
+                                                        updatedAt = java.time.LocalDateTime.now()
+                                                    )
+                                                )
+                                            }
                                             val index = tasks.indexOf(task)
                                             if (index != -1) {
                                                 tasks.removeAt(index)
@@ -199,6 +248,11 @@ fun PendingTasksScreen(
                 }
             }
             
+            // 列表显示的是快照或正在刷新时，顶部显示进度条，提示内容可能不是最新的
+            if (tasks.isNotEmpty() && isLoading.value) {
+                LinearProgressIndicator(modifier = Modifier.fillMaxWidth())
+            }
+            
             // 任务编辑对话框
             if (showDialog.value) {
                 TaskDialog(
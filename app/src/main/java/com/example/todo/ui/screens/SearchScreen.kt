@@ -38,6 +38,8 @@ import com.example.todo.data.Task
 import com.example.todo.data.TaskRepository
 import com.example.todo.ui.components.TaskItem
 import kotlinx.coroutines.delay
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 
 @OptIn(ExperimentalMaterial3Api::class)
@@ -50,29 +52,38 @@ fun SearchScreen(
     val tasks = remember { mutableStateListOf<Task>() }
     val isLoading = remember { mutableStateOf(false) }
     val errorMessage = remember { mutableStateOf<String?>(null) }
+    // 逾期任务的 id，随列表一起加载
+    val overdueIds = remember { mutableStateOf<Set<Int>>(emptySet()) }
     val coroutineScope = rememberCoroutineScope()
+    val searchJob = remember { mutableStateOf<Job?>(null) }
     val listState = rememberLazyListState()
     val keyboardController = LocalSoftwareKeyboardController.current
     
     fun performSearch(query: String) {
         if (query.length < 2) {
+            searchJob.value?.cancel()
+            isLoading.value = false
             tasks.clear()
             return
         }
         
-        coroutineScope.launch {
+        // 新的输入取消尚未完成的旧搜索，旧结果不会再覆盖列表
+        searchJob.value?.cancel()
+        searchJob.value = coroutineScope.launch {
             isLoading.value = true
             errorMessage.value = null
             try {
                 delay(300) // Debounce search
                 val searchResults = taskRepository.searchTasks(query)
+                overdueIds.value = taskRepository.getOverdueTasks(java.time.LocalDateTime.now()).mapTo(HashSet()) { it.id }
                 tasks.clear()
                 tasks.addAll(searchResults)
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
                 errorMessage.value = "搜索失败，请重试"
-            } finally {
-                isLoading.value = false
             }
+            isLoading.value = false
         }
     }
     
@@ -189,6 +200,7 @@ fun SearchScreen(
                             items(tasks) { task ->
                                 TaskItem(
                                     task = task,
+                                    isOverdue = task.id in overdueIds.value,
                                     onEdit = {
                                         // 编辑任务
                                     },
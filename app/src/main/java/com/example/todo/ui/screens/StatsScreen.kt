@@ -1,16 +1,24 @@
 package com.example.todo.ui.screens
 
+import androidx.compose.foundation.horizontalScroll
+import androidx.compose.foundation.layout.Arrangement
 import androidx.compose.foundation.layout.Box
 import androidx.compose.foundation.layout.Column
 import androidx.compose.foundation.layout.PaddingValues
 import androidx.compose.foundation.layout.fillMaxSize
+import androidx.compose.foundation.layout.fillMaxWidth
 import androidx.compose.foundation.layout.height
 import androidx.compose.foundation.layout.padding
+import androidx.compose.foundation.layout.Row
 import androidx.compose.foundation.layout.wrapContentHeight
+import androidx.compose.foundation.rememberScrollState
+import androidx.compose.foundation.verticalScroll
 import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.Info
 import androidx.compose.material.icons.filled.Refresh
 import androidx.compose.material3.CircularProgressIndicator
 import androidx.compose.material3.ExperimentalMaterial3Api
+import androidx.compose.material3.FilterChip
 import androidx.compose.material3.Icon
 import androidx.compose.material3.IconButton
 import androidx.compose.material3.Scaffold
@@ -25,57 +33,110 @@ import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.res.stringArrayResource
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.unit.dp
-import androidx.compose.ui.viewinterop.AndroidView
 import com.example.todo.R
-import com.example.todo.data.Task
+import com.example.todo.data.BucketSize
+import com.example.todo.data.CompletionCalendar
+import com.example.todo.data.ProductivitySummary
+import com.example.todo.data.StatsRange
+import com.example.todo.data.StatsSeries
+import com.example.todo.data.TaskCounts
 import com.example.todo.data.TaskRepository
-import com.github.mikephil.charting.charts.BarChart
-import com.github.mikephil.charting.components.XAxis
-import com.github.mikephil.charting.data.BarData
-import com.github.mikephil.charting.data.BarDataSet
-import com.github.mikephil.charting.data.BarEntry
-import com.github.mikephil.charting.formatter.IndexAxisValueFormatter
+import com.example.todo.stats.CycleTimeStats
+import com.example.todo.stats.CycleTimeSummary
+import com.example.todo.stats.OnTimeSummary
+import com.example.todo.stats.TaskAnalytics
+import com.example.todo.ui.components.BarChart
+import com.example.todo.ui.components.CompletionHeatmap
+import com.example.todo.ui.components.HeatmapData
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 import java.time.LocalDate
 import java.time.format.DateTimeFormatter
-import java.time.temporal.ChronoUnit
+import kotlin.math.roundToInt
 
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
 fun StatsScreen(
     taskRepository: TaskRepository,
+    cycleTimeStats: CycleTimeStats,
+    taskAnalytics: TaskAnalytics,
+    // 为空时不显示网络指标入口（release 构建）
+    onOpenNetworkMetrics: (() -> Unit)? = null,
     modifier: Modifier = Modifier
 ) {
-    val tasks = remember { mutableStateOf<List<Task>>(emptyList()) }
+    val statsData = remember { mutableStateOf<StatsData?>(null) }
     val isLoading = remember { mutableStateOf(false) }
     val errorMessage = remember { mutableStateOf<String?>(null) }
     val coroutineScope = rememberCoroutineScope()
+    val loadJob = remember { mutableStateOf<Job?>(null) }
+    val selectedRange = remember { mutableStateOf(StatsRange.WEEK) }
+    val heatmap = remember { mutableStateOf<HeatmapData?>(null) }
+    val productivity = remember { mutableStateOf<ProductivitySummary?>(null) }
     
-    fun loadTasks() {
-        coroutineScope.launch {
-            isLoading.value = true
+    // showLoading 为 false 时（切换范围）保留当前内容直到新数据就绪；相邻范围已预取时切换是即时的
+    fun loadStats(showLoading: Boolean = true) {
+        // 新的刷新取消尚未完成的旧刷新，旧结果不会再覆盖页面
+        loadJob.value?.cancel()
+        loadJob.value = coroutineScope.launch {
+            if (showLoading) isLoading.value = true
             errorMessage.value = null
             try {
-                val allTasks = taskRepository.getAllActiveTasks()
-                tasks.value = allTasks
+                val range = selectedRange.value
+                val counts = taskRepository.getTaskCounts()
+                val series = taskRepository.getCreatedSeries(range)
+                val cycleTime = cycleTimeStats.summary(range)
+                val onTime = taskAnalytics.onTimeSummary(range)
+                // 从范围的第一天算起（柱状图从第一个分组的起点开始，可能早于范围）
+                val completedInRange = taskAnalytics.completedCount(range)
+                statsData.value = buildStatsData(counts, series, cycleTime, onTime, completedInRange)
+                adjacentRanges(range).forEach { taskRepository.prefetchCreatedSeries(it) }
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
                 errorMessage.value = "加载数据失败，请重试"
-            } finally {
-                isLoading.value = false
             }
+            isLoading.value = false
         }
     }
     
-    // 加载任务数据
+    // 加载统计数据
     LaunchedEffect(Unit) {
-        loadTasks()
+        loadStats()
+    }
+    
+    // 热力图和连续天数直接读取仓库维护的每日完成数，任务变化后只复制最近一年的计数
+    LaunchedEffect(taskRepository) {
+        try {
+            taskRepository.getCompletionCalendar().version.collect {
+                val calendar = taskRepository.getCompletionCalendar()
+                val today = LocalDate.now()
+                heatmap.value = buildHeatmapData(calendar, today)
+                productivity.value = calendar.productivity(today)
+            }
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            // 加载失败时不显示这两部分，不影响其他统计
+            heatmap.value = null
+            productivity.value = null
+        }
     }
     
-    // 计算统计数据
-    val statsData = remember(tasks.value) {
-        calculateStats(tasks.value)
+    // 手动刷新时顺带从头重建每日完成数并与增量结果比较，不一致时仓库改用重建结果，页面随 version 更新
+    fun verifyCompletionStats() {
+        coroutineScope.launch {
+            try {
+                taskRepository.verifyCompletionCalendar()
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                // 校验失败时保留当前结果
+            }
+        }
     }
     
     Scaffold(
@@ -84,10 +145,20 @@ fun StatsScreen(
                 title = { Text(stringResource(R.string.stats_title)) },
                 actions = {
                     IconButton(
-                        onClick = { loadTasks() }
+                        onClick = {
+                            loadStats()
+                            verifyCompletionStats()
+                        }
                     ) {
                         Icon(Icons.Default.Refresh, contentDescription = "Refresh")
                     }
+                    if (onOpenNetworkMetrics != null) {
+                        IconButton(
+                            onClick = onOpenNetworkMetrics
+                        ) {
+                            Icon(Icons.Default.Info, contentDescription = stringResource(R.string.network_metrics_title))
+                        }
+                    }
                 }
             )
         }
@@ -124,13 +195,13 @@ fun StatsScreen(
                             modifier = Modifier.padding(bottom = 16.dp)
                         )
                         androidx.compose.material3.Button(
-                            onClick = { loadTasks() }
+                            onClick = { loadStats() }
                         ) {
                             Text("重试")
                         }
                     }
                 }
-                tasks.value.isEmpty() -> {
+                statsData.value.let { it == null || it.totalTasks == 0 } -> {
                     // 空状态
                     Column(
                         modifier = Modifier.fillMaxSize(),
@@ -150,9 +221,11 @@ fun StatsScreen(
                 }
                 else -> {
                     // 统计数据
+                    val stats = statsData.value ?: return@Box
                     Column(
                         modifier = Modifier
                             .fillMaxSize()
+                            .verticalScroll(rememberScrollState())
                             .padding(16.dp)
                     ) {
                         // 统计卡片
@@ -172,7 +245,7 @@ fun StatsScreen(
                                     style = androidx.compose.material3.MaterialTheme.typography.bodyMedium
                                 )
                                 Text(
-                                    text = statsData.totalTasks.toString(),
+                                    text = stats.totalTasks.toString(),
                                     style = androidx.compose.material3.MaterialTheme.typography.displayMedium
                                 )
                                 
@@ -182,7 +255,7 @@ fun StatsScreen(
                                     modifier = Modifier.padding(top = 16.dp)
                                 )
                                 Text(
-                                    text = statsData.completedTasks.toString(),
+                                    text = stats.completedTasks.toString(),
                                     style = androidx.compose.material3.MaterialTheme.typography.displayMedium
                                 )
                                 
@@ -192,7 +265,7 @@ fun StatsScreen(
                                     modifier = Modifier.padding(top = 16.dp)
                                 )
                                 Text(
-                                    text = statsData.pendingTasks.toString(),
+                                    text = stats.pendingTasks.toString(),
                                     style = androidx.compose.material3.MaterialTheme.typography.displayMedium
                                 )
                                 
@@ -202,65 +275,168 @@ fun StatsScreen(
                                     modifier = Modifier.padding(top = 16.dp)
                                 )
                                 Text(
-                                    text = "${statsData.completionRate}%",
+                                    text = "${stats.completionRate}%",
                                     style = androidx.compose.material3.MaterialTheme.typography.displayMedium
                                 )
                             }
                             
-                            // 最近7天任务柱状图
+                            // 所选范围内新建任务柱状图
                             Text(
-                                text = stringResource(R.string.last_7_days),
+                                text = rangeTitle(stats.series.range),
                                 style = androidx.compose.material3.MaterialTheme.typography.headlineSmall,
-                                modifier = Modifier.padding(bottom = 16.dp)
+                                modifier = Modifier.padding(bottom = 8.dp)
                             )
+                            Row(
+                                modifier = Modifier
+                                    .padding(bottom = 8.dp)
+                                    .horizontalScroll(rememberScrollState()),
+                                horizontalArrangement = Arrangement.spacedBy(8.dp)
+                            ) {
+                                StatsRange.values().forEach { range ->
+                                    FilterChip(
+                                        selected = selectedRange.value == range,
+                                        onClick = {
+                                            if (selectedRange.value != range) {
+                                                selectedRange.value = range
+                                                loadStats(showLoading = false)
+                                            }
+                                        },
+                                        label = { Text(rangeChipLabel(range)) }
+                                    )
+                                }
+                            }
                             
-                            // MPAndroidChart BarChart
-                            AndroidView(
-                                factory = { context ->
-                                    BarChart(context).apply {
-                                        // 配置图表
-                                        description.isEnabled = false
-                                        setTouchEnabled(true)
-                                        setDrawGridBackground(false)
-                                        setDrawBarShadow(false)
-                                        
-                                        // 配置X轴
-                                        xAxis.position = XAxis.XAxisPosition.BOTTOM
-                                        xAxis.setDrawGridLines(false)
-                                        xAxis.valueFormatter = IndexAxisValueFormatter(statsData.last7DaysLabels)
-                                        xAxis.granularity = 1f
-                                        xAxis.setLabelCount(statsData.last7DaysLabels.size, true)
-                                        
-                                        // 配置Y轴
-                                        axisLeft.setDrawGridLines(true)
-                                        axisLeft.granularity = 1f
-                                        axisLeft.setLabelCount(5, true)
-                                        axisRight.isEnabled = false
-                                        
-                                        // 设置数据
-                                        val entries = mutableListOf<BarEntry>()
-                                        statsData.last7DaysData.forEachIndexed { index, count ->
-                                            entries.add(BarEntry(index.toFloat(), count.toFloat()))
-                                        }
-                                        
-                                        val dataSet = BarDataSet(entries, "任务数")
-                                        dataSet.color = context.getColor(android.R.color.holo_blue_light)
-                                        dataSet.valueTextColor = context.getColor(android.R.color.black)
-                                        dataSet.valueTextSize = 12f
-                                        
-                                        val data = BarData(dataSet)
-                                        data.barWidth = 0.6f
-                                        
-                                        this.data = data
-                                        // 动画效果
-                                        animateXY(1000, 1000)
-                                        invalidate()
-                                    }
-                                },
+                            Text(
+                                text = stringResource(R.string.completed_in_range, stats.completedInRange),
+                                style = androidx.compose.material3.MaterialTheme.typography.bodyMedium,
+                                modifier = Modifier.padding(bottom = 8.dp)
+                            )
+                            
+                            BarChart(
+                                values = stats.series.counts,
+                                labels = stats.labels,
                                 modifier = Modifier
-                                    .fillMaxSize()
+                                    .fillMaxWidth()
                                     .height(300.dp)
                             )
+                            
+                            // 所选范围内完成任务的周期时间
+                            Text(
+                                text = stringResource(R.string.cycle_time),
+                                style = androidx.compose.material3.MaterialTheme.typography.headlineSmall,
+                                modifier = Modifier.padding(top = 24.dp, bottom = 8.dp)
+                            )
+                            val cycleTime = stats.cycleTime
+                            if (cycleTime.p50Minutes == null || cycleTime.p90Minutes == null) {
+                                Text(
+                                    text = stringResource(R.string.cycle_time_empty),
+                                    style = androidx.compose.material3.MaterialTheme.typography.bodyMedium
+                                )
+                            } else {
+                                Row(horizontalArrangement = Arrangement.spacedBy(32.dp)) {
+                                    Column {
+                                        Text(
+                                            text = stringResource(R.string.cycle_time_p50),
+                                            style = androidx.compose.material3.MaterialTheme.typography.bodyMedium
+                                        )
+                                        Text(
+                                            text = formatDuration(cycleTime.p50Minutes),
+                                            style = androidx.compose.material3.MaterialTheme.typography.headlineMedium
+                                        )
+                                    }
+                                    Column {
+                                        Text(
+                                            text = stringResource(R.string.cycle_time_p90),
+                                            style = androidx.compose.material3.MaterialTheme.typography.bodyMedium
+                                        )
+                                        Text(
+                                            text = formatDuration(cycleTime.p90Minutes),
+                                            style = androidx.compose.material3.MaterialTheme.typography.headlineMedium
+                                        )
+                                    }
+                                }
+                                Text(
+                                    text = stringResource(R.string.cycle_time_count, cycleTime.count),
+                                    style = androidx.compose.material3.MaterialTheme.typography.bodySmall,
+                                    modifier = Modifier.padding(top = 4.dp)
+                                )
+                            }
+                            
+                            // 设置了到期时间的已完成任务中按时完成的比例
+                            val onTime = stats.onTime
+                            if (onTime.completedWithDue > 0) {
+                                Text(
+                                    text = stringResource(R.string.on_time_rate),
+                                    style = androidx.compose.material3.MaterialTheme.typography.bodyMedium,
+                                    modifier = Modifier.padding(top = 16.dp)
+                                )
+                                Text(
+                                    text = "${onTime.rate}%",
+                                    style = androidx.compose.material3.MaterialTheme.typography.headlineMedium
+                                )
+                                Text(
+                                    text = stringResource(R.string.on_time_count, onTime.onTime, onTime.completedWithDue),
+                                    style = androidx.compose.material3.MaterialTheme.typography.bodySmall,
+                                    modifier = Modifier.padding(top = 4.dp)
+                                )
+                            }
+                            
+                            // 连续完成天数和按星期的完成数
+                            productivity.value?.let { summary ->
+                                Text(
+                                    text = stringResource(R.string.productivity),
+                                    style = androidx.compose.material3.MaterialTheme.typography.headlineSmall,
+                                    modifier = Modifier.padding(top = 24.dp, bottom = 8.dp)
+                                )
+                                Row(horizontalArrangement = Arrangement.spacedBy(32.dp)) {
+                                    Column {
+                                        Text(
+                                            text = stringResource(R.string.current_streak),
+                                            style = androidx.compose.material3.MaterialTheme.typography.bodyMedium
+                                        )
+                                        Text(
+                                            text = stringResource(R.string.streak_days, summary.currentStreak),
+                                            style = androidx.compose.material3.MaterialTheme.typography.headlineMedium
+                                        )
+                                    }
+                                    Column {
+                                        Text(
+                                            text = stringResource(R.string.longest_streak),
+                                            style = androidx.compose.material3.MaterialTheme.typography.bodyMedium
+                                        )
+                                        Text(
+                                            text = stringResource(R.string.streak_days, summary.longestStreak),
+                                            style = androidx.compose.material3.MaterialTheme.typography.headlineMedium
+                                        )
+                                    }
+                                }
+                                Text(
+                                    text = stringResource(R.string.completed_by_weekday),
+                                    style = androidx.compose.material3.MaterialTheme.typography.bodyMedium,
+                                    modifier = Modifier.padding(top = 16.dp, bottom = 8.dp)
+                                )
+                                val weekdayLabels = stringArrayResource(R.array.weekday_short).toList()
+                                BarChart(
+                                    values = remember(summary) { summary.weekdayTotals.toList() },
+                                    labels = weekdayLabels,
+                                    modifier = Modifier
+                                        .fillMaxWidth()
+                                        .height(160.dp)
+                                )
+                            }
+                            
+                            // 最近一年每天完成的任务数
+                            heatmap.value?.let { data ->
+                                Text(
+                                    text = stringResource(R.string.completion_heatmap),
+                                    style = androidx.compose.material3.MaterialTheme.typography.headlineSmall,
+                                    modifier = Modifier.padding(top = 24.dp, bottom = 8.dp)
+                                )
+                                CompletionHeatmap(
+                                    data = data,
+                                    modifier = Modifier.fillMaxWidth()
+                                )
+                            }
                         }
                     }
                 }
@@ -269,45 +445,83 @@ fun StatsScreen(
     }
 }
 
+@Composable
+private fun rangeTitle(range: StatsRange): String {
+    val days = range.days
+    return if (days != null) stringResource(R.string.last_n_days, days) else stringResource(R.string.all_time)
+}
+
+@Composable
+private fun rangeChipLabel(range: StatsRange): String {
+    val days = range.days
+    return if (days != null) stringResource(R.string.range_days, days) else stringResource(R.string.all_time_short)
+}
+
+// 周期时间按量级显示为分钟、小时或天
+@Composable
+private fun formatDuration(minutes: Double): String = when {
+    minutes < 60 -> stringResource(R.string.duration_minutes, minutes.roundToInt())
+    minutes < 24 * 60 -> stringResource(R.string.duration_hours, minutes / 60)
+    else -> stringResource(R.string.duration_days, minutes / (24 * 60))
+}
+
+private const val HEATMAP_WEEKS = 53
+
+// 以今天所在周为最后一列，向前取 HEATMAP_WEEKS 周
+private fun buildHeatmapData(calendar: CompletionCalendar, today: LocalDate): HeatmapData {
+    val firstDay = BucketSize.WEEK.startOf(today).minusWeeks(HEATMAP_WEEKS - 1L)
+    val counts = IntArray(HEATMAP_WEEKS * 7)
+    calendar.copyInto(firstDay.toEpochDay(), counts)
+    return HeatmapData(firstDay = firstDay, weeks = HEATMAP_WEEKS, today = today, counts = counts)
+}
+
+// 切换到这些范围的概率最高，当前范围加载完成后在后台预取
+private fun adjacentRanges(range: StatsRange): List<StatsRange> {
+    val ranges = StatsRange.values()
+    return listOfNotNull(ranges.getOrNull(range.ordinal - 1), ranges.getOrNull(range.ordinal + 1))
+}
+
 // 统计数据类
 data class StatsData(
     val totalTasks: Int,
     val completedTasks: Int,
     val pendingTasks: Int,
     val completionRate: Int,
-    val last7DaysData: List<Int>,
-    val last7DaysLabels: List<String>
+    // 所选范围内每个分组新建的任务数，labels 与 series.counts 一一对应
+    val series: StatsSeries,
+    val labels: List<String>,
+    val cycleTime: CycleTimeSummary,
+    val onTime: OnTimeSummary,
+    // 所选范围内完成的任务数
+    val completedInRange: Int
 )
 
-// 计算统计数据
-fun calculateStats(tasks: List<Task>): StatsData {
-    val totalTasks = tasks.size
-    val completedTasks = tasks.count { it.isCompleted }
+private val DAY_LABEL_FORMATTER = DateTimeFormatter.ofPattern("MM/dd")
+private val MONTH_LABEL_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM")
+
+// 由数据库汇总结果组装统计数据
+fun buildStatsData(
+    counts: TaskCounts,
+    series: StatsSeries,
+    cycleTime: CycleTimeSummary,
+    onTime: OnTimeSummary,
+    completedInRange: Int
+): StatsData {
+    val totalTasks = counts.total
+    val completedTasks = counts.completed
     val pendingTasks = totalTasks - completedTasks
     val completionRate = if (totalTasks > 0) (completedTasks * 100) / totalTasks else 0
-    
-    // 计算最近7天的任务数据
-    val last7DaysData = mutableListOf<Int>()
-    val last7DaysLabels = mutableListOf<String>()
-    val formatter = DateTimeFormatter.ofPattern("MM/dd")
-    
-    for (i in 6 downTo 0) {
-        val date = LocalDate.now().minusDays(i.toLong())
-        val dayTasks = tasks.count { task ->
-            val taskDate = task.createdAt.toLocalDate()
-            taskDate.isEqual(date)
-        }
-        
-        last7DaysData.add(dayTasks)
-        last7DaysLabels.add(date.format(formatter))
-    }
+    val formatter = if (series.bucketSize == BucketSize.MONTH) MONTH_LABEL_FORMATTER else DAY_LABEL_FORMATTER
     
     return StatsData(
         totalTasks = totalTasks,
         completedTasks = completedTasks,
         pendingTasks = pendingTasks,
         completionRate = completionRate,
-        last7DaysData = last7DaysData,
-        last7DaysLabels = last7DaysLabels
+        series = series,
+        labels = series.starts.map { it.format(formatter) },
+        cycleTime = cycleTime,
+        onTime = onTime,
+        completedInRange = completedInRange
     )
 }
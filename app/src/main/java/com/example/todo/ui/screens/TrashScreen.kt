@@ -35,6 +35,8 @@ import com.example.todo.R
 import com.example.todo.data.Task
 import com.example.todo.data.TaskRepository
 import com.example.todo.ui.components.TaskItem
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
 
 @OptIn(ExperimentalMaterial3Api::class)
@@ -48,22 +50,25 @@ fun TrashScreen(
     val errorMessage = remember { mutableStateOf<String?>(null) }
     val showEmptyDialog = remember { mutableStateOf(false) }
     val coroutineScope = rememberCoroutineScope()
+    val loadJob = remember { mutableStateOf<Job?>(null) }
     val listState = rememberLazyListState()
     
     fun loadTasks() {
-        coroutineScope.launch {
+        // 新的刷新取消尚未完成的旧刷新，旧结果不会再覆盖列表；底层查询由仓库合并
+        loadJob.value?.cancel()
+        loadJob.value = coroutineScope.launch {
             isLoading.value = true
             errorMessage.value = null
             try {
-                val allTasks = taskRepository.getAllTasks()
-                val deletedTasks = allTasks.filter { it.isDeleted }
+                val deletedTasks = taskRepository.getDeletedTasks()
                 tasks.clear()
                 tasks.addAll(deletedTasks)
+            } catch (e: CancellationException) {
+                throw e
             } catch (e: Exception) {
                 errorMessage.value = "加载任务失败: ${e.message}"
-            } finally {
-                isLoading.value = false
             }
+            isLoading.value = false
         }
     }
     
@@ -0,0 +1,192 @@
+package com.example.todo.data
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.LocalDate
+import kotlin.random.Random
+
+class CompletionCalendarTest {
+    private val calendar = CompletionCalendar()
+
+    @Test
+    fun incrementalUpdatesMatchRebuild() {
+        val random = Random(1)
+        val tasks = HashMap<Int, Task>()
+        repeat(40) { id ->
+            tasks[id] = task(id, completedDay = if (random.nextBoolean()) DAY + random.nextInt(-30, 30) else null)
+        }
+        load(tasks.values)
+
+        repeat(2_000) { step ->
+            val id = random.nextInt(60)
+            val previous = tasks[id]
+            val current = when (random.nextInt(5)) {
+                0 -> task(id, completedDay = DAY + random.nextInt(-400, 400))
+                1 -> previous?.copy(isCompleted = false, completedAt = null)
+                2 -> previous?.copy(isDeleted = !previous.isDeleted)
+                3 -> previous?.copy(title = "edited $step")
+                else -> null
+            }
+            if (current == null) tasks.remove(id) else tasks[id] = current
+            calendar.onTaskChanged(previous, current)
+
+            val expected = CompletionState.rebuild(dayCounts(tasks.values))
+            assertTrue("step $step", calendar.snapshot()!!.sameAs(expected))
+        }
+    }
+
+    @Test
+    fun growsInBothDirections() {
+        load(listOf(task(1, completedDay = DAY), task(2, completedDay = DAY + 1)))
+
+        calendar.onTaskChanged(null, task(3, completedDay = DAY - 1_000))
+        calendar.onTaskChanged(null, task(4, completedDay = DAY + 2_000))
+
+        val counts = IntArray(3)
+        calendar.copyInto(DAY - 1, counts)
+        assertArrayEquals(intArrayOf(0, 1, 1), counts)
+        calendar.copyInto(DAY - 1_000, counts)
+        assertArrayEquals(intArrayOf(1, 0, 0), counts)
+        calendar.copyInto(DAY + 1_999, counts)
+        assertArrayEquals(intArrayOf(0, 1, 0), counts)
+        assertEquals(DAY - 1_000, calendar.firstDay())
+        assertEquals(4, calendar.snapshot()!!.total)
+    }
+
+    @Test
+    fun weekdayTotalsFollowTheCompletionDay() {
+        load(emptyList())
+        val monday = LocalDate.of(2024, 3, 4).toEpochDay()
+        val done = task(1, completedDay = monday)
+
+        calendar.onTaskChanged(null, done)
+        assertEquals(1, calendar.productivity(LocalDate.ofEpochDay(monday)).weekdayTotals[0])
+
+        calendar.onTaskChanged(done, task(1, completedDay = monday + 2))
+        val totals = calendar.productivity(LocalDate.ofEpochDay(monday)).weekdayTotals
+        assertEquals(0, totals[0])
+        assertEquals(1, totals[2])
+    }
+
+    @Test
+    fun changesThatKeepTheDayDoNotBumpVersion() {
+        val done = task(1, completedDay = DAY)
+        load(listOf(done))
+        val version = calendar.version.value
+
+        calendar.onTaskChanged(done, done.copy(title = "renamed", description = "more"))
+
+        assertEquals(version, calendar.version.value)
+    }
+
+    @Test
+    fun loadStartedBeforeAChangeIsNotInstalled() {
+        val token = calendar.beginLoad()
+        calendar.onTaskChanged(null, task(1, completedDay = DAY))
+
+        assertFalse(calendar.install(token, listOf(DayCount(DAY, 5))))
+        assertFalse(calendar.isLoaded)
+        assertTrue(calendar.install(calendar.beginLoad(), listOf(DayCount(DAY, 1))))
+    }
+
+    @Test
+    fun invalidateUnloadsUntilNextInstall() {
+        load(listOf(task(1, completedDay = DAY)))
+        val token = calendar.beginLoad()
+
+        calendar.invalidate()
+
+        assertFalse(calendar.isLoaded)
+        assertNull(calendar.snapshot())
+        assertFalse(calendar.install(token, emptyList()))
+        // 未加载时的修改只作废进行中的加载，不记入计数
+        calendar.onTaskChanged(null, task(2, completedDay = DAY))
+        assertNull(calendar.snapshot())
+    }
+
+    @Test
+    fun longestStreakJoinsAdjacentRuns() {
+        load(listOf(
+            task(1, completedDay = DAY), task(2, completedDay = DAY + 1),
+            task(3, completedDay = DAY + 3), task(4, completedDay = DAY + 4), task(5, completedDay = DAY + 5)
+        ))
+        assertEquals(3, longest())
+
+        calendar.onTaskChanged(null, task(6, completedDay = DAY + 2))
+
+        assertEquals(6, longest())
+    }
+
+    @Test
+    fun breakingTheLongestRunRescans() {
+        val middle = task(3, completedDay = DAY + 2)
+        load(listOf(
+            task(1, completedDay = DAY), task(2, completedDay = DAY + 1), middle,
+            task(4, completedDay = DAY + 3), task(5, completedDay = DAY + 4),
+            task(6, completedDay = DAY + 10), task(7, completedDay = DAY + 11)
+        ))
+        assertEquals(5, longest())
+
+        calendar.onTaskChanged(middle, middle.copy(isCompleted = false, completedAt = null))
+        assertEquals(2, longest())
+
+        // 拆断较短的一段不影响最长连续
+        calendar.onTaskChanged(task(7, completedDay = DAY + 11), null)
+        assertEquals(2, longest())
+    }
+
+    @Test
+    fun secondTaskOnADayDoesNotChangeStreak() {
+        val first = task(1, completedDay = DAY)
+        load(listOf(first, task(2, completedDay = DAY + 1)))
+
+        calendar.onTaskChanged(null, task(3, completedDay = DAY))
+        calendar.onTaskChanged(first, null)
+
+        assertEquals(2, longest())
+    }
+
+    @Test
+    fun currentStreakCountsFromYesterdayUntilTodayHasACompletion() {
+        load(listOf(task(1, completedDay = DAY - 2), task(2, completedDay = DAY - 1)))
+        val today = LocalDate.ofEpochDay(DAY)
+
+        assertEquals(2, calendar.productivity(today).currentStreak)
+
+        calendar.onTaskChanged(null, task(3, completedDay = DAY))
+        assertEquals(3, calendar.productivity(today).currentStreak)
+
+        // 前天断开后只剩昨天和今天
+        calendar.onTaskChanged(task(1, completedDay = DAY - 2), null)
+        assertEquals(2, calendar.productivity(today).currentStreak)
+        assertEquals(0, calendar.productivity(today.plusDays(2)).currentStreak)
+    }
+
+    private fun longest(): Int = calendar.productivity(LocalDate.ofEpochDay(DAY)).longestStreak
+
+    private fun load(tasks: Collection<Task>) {
+        assertTrue(calendar.install(calendar.beginLoad(), dayCounts(tasks)))
+    }
+
+    private fun dayCounts(tasks: Collection<Task>): List<DayCount> {
+        return tasks.mapNotNull(CompletionCalendar::completionDay)
+            .groupingBy { it }
+            .eachCount()
+            .map { (day, count) -> DayCount(day, count) }
+    }
+
+    private fun task(id: Int, completedDay: Long?): Task = Task(
+        id = id,
+        title = "task $id",
+        isCompleted = completedDay != null,
+        completedAt = completedDay?.let { LocalDate.ofEpochDay(it).atTime(12, 0) }
+    )
+
+    companion object {
+        private val DAY = LocalDate.of(2024, 3, 1).toEpochDay()
+    }
+}
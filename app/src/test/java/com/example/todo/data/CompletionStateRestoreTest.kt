@@ -0,0 +1,93 @@
+package com.example.todo.data
+
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.File
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+@RunWith(RobolectricTestRunner::class)
+class CompletionStateRestoreTest {
+    private val repositories = TestRepositories()
+    private val taskDao = repositories.database.taskDao()
+    private val stateFile = File(repositories.dir, "completion_state.bin")
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun unchangedDatabaseRestoresSavedState() = runBlocking {
+        taskDao.insertTask(completed("a", DAY))
+        repositories.taskRepository.getCompletionCalendar()
+        repositories.taskRepository.saveCompletionState()
+
+        // 保存的计数与数据库不同，恢复成功时能看出来自文件
+        val saved = CompletionStateStore(stateFile).read()!!
+        val marked = CompletionState.rebuild(listOf(DayCount(DAY.toEpochDay(), 7))).withWriteVersion(saved.writeVersion)
+        CompletionStateStore(stateFile).write(marked)
+
+        assertEquals(7, restarted().getCompletionCalendar().snapshot()!!.total)
+    }
+
+    @Test
+    fun changeThatKeepsTheTotalIsNotRestoredStale() = runBlocking {
+        val first = taskDao.getTaskById(taskDao.insertTask(completed("a", DAY)).toInt())!!
+        val open = taskDao.getTaskById(taskDao.insertTask(Task(title = "b")).toInt())!!
+        repositories.taskRepository.getCompletionCalendar()
+        repositories.taskRepository.saveCompletionState()
+
+        // 绕过仓库：完成一个、删除一个，完成总数不变但日期变了
+        val later = DAY.plusDays(3)
+        taskDao.updateTask(open.copy(isCompleted = true, completedAt = later.atTime(12, 0)))
+        taskDao.updateTask(first.copy(isDeleted = true))
+
+        val counts = IntArray(4)
+        restarted().getCompletionCalendar().copyInto(DAY.toEpochDay(), counts)
+        assertTrue(counts.contentEquals(intArrayOf(0, 0, 0, 1)))
+    }
+
+    @Test
+    fun writeVersionOnlyMovesOnCompletionRelevantWrites() = runBlocking {
+        val start = taskDao.getWriteVersion()
+        val id = taskDao.insertTask(Task(title = "open")).toInt()
+        taskDao.updateTask(taskDao.getTaskById(id)!!.copy(title = "renamed", updatedAt = LocalDateTime.now()))
+        assertEquals(start, taskDao.getWriteVersion())
+
+        val done = taskDao.getTaskById(id)!!.copy(isCompleted = true, completedAt = DAY.atTime(9, 0))
+        taskDao.updateTask(done)
+        assertEquals(start + 1, taskDao.getWriteVersion())
+
+        taskDao.updateTask(done.copy(description = "notes"))
+        assertEquals(start + 1, taskDao.getWriteVersion())
+
+        taskDao.updateTask(done.copy(isDeleted = true))
+        taskDao.deleteTaskById(id)
+        assertEquals(start + 3, taskDao.getWriteVersion())
+    }
+
+    // 同一数据库和状态文件上的新仓库，相当于重启
+    private fun restarted() = TaskRepository(
+        taskDaoProvider = lazyOf(taskDao),
+        applicationScope = repositories.scope,
+        dispatchers = repositories.dispatchers,
+        pendingSnapshot = PendingTasksSnapshot(File(repositories.dir, "pending_snapshot.bin")),
+        completionStore = CompletionStateStore(stateFile)
+    )
+
+    private fun completed(title: String, day: LocalDate) = Task(
+        title = title,
+        isCompleted = true,
+        completedAt = day.atTime(12, 0)
+    )
+
+    companion object {
+        private val DAY = LocalDate.of(2024, 3, 1)
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.todo.data
+
+import com.example.todo.network.RetrofitClient
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class RemoteIdMergeTest {
+    private val repositories = TestRepositories()
+    private val taskDao = repositories.database.taskDao()
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun serverIdEqualToLocalIdDoesNotOverwriteLocalTask() = runBlocking {
+        val localId = taskDao.insertTask(Task(title = "local only")).toInt()
+
+        taskDao.mergeRemoteTasks(listOf(remote(remoteId = localId, title = "from server")))
+
+        assertEquals("local only", taskDao.getTaskById(localId)?.title)
+        val inserted = taskDao.getTaskByRemoteId(localId)!!
+        assertNotEquals(localId, inserted.id)
+        assertEquals("from server", inserted.title)
+    }
+
+    @Test
+    fun mergeMatchesByRemoteIdFieldByField() = runBlocking {
+        val id = taskDao.insertTask(
+            Task(title = "local title", description = "local", remoteId = 7, titleChangedAt = 200, descriptionChangedAt = 100)
+        ).toInt()
+
+        taskDao.mergeRemoteTasks(
+            listOf(remote(remoteId = 7, title = "server title", titleChangedAt = 150).copy(description = "server", descriptionChangedAt = 150))
+        )
+
+        val merged = taskDao.getTaskById(id)!!
+        assertEquals("local title", merged.title)
+        assertEquals("server", merged.description)
+        assertEquals(7, merged.remoteId)
+        assertEquals(1, taskDao.getTasksByRemoteIds(listOf(7)).size)
+    }
+
+    @Test
+    fun tombstoneLosesToLaterLocalRestore() = runBlocking {
+        val id = taskDao.insertTask(Task(title = "restored", remoteId = 3, deletedChangedAt = 500)).toInt()
+
+        taskDao.applyRemoteChanges(emptyList(), listOf(TaskTombstone(taskId = 3, deletedChangedAt = 400)))
+        assertFalse(taskDao.getTaskById(id)!!.isDeleted)
+
+        taskDao.applyRemoteChanges(emptyList(), listOf(TaskTombstone(taskId = 3, deletedChangedAt = 600)))
+        val deleted = taskDao.getTaskById(id)!!
+        assertTrue(deleted.isDeleted)
+        assertEquals(600, deleted.deletedChangedAt)
+    }
+
+    @Test
+    fun tombstoneForUnknownTaskIsIgnored() = runBlocking {
+        val id = taskDao.insertTask(Task(title = "local")).toInt()
+
+        taskDao.applyRemoteChanges(emptyList(), listOf(TaskTombstone(taskId = id, deletedChangedAt = Long.MAX_VALUE)))
+
+        assertFalse(taskDao.getTaskById(id)!!.isDeleted)
+    }
+
+    @Test
+    fun assignRemoteIdFoldsEarlierServerCopy() = runBlocking {
+        val created = taskDao.insertTaskWithOutbox(Task(title = "mine"))
+        // 推送先于上传结果到达，按服务器 id 插入了一行副本，其中描述是服务器上更新的修改
+        taskDao.mergeRemoteTasks(
+            listOf(remote(remoteId = 42, title = "mine", titleChangedAt = created.titleChangedAt)
+                .copy(description = "edited elsewhere", descriptionChangedAt = created.descriptionChangedAt + 1))
+        )
+
+        assertTrue(taskDao.assignRemoteId(created.id, 42))
+
+        val tasks = taskDao.getTasksByRemoteIds(listOf(42))
+        assertEquals(1, tasks.size)
+        assertEquals(created.id, tasks[0].id)
+        assertEquals("edited elsewhere", tasks[0].description)
+        assertFalse(taskDao.assignRemoteId(created.id, 42))
+    }
+
+    @Test
+    fun permanentDeleteKeepsRemoteIdInOutbox() = runBlocking {
+        val id = taskDao.insertTask(Task(title = "synced", remoteId = 9)).toInt()
+
+        taskDao.deleteTaskByIdWithOutbox(id)
+
+        val entry = repositories.database.outboxDao().getEntriesPage(afterTaskId = 0, limit = 100).single()
+        assertEquals(OutboxOp.DELETE, entry.op)
+        assertEquals(9, entry.remoteId)
+        assertNull(taskDao.getTaskById(id))
+    }
+
+    @Test
+    fun remoteIdAssignedAfterPermanentDeleteReachesOutbox() = runBlocking {
+        val created = taskDao.insertTaskWithOutbox(Task(title = "short lived"))
+        taskDao.deleteTaskByIdWithOutbox(created.id)
+
+        taskDao.assignRemoteId(created.id, 77)
+
+        val delete = repositories.database.outboxDao().getEntriesPage(afterTaskId = 0, limit = 100).single { it.op == OutboxOp.DELETE }
+        assertEquals(77, delete.remoteId)
+    }
+
+    @Test
+    fun jsonIdIsTheServerId() {
+        val parsed = RetrofitClient.gson.fromJson("""{"id":12,"title":"t"}""", Task::class.java)
+        assertEquals(12, parsed.remoteId)
+        assertEquals(0, parsed.id)
+
+        val json = RetrofitClient.gson.toJson(Task(id = 5, remoteId = null, title = "new"))
+        assertTrue(json.contains("\"id\":null") || !json.contains("\"id\""))
+    }
+
+    private fun remote(remoteId: Int, title: String, titleChangedAt: Long = 100): Task {
+        return Task(remoteId = remoteId, title = title, titleChangedAt = titleChangedAt)
+    }
+}
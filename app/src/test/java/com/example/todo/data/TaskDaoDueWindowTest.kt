@@ -0,0 +1,116 @@
+package com.example.todo.data
+
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.LocalDateTime
+
+@RunWith(RobolectricTestRunner::class)
+class TaskDaoDueWindowTest {
+    private val repositories = TestRepositories()
+    private val taskDao = repositories.database.taskDao()
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun dueBetweenIsHalfOpenAndOrdered() = runBlocking {
+        insert("before", BASE.minusMinutes(1))
+        insert("at end", BASE.plusHours(2))
+        insert("second", BASE.plusHours(1))
+        insert("at start", BASE)
+
+        val titles = taskDao.getPendingTasksDueBetween(BASE, BASE.plusHours(2)).map { it.title }
+
+        assertEquals(listOf("at start", "second"), titles)
+    }
+
+    @Test
+    fun dueBetweenSkipsCompletedDeletedAndUndated() = runBlocking {
+        insert("pending", BASE.plusMinutes(10))
+        insert("completed", BASE.plusMinutes(20), completed = true)
+        insert("deleted", BASE.plusMinutes(30), deleted = true)
+        insert("undated", null)
+
+        val titles = taskDao.getPendingTasksDueBetween(BASE, BASE.plusDays(1)).map { it.title }
+
+        assertEquals(listOf("pending"), titles)
+    }
+
+    @Test
+    fun nextDueFromReturnsEarliestPendingAtOrAfter() = runBlocking {
+        insert("past", BASE.minusDays(1))
+        insert("later", BASE.plusDays(3))
+        insert("done", BASE.plusDays(1), completed = true)
+        insert("exact", BASE)
+
+        assertEquals("exact", taskDao.getNextPendingTaskDueFrom(BASE)?.title)
+        assertEquals("later", taskDao.getNextPendingTaskDueFrom(BASE.plusSeconds(1))?.title)
+        assertNull(taskDao.getNextPendingTaskDueFrom(BASE.plusDays(4)))
+    }
+
+    @Test
+    fun overdueIsStrictlyBeforeNowAndPendingOnly() = runBlocking {
+        insert("second", BASE.minusMinutes(1))
+        insert("first", BASE.minusDays(2))
+        insert("due now", BASE)
+        insert("future", BASE.plusHours(1))
+        insert("completed", BASE.minusHours(1), completed = true)
+        insert("deleted", BASE.minusHours(2), deleted = true)
+        insert("undated", null)
+
+        val titles = repositories.taskRepository.getOverdueTasks(BASE).map { it.title }
+
+        assertEquals(listOf("first", "second"), titles)
+    }
+
+    @Test
+    fun overdueQueryUsesTheDueDateIndex() {
+        val plan = ArrayList<String>()
+        repositories.database.openHelper.readableDatabase.query(
+            "EXPLAIN QUERY PLAN SELECT * FROM tasks WHERE isDeleted = 0 AND isCompleted = 0 AND dueDate < ? ORDER BY dueDate ASC",
+            arrayOf<Any?>(0L)
+        ).use { cursor ->
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(cursor.getColumnIndexOrThrow("detail")))
+            }
+        }
+
+        // 走复合索引区间查找，且不需要额外排序
+        assertTrue(plan.toString(), plan.any { it.contains("index_tasks_isDeleted_isCompleted_dueDate") })
+        assertTrue(plan.toString(), plan.none { it.contains("TEMP B-TREE") })
+    }
+
+    @Test
+    fun reminderSweepPostsOnlyTheWindowTwentyFourHoursAhead() = runBlocking {
+        val posted = ArrayList<Int>()
+        val service = NotificationService(ApplicationProvider.getApplicationContext()) { id, _ -> posted.add(id) }
+        insert("overdue", BASE.minusHours(1))
+        insert("tomorrow", BASE.plusHours(24).plusMinutes(30))
+        insert("too late", BASE.plusHours(25))
+        insert("done", BASE.plusHours(24), completed = true)
+
+        service.checkTasksForReminders(repositories.taskRepository, BASE)
+
+        val expected = taskDao.getPendingTasksDueBetween(BASE.plusHours(24), BASE.plusHours(25)).single()
+        assertEquals("tomorrow", expected.title)
+        // 单个任务直接发一条子通知，id 为 1000 + task.id
+        assertEquals(listOf(1000 + expected.id), posted)
+    }
+
+    private suspend fun insert(title: String, dueDate: LocalDateTime?, completed: Boolean = false, deleted: Boolean = false) {
+        taskDao.insertTask(Task(title = title, dueDate = dueDate, isCompleted = completed, isDeleted = deleted))
+    }
+
+    companion object {
+        private val BASE = LocalDateTime.of(2024, 3, 1, 9, 0)
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.todo.data
+
+import com.example.todo.network.TaskPatch
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.time.LocalDateTime
+
+class TaskFieldsTest {
+    private val base = Task(
+        id = 1,
+        remoteId = 10,
+        title = "title",
+        description = "description",
+        createdAt = T0,
+        updatedAt = T0,
+        titleChangedAt = 100,
+        descriptionChangedAt = 100,
+        completedChangedAt = 100,
+        deletedChangedAt = 100,
+        dueDateChangedAt = 100
+    )
+
+    @Test
+    fun mergeTakesTheNewerValueOfEachField() {
+        val local = base.copy(title = "local title", titleChangedAt = 300, description = "local", descriptionChangedAt = 150)
+        val remote = base.copy(id = 0, title = "remote title", titleChangedAt = 200, description = "remote", descriptionChangedAt = 250)
+
+        val merged = TaskFields.merge(local, remote)
+
+        assertEquals("local title", merged.title)
+        assertEquals(300, merged.titleChangedAt)
+        assertEquals("remote", merged.description)
+        assertEquals(250, merged.descriptionChangedAt)
+        // 本地 id 与创建时间来自本地行
+        assertEquals(1, merged.id)
+        assertEquals(T0, merged.createdAt)
+    }
+
+    @Test
+    fun mergeTieGoesToRemote() {
+        val local = base.copy(title = "local")
+        val remote = base.copy(title = "remote")
+
+        assertEquals("remote", TaskFields.merge(local, remote).title)
+    }
+
+    @Test
+    fun mergeIsIdempotentAndOrderIndependentWithoutTies() {
+        val a = base.copy(title = "a", titleChangedAt = 300, isCompleted = true, completedChangedAt = 120, dueDate = T0, dueDateChangedAt = 500)
+        val b = base.copy(title = "b", titleChangedAt = 200, isCompleted = false, completedChangedAt = 400, isDeleted = true, deletedChangedAt = 600)
+
+        val ab = TaskFields.merge(a, b)
+        val ba = TaskFields.merge(b, a)
+
+        assertEquals(ab, TaskFields.merge(ab, b))
+        assertEquals(fieldsOf(ab), fieldsOf(ba))
+        assertEquals(listOf<Any?>("a", 300L, false, 400L, true, 600L, T0, 500L), fieldsOf(ab))
+    }
+
+    @Test
+    fun mergeDerivesCompletedAtFromTheWinningSide() {
+        val changedAt = 1_700_000_000_000
+        val local = base.copy(isCompleted = false, completedAt = null)
+        val remote = base.copy(isCompleted = true, completedChangedAt = changedAt, completedAt = null)
+
+        val completed = TaskFields.merge(local, remote)
+        assertEquals(TaskFields.completedAtFor(true, null, changedAt), completed.completedAt)
+
+        val reopened = TaskFields.merge(completed, base.copy(isCompleted = false, completedChangedAt = changedAt + 1))
+        assertNull(reopened.completedAt)
+    }
+
+    @Test
+    fun stampAdvancesOnlyChangedFieldsEvenWhenClockGoesBack() {
+        val previous = base.copy(titleChangedAt = 1_000)
+        val edited = previous.copy(title = "new", isCompleted = true)
+        val fields = TaskFields.changedFields(previous, edited)
+
+        val stamped = TaskFields.stamp(edited, previous, fields, now = 500)
+
+        assertEquals(TaskField.TITLE.mask or TaskField.COMPLETED.mask, fields)
+        assertEquals(1_001, stamped.titleChangedAt)
+        assertEquals(500, stamped.completedChangedAt)
+        assertEquals(100, stamped.descriptionChangedAt)
+        assertNotNull(stamped.completedAt)
+    }
+
+    @Test
+    fun patchAppliesOnlyListedFieldsAndClearsDueDate() {
+        val task = base.copy(dueDate = T0)
+        val first = TaskPatch(taskId = 10, changedAt = mapOf("title" to 200L), title = "patched")
+        val second = TaskPatch(taskId = 10, changedAt = mapOf("dueDate" to 300L))
+
+        val patched = (first + second).applyTo(task)
+
+        assertEquals("patched", patched.title)
+        assertEquals(200, patched.titleChangedAt)
+        assertNull(patched.dueDate)
+        assertEquals(300, patched.dueDateChangedAt)
+        assertEquals("description", patched.description)
+        assertEquals(100, patched.descriptionChangedAt)
+    }
+
+    private fun fieldsOf(task: Task): List<Any?> = listOf(
+        task.title, task.titleChangedAt,
+        task.isCompleted, task.completedChangedAt,
+        task.isDeleted, task.deletedChangedAt,
+        task.dueDate, task.dueDateChangedAt
+    )
+
+    companion object {
+        private val T0 = LocalDateTime.of(2024, 3, 1, 9, 0)
+    }
+}
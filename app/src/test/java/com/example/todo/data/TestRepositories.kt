@@ -0,0 +1,39 @@
+package com.example.todo.data
+
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import com.example.todo.di.AppDispatchers
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import java.io.File
+import java.nio.file.Files
+
+/**
+ * 测试用的内存数据库和仓库，与 AppContainer 的组装方式相同，只是数据库不落盘、快照文件放在临时目录。
+ * 用完调用 [close]。
+ */
+class TestRepositories : AutoCloseable {
+    val database: TaskDatabase = Room.inMemoryDatabaseBuilder(
+        ApplicationProvider.getApplicationContext(),
+        TaskDatabase::class.java
+    ).addCallback(TaskDatabase.CALLBACK).build()
+
+    val scope = CoroutineScope(SupervisorJob())
+    val dispatchers = AppDispatchers()
+    val dir: File = Files.createTempDirectory("todo-test").toFile()
+
+    val taskRepository = TaskRepository(
+        taskDaoProvider = lazyOf(database.taskDao()),
+        applicationScope = scope,
+        dispatchers = dispatchers,
+        pendingSnapshot = PendingTasksSnapshot(File(dir, "pending_snapshot.bin")),
+        completionStore = CompletionStateStore(File(dir, "completion_state.bin"))
+    )
+
+    override fun close() {
+        scope.cancel()
+        database.close()
+        dir.deleteRecursively()
+    }
+}
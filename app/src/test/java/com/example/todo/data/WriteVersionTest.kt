@@ -0,0 +1,71 @@
+package com.example.todo.data
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.LocalDateTime
+
+@RunWith(RobolectricTestRunner::class)
+class WriteVersionTest {
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private var database: TaskDatabase? = null
+
+    @After
+    fun tearDown() {
+        database?.close()
+        context.deleteDatabase(NAME)
+    }
+
+    @Test
+    fun destructiveMigrationRecreatesTableAndTriggers() = runBlocking {
+        // 没有迁移路径的 v1 库，带着上一次安装留下的写入版本
+        val file = context.getDatabasePath(NAME).apply { parentFile?.mkdirs() }
+        SQLiteDatabase.openOrCreateDatabase(file, null).use { old ->
+            old.execSQL("CREATE TABLE tasks (id INTEGER PRIMARY KEY, title TEXT)")
+            old.execSQL("CREATE TABLE task_write_version (id INTEGER PRIMARY KEY NOT NULL, version INTEGER NOT NULL)")
+            old.execSQL("INSERT INTO task_write_version VALUES (0, $STALE_VERSION)")
+            old.version = 1
+        }
+
+        val db = TaskDatabase.buildDatabase(context, NAME).also { database = it }
+        val taskDao = db.taskDao()
+        val version = taskDao.getWriteVersion()
+
+        assertNotEquals(STALE_VERSION, version)
+        assertEquals(listOf("task_write_version_delete", "task_write_version_insert", "task_write_version_update"), triggers(db))
+
+        taskDao.insertTask(Task(title = "done", isCompleted = true, completedAt = LocalDateTime.now()))
+        assertEquals(version + 1, taskDao.getWriteVersion())
+    }
+
+    @Test
+    fun reopeningKeepsTheVersion() = runBlocking {
+        val first = TaskDatabase.buildDatabase(context, NAME)
+        first.taskDao().insertTask(Task(title = "done", isCompleted = true, completedAt = LocalDateTime.now()))
+        val version = first.taskDao().getWriteVersion()
+        first.close()
+
+        val db = TaskDatabase.buildDatabase(context, NAME).also { database = it }
+
+        assertEquals(version, db.taskDao().getWriteVersion())
+        assertEquals(3, triggers(db).size)
+    }
+
+    private fun triggers(db: TaskDatabase): List<String> {
+        return db.openHelper.readableDatabase
+            .query("SELECT name FROM sqlite_master WHERE type = 'trigger' AND tbl_name = 'tasks' ORDER BY name")
+            .use { cursor -> List(cursor.count) { cursor.moveToNext(); cursor.getString(0) } }
+    }
+
+    companion object {
+        private const val NAME = "write_version_test.db"
+        private const val STALE_VERSION = 5L
+    }
+}
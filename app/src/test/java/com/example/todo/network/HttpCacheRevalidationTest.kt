@@ -0,0 +1,96 @@
+package com.example.todo.network
+
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class HttpCacheRevalidationTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val server = MockWebServer()
+    private val client: OkHttpClient by lazy { RetrofitClient.createHttpClient(folder.root) }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun etagIsRevalidatedAndNotModifiedIsServedFromCache() {
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody(BODY))
+        server.enqueue(MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""))
+
+        assertEquals(BODY, get().use { it.body!!.string() })
+        get().use { response ->
+            assertEquals(BODY, response.body!!.string())
+            assertEquals(304, response.networkResponse?.code)
+            assertNotNull(response.cacheResponse)
+        }
+
+        server.takeRequest()
+        val revalidation = server.takeRequest()
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"))
+        // 服务器第二次只返回了不带响应体的 304，响应体来自缓存
+        assertEquals(2, server.requestCount)
+    }
+
+    @Test
+    fun lastModifiedIsRevalidatedAndNotModifiedIsServedFromCache() {
+        val lastModified = "Fri, 01 Mar 2024 09:00:00 GMT"
+        server.enqueue(MockResponse().setHeader("Last-Modified", lastModified).setBody(BODY))
+        server.enqueue(MockResponse().setResponseCode(304))
+
+        get().close()
+        get().use { response ->
+            assertEquals(BODY, response.body!!.string())
+            assertEquals(304, response.networkResponse?.code)
+        }
+
+        server.takeRequest()
+        assertEquals(lastModified, server.takeRequest().getHeader("If-Modified-Since"))
+    }
+
+    @Test
+    fun changedResourceReplacesTheCachedCopy() {
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setBody(BODY))
+        server.enqueue(MockResponse().setHeader("ETag", "\"v2\"").setBody("[2]"))
+        server.enqueue(MockResponse().setResponseCode(304))
+
+        get().close()
+        assertEquals("[2]", get().use { it.body!!.string() })
+        assertEquals("[2]", get().use { it.body!!.string() })
+
+        server.takeRequest()
+        server.takeRequest()
+        assertEquals("\"v2\"", server.takeRequest().getHeader("If-None-Match"))
+    }
+
+    @Test
+    fun explicitCacheControlIsLeftAlone() {
+        server.enqueue(MockResponse().setHeader("ETag", "\"v1\"").setHeader("Cache-Control", "max-age=60").setBody(BODY))
+
+        get().close()
+        get().use { response ->
+            assertEquals(BODY, response.body!!.string())
+            assertNull(response.networkResponse)
+        }
+
+        assertEquals(1, server.requestCount)
+    }
+
+    private fun get(): Response = client.newCall(Request.Builder().url(server.url("/tasks")).build()).execute()
+
+    companion object {
+        private const val BODY = """[{"id":1,"title":"t"}]"""
+    }
+}
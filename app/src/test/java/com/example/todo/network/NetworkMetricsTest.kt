@@ -0,0 +1,147 @@
+package com.example.todo.network
+
+import kotlinx.coroutines.runBlocking
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.SocketPolicy
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.net.ConnectException
+import java.net.ServerSocket
+import java.util.concurrent.TimeUnit
+
+class NetworkMetricsTest {
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val server = MockWebServer()
+    private val metrics = NetworkMetrics()
+    // 与应用相同的客户端组装：应用拦截器、网络拦截器和 HTTP 缓存
+    private val client: OkHttpClient by lazy { RetrofitClient.createHttpClient(folder.root, metrics) }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+    }
+
+    @Test
+    fun countsCallsBytesRetriesAndErrorsPerEndpoint() = runBlocking {
+        server.enqueue(MockResponse().setBody("first"))
+        // 服务器读完请求后断开连接池里的连接，OkHttp 在新连接上重试一次
+        server.enqueue(MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST))
+        server.enqueue(MockResponse().setBody("second!"))
+        server.enqueue(MockResponse().setResponseCode(201).setBody("{\"id\":3}"))
+        server.enqueue(MockResponse().setResponseCode(500).setBody("oops"))
+        server.enqueue(MockResponse().setBody("{}"))
+
+        assertEquals("first", call(get("/tasks/1")))
+        assertEquals("second!", call(get("/tasks/2")))
+        assertEquals("{\"id\":3}", call(Request.Builder().url(server.url("/tasks")).post(POST_BODY.toRequestBody(JSON)).build()))
+        assertEquals("oops", call(get("/tasks/4")))
+        RetrofitClient.createApiService(client, server.url("/").toString()).getTaskChanges(since = null, limit = 10)
+        val closedPort = ServerSocket(0).use { it.localPort }
+        assertThrows(ConnectException::class.java) {
+            call(Request.Builder().url("http://127.0.0.1:$closedPort/offline").build())
+        }
+
+        val stats = metrics.snapshot().associateBy { it.endpoint }
+        assertEquals(setOf("GET /offline", "GET /tasks/{id}", "POST /tasks", "getTaskChanges"), stats.keys)
+
+        val byId = stats.getValue("GET /tasks/{id}")
+        assertEquals(3, byId.calls)
+        assertEquals(1, byId.retries)
+        assertEquals(1, byId.failures)
+        assertEquals(mapOf("HTTP 5xx" to 1L), byId.errors)
+        assertEquals(0, byId.requestBytes)
+        assertEquals(("first" + "second!" + "oops").length.toLong(), byId.responseBytes)
+
+        val post = stats.getValue("POST /tasks")
+        assertEquals(1, post.calls)
+        assertEquals(0, post.failures)
+        assertEquals(POST_BODY.length.toLong(), post.requestBytes)
+        assertEquals("{\"id\":3}".length.toLong(), post.responseBytes)
+
+        // Retrofit 调用按接口方法名归类
+        val changes = stats.getValue("getTaskChanges")
+        assertEquals(1, changes.calls)
+        assertEquals(2, changes.responseBytes)
+
+        // 连接失败在网络拦截器之前，只记调用和错误类型
+        val offline = stats.getValue("GET /offline")
+        assertEquals(1, offline.calls)
+        assertEquals(0, offline.retries)
+        assertEquals(mapOf("ConnectException" to 1L), offline.errors)
+        assertEquals(0, offline.responseBytes)
+
+        assertEquals(6, stats.values.sumOf { it.latencyBuckets.sum() })
+    }
+
+    @Test
+    fun latencyPercentilesFollowTheHistogramBuckets() {
+        // 150ms 落在 (100, 250] 桶，600ms 落在 (500, 1000] 桶，两侧都留出足够余量
+        repeat(8) { server.enqueue(MockResponse().setHeadersDelay(150, TimeUnit.MILLISECONDS).setBody("ok")) }
+        repeat(2) { server.enqueue(MockResponse().setHeadersDelay(600, TimeUnit.MILLISECONDS).setBody("ok")) }
+
+        repeat(10) { call(get("/slow")) }
+
+        val stats = metrics.snapshot().single()
+        assertEquals(8, stats.latencyBuckets[bucketOf(250)])
+        assertEquals(2, stats.latencyBuckets[bucketOf(1_000)])
+        assertEquals(250, stats.latencyPercentileMillis(0.50))
+        assertEquals(250, stats.latencyPercentileMillis(0.80))
+        assertEquals(1_000, stats.latencyPercentileMillis(0.90))
+        assertEquals(1_000, stats.latencyPercentileMillis(0.99))
+        assertTrue(stats.maxLatencyMillis in 600..1_000)
+        assertTrue(stats.meanLatencyMillis >= (8 * 150 + 2 * 600) / 10)
+    }
+
+    @Test
+    fun percentileReturnsBucketUpperBoundOrObservedMax() {
+        val buckets = LongArray(NetworkMetrics.LATENCY_BUCKETS_MILLIS.size + 1)
+        buckets[bucketOf(25)] = 5
+        buckets[bucketOf(100)] = 3
+        buckets[buckets.size - 1] = 2
+        val stats = snapshot(buckets, maxLatencyMillis = 12_345)
+
+        assertEquals(25, stats.latencyPercentileMillis(0.0))
+        assertEquals(25, stats.latencyPercentileMillis(0.50))
+        assertEquals(100, stats.latencyPercentileMillis(0.80))
+        // 落在最后一个桶时没有上界，返回观测到的最大值
+        assertEquals(12_345, stats.latencyPercentileMillis(0.90))
+        assertEquals(0, snapshot(LongArray(buckets.size), maxLatencyMillis = 0).latencyPercentileMillis(0.50))
+    }
+
+    private fun get(path: String): Request = Request.Builder().url(server.url(path)).build()
+
+    private fun call(request: Request): String = client.newCall(request).execute().use { it.body!!.string() }
+
+    private fun bucketOf(upperBound: Long): Int = NetworkMetrics.LATENCY_BUCKETS_MILLIS.indexOf(upperBound)
+
+    private fun snapshot(buckets: LongArray, maxLatencyMillis: Long) = NetworkMetrics.EndpointSnapshot(
+        endpoint = "test",
+        calls = buckets.sum(),
+        failures = 0,
+        cacheHits = 0,
+        retries = 0,
+        requestBytes = 0,
+        responseBytes = 0,
+        latencyBuckets = buckets,
+        totalLatencyMillis = 0,
+        maxLatencyMillis = maxLatencyMillis,
+        errors = emptyMap()
+    )
+
+    companion object {
+        private val JSON = "application/json".toMediaType()
+        private const val POST_BODY = "{\"title\":\"a\"}"
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.todo.network
+
+import com.example.todo.data.Task
+import com.google.gson.GsonBuilder
+import com.google.gson.JsonObject
+import com.google.gson.reflect.TypeToken
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.time.LocalDateTime
+
+class TaskJsonAdaptersTest {
+    private val gson = RetrofitClient.gson
+
+    @Test
+    fun taskRoundTrips() {
+        val task = Task(
+            remoteId = 42,
+            title = "标题 \"quoted\"\n",
+            description = "d",
+            isCompleted = true,
+            dueDate = LocalDateTime.of(2024, 3, 1, 18, 30),
+            createdAt = LocalDateTime.of(2024, 2, 28, 9, 0, 5, 120_000_000),
+            updatedAt = LocalDateTime.of(2024, 3, 1, 10, 0),
+            completedAt = LocalDateTime.of(2024, 3, 1, 10, 0),
+            titleChangedAt = 1,
+            descriptionChangedAt = 2,
+            completedChangedAt = 3,
+            deletedChangedAt = 4,
+            dueDateChangedAt = 5
+        )
+
+        assertEquals(task, gson.fromJson(gson.toJson(task), Task::class.java))
+    }
+
+    @Test
+    fun nullFieldsAreWrittenAndReadAsNull() {
+        val task = Task(title = "t", createdAt = T0, updatedAt = T0)
+
+        val json = gson.fromJson(gson.toJson(task), JsonObject::class.java)
+        val decoded = gson.fromJson(json, Task::class.java)
+
+        assertTrue(json.get("id").isJsonNull)
+        assertTrue(json.get("dueDate").isJsonNull)
+        assertTrue(json.get("completedAt").isJsonNull)
+        assertNull(decoded.remoteId)
+        assertNull(decoded.dueDate)
+        assertEquals(task, decoded)
+    }
+
+    @Test
+    fun unknownKeysAndExplicitNullsAreSkipped() {
+        val json = """{"id":7,"extra":{"nested":[1,{"a":null}]},"title":"t","description":null,""" +
+            """"createdAt":"2024-03-01T09:00:00","updatedAt":"2024-03-01T09:00:00","tags":["x"],"titleChangedAt":9}"""
+
+        val task = gson.fromJson(json, Task::class.java)
+
+        assertEquals(7, task.remoteId)
+        assertEquals(0, task.id)
+        assertEquals("t", task.title)
+        assertEquals("", task.description)
+        assertEquals(9, task.titleChangedAt)
+    }
+
+    @Test
+    fun dateFormats() {
+        val cases = mapOf(
+            "2024-03-01T09:05:07" to LocalDateTime.of(2024, 3, 1, 9, 5, 7),
+            "2024-03-01T09:05:07.250" to LocalDateTime.of(2024, 3, 1, 9, 5, 7, 250_000_000),
+            // 数据库中旧的 CURRENT_TIMESTAMP 格式
+            "2024-03-01 09:05:07" to LocalDateTime.of(2024, 3, 1, 9, 5, 7),
+            // 以下不是固定格式，回退到 ISO 解析
+            "2024-03-01T09:05" to LocalDateTime.of(2024, 3, 1, 9, 5),
+            "2024-03-01T09:05:07.123456789" to LocalDateTime.of(2024, 3, 1, 9, 5, 7, 123_456_789)
+        )
+        cases.forEach { (text, expected) -> assertEquals(text, expected, LocalDateTimeCodec.parse(text)) }
+
+        assertEquals("2024-03-01T09:05:07", LocalDateTimeCodec.format(LocalDateTime.of(2024, 3, 1, 9, 5, 7)))
+        assertEquals("2024-03-01T09:05:07.005", LocalDateTimeCodec.format(LocalDateTime.of(2024, 3, 1, 9, 5, 7, 5_000_000)))
+        listOf(
+            LocalDateTime.of(2024, 3, 1, 9, 5, 7, 1),
+            LocalDateTime.of(12_345, 1, 1, 0, 0),
+            LocalDateTime.of(1, 1, 1, 0, 0)
+        ).forEach { value ->
+            assertEquals(value, LocalDateTimeCodec.parse(LocalDateTimeCodec.format(value)))
+        }
+    }
+
+    @Test
+    fun matchesReflectiveFieldNamesExceptId() {
+        val reflective = reflectiveGson().toJsonTree(Task(id = 3, remoteId = 42, title = "t", createdAt = T0, updatedAt = T0)).asJsonObject
+        val handWritten = gson.toJsonTree(Task(id = 3, remoteId = 42, title = "t", createdAt = T0, updatedAt = T0)).asJsonObject
+
+        // 反射方式输出本地 id 与 remoteId，手写适配器把服务器 id 写为 id；其余字段名和取值相同
+        reflective.remove("id")
+        reflective.add("id", reflective.remove("remoteId"))
+        reflective.entrySet().forEach { (name, value) ->
+            if (!value.isJsonNull) assertEquals(name, value, handWritten.get(name))
+        }
+    }
+
+    // 1 万个任务编解码的耗时对比，只打印结果。反射方式同样为 LocalDateTime 注册适配器，否则无法处理 java.time
+    @Test
+    fun benchmarkAgainstReflectiveGson() {
+        val tasks = List(10_000) { i ->
+            Task(
+                remoteId = i,
+                title = "task $i",
+                description = "description $i",
+                isCompleted = i % 2 == 0,
+                dueDate = if (i % 3 == 0) T0.plusHours(i.toLong()) else null,
+                createdAt = T0.plusMinutes(i.toLong()),
+                updatedAt = T0.plusMinutes(i.toLong() + 1),
+                completedAt = if (i % 2 == 0) T0.plusDays(1) else null,
+                titleChangedAt = i.toLong()
+            )
+        }
+        val reflective = reflectiveGson()
+        val listType = TypeToken.getParameterized(List::class.java, Task::class.java).type
+
+        fun measure(block: () -> Unit): Long {
+            repeat(3) { block() }
+            var best = Long.MAX_VALUE
+            repeat(5) {
+                val start = System.nanoTime()
+                block()
+                best = minOf(best, System.nanoTime() - start)
+            }
+            return best / 1_000_000
+        }
+
+        val handJson = gson.toJson(tasks)
+        val reflectiveJson = reflective.toJson(tasks)
+        val handEncode = measure { gson.toJson(tasks) }
+        val reflectiveEncode = measure { reflective.toJson(tasks) }
+        val handDecode = measure { gson.fromJson<List<Task>>(handJson, listType) }
+        val reflectiveDecode = measure { reflective.fromJson<List<Task>>(reflectiveJson, listType) }
+        println("10k tasks: encode hand-written $handEncode ms, reflective $reflectiveEncode ms; " +
+            "decode hand-written $handDecode ms, reflective $reflectiveDecode ms")
+
+        assertEquals(tasks, gson.fromJson<List<Task>>(handJson, listType))
+        assertEquals(tasks, reflective.fromJson<List<Task>>(reflectiveJson, listType))
+    }
+
+    private fun reflectiveGson() = GsonBuilder()
+        .registerTypeAdapter(LocalDateTime::class.java, LocalDateTimeTypeAdapter().nullSafe())
+        .create()
+
+    companion object {
+        private val T0 = LocalDateTime.of(2024, 3, 1, 9, 0)
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.todo.reminder
+
+import android.app.Notification
+import androidx.test.core.app.ApplicationProvider
+import com.example.todo.data.NotificationService
+import com.example.todo.data.Task
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.test.TestScope
+import kotlinx.coroutines.test.advanceTimeBy
+import kotlinx.coroutines.test.advanceUntilIdle
+import kotlinx.coroutines.test.currentTime
+import kotlinx.coroutines.test.runTest
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.LocalDateTime
+
+@OptIn(ExperimentalCoroutinesApi::class)
+@RunWith(RobolectricTestRunner::class)
+class ReminderNotificationTest {
+    private val posted = ArrayList<Pair<Int, Notification>>()
+    private val service = NotificationService(ApplicationProvider.getApplicationContext()) { id, notification ->
+        posted.add(id to notification)
+    }
+    private val batches = ArrayList<Int>()
+    private val postedAt = ArrayList<Long>()
+
+    @Test
+    fun thousandTasksDueTogetherPostOneGroup() = runTest {
+        val notifier = notifier()
+
+        // 同一时刻到期的 1000 个任务分十次送达，都在合并窗口内
+        tasks(1..1_000).chunked(100).forEach { chunk ->
+            notifier.enqueue(chunk)
+            advanceTimeBy(100)
+        }
+        advanceUntilIdle()
+
+        assertEquals(listOf(1_000), batches)
+        // 8 条子通知 + 1 条摘要，而不是 1000 次 notify
+        assertEquals(MAX_CHILDREN + 1, posted.size)
+        assertEquals(1, summaries())
+        assertEquals(MAX_CHILDREN, posted.count { (id, _) -> id > 1 })
+    }
+
+    @Test
+    fun remindersDuringTheIntervalPostAsTheNextBatch() = runTest {
+        val notifier = notifier()
+
+        notifier.enqueue(tasks(1..1_000))
+        advanceTimeBy(CoalescingNotifier.DEFAULT_COALESCE_WINDOW_MILLIS + 1)
+        // 第一批发布后立即到达的提醒，以及重复送达的任务，合并为下一批
+        notifier.enqueue(tasks(1_001..2_000))
+        notifier.enqueue(tasks(1_001..1_500))
+        advanceUntilIdle()
+
+        assertEquals(listOf(1_000, 1_000), batches)
+        assertEquals(2 * (MAX_CHILDREN + 1), posted.size)
+        assertEquals(2, summaries())
+        assertTrue(postedAt[1] - postedAt[0] >= CoalescingNotifier.DEFAULT_MIN_INTERVAL_MILLIS)
+    }
+
+    private fun TestScope.notifier() = CoalescingNotifier(scope = backgroundScope) { tasks ->
+        batches.add(tasks.size)
+        postedAt.add(currentTime)
+        service.sendTaskReminders(tasks)
+    }
+
+    private fun summaries(): Int = posted.count { (_, notification) ->
+        notification.flags and Notification.FLAG_GROUP_SUMMARY != 0
+    }
+
+    private fun tasks(ids: IntRange): List<Task> = ids.map { id ->
+        Task(id = id, title = "task $id", dueDate = DUE)
+    }
+
+    companion object {
+        private val DUE = LocalDateTime.of(2024, 3, 1, 9, 0)
+        // NotificationService 一批最多展开的子通知数
+        private const val MAX_CHILDREN = 8
+    }
+}
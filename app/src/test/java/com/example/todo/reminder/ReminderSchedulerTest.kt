@@ -0,0 +1,220 @@
+package com.example.todo.reminder
+
+import com.example.todo.data.Task
+import com.example.todo.data.TestRepositories
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.time.ZoneOffset
+
+@RunWith(RobolectricTestRunner::class)
+class ReminderSchedulerTest {
+    private class MutableClock(var millis: Long) : Clock() {
+        override fun getZone(): ZoneId = ZoneOffset.UTC
+        override fun withZone(zone: ZoneId?): Clock = this
+        override fun instant(): Instant = Instant.ofEpochMilli(millis)
+    }
+
+    private class FakeAlarm : ReminderAlarm {
+        val armed = ArrayList<Long>()
+        var cancels = 0
+
+        override fun arm(triggerAtMillis: Long) {
+            armed.add(triggerAtMillis)
+        }
+
+        override fun cancel() {
+            cancels++
+        }
+    }
+
+    private val repositories = TestRepositories()
+    private val repository = repositories.taskRepository
+    private val clock = MutableClock(START)
+    private val alarm = FakeAlarm()
+    private val reminded = ArrayList<List<Task>>()
+    private val scheduler = ReminderScheduler(
+        taskRepository = repository,
+        alarm = alarm,
+        clock = clock,
+        leadTime = LEAD,
+        horizon = Duration.ofDays(1),
+        onReminder = { reminded.add(it) }
+    )
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun armsEarliestReminderInWindow() = runBlocking {
+        addTask("later", dueAt = START + hours(5))
+        addTask("sooner", dueAt = START + hours(3))
+
+        scheduler.start()
+
+        assertEquals(listOf(START + hours(2)), alarm.armed)
+        assertEquals(2, scheduler.pendingCount())
+    }
+
+    @Test
+    fun noPendingTasksCancelsAlarm() = runBlocking {
+        addTask("done", dueAt = START + hours(3), completed = true)
+
+        scheduler.start()
+
+        assertTrue(alarm.armed.isEmpty())
+        assertEquals(1, alarm.cancels)
+    }
+
+    @Test
+    fun emptyWindowJumpsToNextDueTask() = runBlocking {
+        addTask("next week", dueAt = START + Duration.ofDays(7).toMillis())
+
+        scheduler.start()
+
+        // 不为中间的空窗口每天挂一次闹钟
+        assertEquals(listOf(START + Duration.ofDays(7).toMillis() - LEAD.toMillis()), alarm.armed)
+    }
+
+    @Test
+    fun changesRearmIncrementally() = runBlocking {
+        val first = addTask("first", dueAt = START + hours(5))
+        scheduler.start()
+        assertEquals(listOf(START + hours(4)), alarm.armed)
+
+        val earlier = addTask("earlier", dueAt = START + hours(2))
+        scheduler.onTaskChanged(earlier)
+        assertEquals(START + hours(1), alarm.armed.last())
+
+        // 完成的任务从堆中移除，闹钟回到下一个任务
+        scheduler.onTaskChanged(earlier.copy(isCompleted = true))
+        assertEquals(START + hours(4), alarm.armed.last())
+
+        // 删除最后一个任务后闹钟指向窗口末尾，到时滑动窗口
+        scheduler.onTaskRemoved(first.id)
+        assertEquals(START + Duration.ofDays(1).toMillis(), alarm.armed.last())
+        assertEquals(0, scheduler.pendingCount())
+    }
+
+    @Test
+    fun alarmDeliversDueTasksAndArmsNext() = runBlocking {
+        val a = addTask("a", dueAt = START + hours(2))
+        val b = addTask("b", dueAt = START + hours(2))
+        addTask("c", dueAt = START + hours(6))
+        scheduler.start()
+
+        clock.millis = START + hours(1)
+        val due = scheduler.onAlarm(START + hours(1))
+
+        assertEquals(setOf(a.id, b.id), due.map { it.id }.toSet())
+        assertEquals(listOf(due), reminded)
+        assertEquals(START + hours(5), alarm.armed.last())
+        assertEquals(1, scheduler.pendingCount())
+    }
+
+    @Test
+    fun alarmAfterProcessRestartReloadsFromScheduledTime() = runBlocking {
+        val task = addTask("a", dueAt = START + hours(2))
+
+        // 新进程里调度器还没有加载窗口，闹钟晚到了几分钟
+        clock.millis = START + hours(1) + Duration.ofMinutes(3).toMillis()
+        val due = scheduler.onAlarm(START + hours(1))
+
+        assertEquals(listOf(task.id), due.map { it.id })
+    }
+
+    @Test
+    fun alarmSlidesWindowPastHorizon() = runBlocking {
+        val day = Duration.ofDays(1).toMillis()
+        val today = addTask("today", dueAt = START + hours(3))
+        val tomorrow = addTask("tomorrow", dueAt = START + day + hours(3))
+        scheduler.start()
+
+        clock.millis = START + hours(2)
+        assertEquals(listOf(today.id), scheduler.onAlarm(START + hours(2)).map { it.id })
+        // 窗口内已没有提醒，闹钟指向窗口末尾
+        assertEquals(START + day, alarm.armed.last())
+
+        clock.millis = START + day
+        assertTrue(scheduler.onAlarm(START + day).isEmpty())
+        assertEquals(START + day + hours(2), alarm.armed.last())
+
+        clock.millis = START + day + hours(2)
+        assertEquals(listOf(tomorrow.id), scheduler.onAlarm(START + day + hours(2)).map { it.id })
+    }
+
+    // 10 万个任务分布在一周内的 2000 个时刻，每个时刻 50 个。按闹钟逐次推进模拟时钟，
+    // 闹钟次数只与不同的提醒时刻和窗口数有关，与任务数量无关
+    @Test
+    fun weekOfHundredThousandTasksFiresEachReminderOnce() = runBlocking {
+        val dueAt = LongArray(TASKS) { i -> triggerAt(i / TASKS_PER_INSTANT) + LEAD.toMillis() }
+        (0 until TASKS).chunked(5_000).forEach { chunk ->
+            repositories.database.taskDao().insertTasks(chunk.map { i ->
+                Task(title = "task $i", dueDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(dueAt[i]), ZoneOffset.UTC))
+            })
+        }
+        val firedAt = HashMap<Int, Long>()
+        var duplicates = 0
+
+        scheduler.start()
+        var alarms = 0
+        while (alarm.cancels == 0) {
+            val at = alarm.armed.last()
+            assertTrue("闹钟必须向后推进", at > clock.millis)
+            clock.millis = at
+            scheduler.onAlarm(at).forEach { task ->
+                if (firedAt.put(task.id, at) != null) duplicates++
+            }
+            alarms++
+            assertTrue("模拟没有在一周后结束", at <= START + WEEK)
+        }
+
+        assertEquals(0, duplicates)
+        assertEquals(TASKS, firedAt.size)
+        assertEquals(TASKS, reminded.sumOf { it.size })
+        // 每个任务都在 到期时间 - 提前量 的时刻提醒
+        val reminderTimes = reminded.flatten().associate { it.id to it.dueDate!!.toInstant(ZoneOffset.UTC).toEpochMilli() - LEAD.toMillis() }
+        assertEquals(reminderTimes, firedAt)
+        // 每个提醒时刻一次，加上 7 个一天窗口各自末尾的滑动闹钟；最后一次滑动后再无任务，取消闹钟
+        assertEquals(INSTANTS + 7, alarm.armed.size)
+        assertEquals(alarm.armed.size, alarms)
+        assertEquals(INSTANTS, reminded.size)
+        assertEquals(1, alarm.cancels)
+        assertEquals(0, scheduler.pendingCount())
+    }
+
+    private suspend fun addTask(title: String, dueAt: Long, completed: Boolean = false): Task {
+        val task = Task(
+            title = title,
+            isCompleted = completed,
+            dueDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(dueAt), ZoneOffset.UTC)
+        )
+        val id = repository.addTask(task)
+        return task.copy(id = id.toInt())
+    }
+
+    private fun hours(count: Long): Long = Duration.ofHours(count).toMillis()
+
+    // 第 k 个提醒时刻；间隔 302.4 秒，任何时刻都不会恰好落在一天窗口的边界上
+    private fun triggerAt(k: Int): Long = START + 60_000L + k * (WEEK / INSTANTS)
+
+    companion object {
+        private val START = LocalDateTime.of(2024, 3, 1, 9, 0).toInstant(ZoneOffset.UTC).toEpochMilli()
+        private val LEAD: Duration = Duration.ofHours(1)
+        private val WEEK = Duration.ofDays(7).toMillis()
+        private const val TASKS = 100_000
+        private const val INSTANTS = 2_000
+        private const val TASKS_PER_INSTANT = TASKS / INSTANTS
+    }
+}
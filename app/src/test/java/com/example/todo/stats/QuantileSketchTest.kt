@@ -0,0 +1,90 @@
+package com.example.todo.stats
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.abs
+import kotlin.math.exp
+import kotlin.math.ln
+import kotlin.random.Random
+
+class QuantileSketchTest {
+    @Test
+    fun quantilesStayWithinRelativeAccuracy() {
+        // 周期时间的取值跨度：1 分钟到 1 年（毫秒），按对数均匀分布
+        val random = Random(42)
+        val values = DoubleArray(20_000) { exp(random.nextDouble(ln(60_000.0), ln(3.2e10))) }
+        listOf(0.01, 0.001).forEach { accuracy ->
+            val sketch = QuantileSketch(accuracy)
+            values.forEach { sketch.add(it) }
+            val sorted = values.sortedArray()
+            QUANTILES.forEach { q ->
+                val exact = sorted[(q * (sorted.size - 1)).toInt()]
+                val estimate = sketch.quantile(q)!!
+                val error = abs(estimate - exact) / exact
+                assertTrue("q=$q accuracy=$accuracy error=$error", error <= accuracy + 1e-12)
+            }
+        }
+    }
+
+    @Test
+    fun skewedDataWithRepeatsStaysWithinBounds() {
+        val values = ArrayList<Double>()
+        repeat(5_000) { values.add(60_000.0) }
+        repeat(100) { values.add(86_400_000.0 * (it + 1)) }
+        val sketch = QuantileSketch()
+        values.forEach { sketch.add(it) }
+        val sorted = values.sorted()
+
+        QUANTILES.forEach { q ->
+            val exact = sorted[(q * (sorted.size - 1)).toInt()]
+            val error = abs(sketch.quantile(q)!! - exact) / exact
+            assertTrue("q=$q error=$error", error <= QuantileSketch.DEFAULT_RELATIVE_ACCURACY + 1e-12)
+        }
+    }
+
+    @Test
+    fun mergeMatchesBuildingFromAllValues() {
+        val random = Random(7)
+        val all = QuantileSketch()
+        val parts = List(4) { QuantileSketch() }
+        repeat(10_000) { i ->
+            val value = random.nextDouble(1.0, 1e9)
+            all.add(value)
+            parts[i % parts.size].add(value)
+        }
+        val merged = QuantileSketch()
+        parts.forEach { merged.merge(it) }
+
+        assertEquals(all.count, merged.count)
+        QUANTILES.forEach { q -> assertEquals(all.quantile(q), merged.quantile(q)) }
+    }
+
+    @Test
+    fun zerosAndEmpty() {
+        assertNull(QuantileSketch().quantile(0.5))
+
+        val sketch = QuantileSketch()
+        repeat(3) { sketch.add(0.0) }
+        sketch.add(1_000.0)
+        assertEquals(0.0, sketch.quantile(0.5)!!, 0.0)
+        assertEquals(1_000.0, sketch.quantile(1.0)!!, 1_000.0 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY)
+    }
+
+    @Test
+    fun bytesRoundTrip() {
+        val sketch = QuantileSketch(0.02)
+        listOf(0.0, 5.0, 5.0, 120.0, 3_600.0, 1e7).forEach { sketch.add(it) }
+
+        val restored = QuantileSketch.fromBytes(sketch.toBytes())
+
+        assertEquals(sketch.relativeAccuracy, restored.relativeAccuracy, 0.0)
+        assertEquals(sketch.count, restored.count)
+        QUANTILES.forEach { q -> assertEquals(sketch.quantile(q), restored.quantile(q)) }
+    }
+
+    companion object {
+        private val QUANTILES = listOf(0.0, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99, 1.0)
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.todo.stats
+
+import com.example.todo.data.StatsRange
+import com.example.todo.data.Task
+import com.example.todo.data.TestRepositories
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.LocalDate
+import kotlin.random.Random
+
+@RunWith(RobolectricTestRunner::class)
+class TaskAnalyticsTest {
+    private val repositories = TestRepositories()
+    private val taskDao = repositories.database.taskDao()
+    private val taskRepository = repositories.taskRepository
+    private val analytics = TaskAnalytics(lazyOf(repositories.database), taskRepository, repositories.dispatchers)
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun columnarSnapshotMatchesRollupQueries() = runBlocking {
+        insertRandomTasks(count = 3_000, seed = 1)
+
+        assertArrayEquals(rollupCompletedPerDay(), analytics.completedPerDay(FIRST, TODAY))
+        assertArrayEquals(rollupCreatedPerDay(), columnarCreatedPerDay(analytics.snapshot()))
+
+        // 按天粒度的范围与仓库的趋势序列逐日一致
+        val series = taskRepository.getCreatedSeries(StatsRange.MONTH, TODAY)
+        val created = columnarCreatedPerDay(analytics.snapshot())
+        val offset = (series.starts.first().toEpochDay() - FIRST.toEpochDay()).toInt()
+        series.counts.forEachIndexed { i, count -> assertEquals(count, created[offset + i]) }
+    }
+
+    @Test
+    fun writesThroughTheRepositoryAreVisibleImmediately() = runBlocking {
+        val dueTomorrow = TODAY.plusDays(1).atTime(18, 0)
+        taskRepository.addTask(Task(title = "a", isCompleted = true, completedAt = TODAY.atTime(9, 0), dueDate = dueTomorrow))
+        assertEquals(OnTimeSummary(completedWithDue = 1, onTime = 1), analytics.onTimeSummary(StatsRange.WEEK, TODAY))
+
+        // 没有变更事件的订阅方，写入返回后下一次统计就重建快照；行数变多时行号数组随之换大
+        repeat(3) {
+            taskRepository.addTask(Task(title = "late $it", isCompleted = true, completedAt = TODAY.atTime(9, 0), dueDate = TODAY.minusDays(1).atStartOfDay()))
+        }
+        assertEquals(OnTimeSummary(completedWithDue = 4, onTime = 1), analytics.onTimeSummary(StatsRange.WEEK, TODAY))
+
+        // 远端分页同样经过仓库写入
+        taskRepository.writeRemotePage(mergesTasks = true) {
+            taskDao.mergeRemoteTasks(listOf(Task(title = "remote", remoteId = 42, isCompleted = true, completedAt = TODAY.atTime(10, 0))))
+        }
+        assertEquals(5, analytics.completedPerDay(TODAY, TODAY)[0])
+        assertEquals(5, taskRepository.getCompletionCalendar().snapshot()!!.total)
+    }
+
+    @Test
+    fun unchangedSnapshotIsReused() = runBlocking {
+        insertRandomTasks(count = 100, seed = 2)
+        val first = analytics.snapshot()
+
+        assertSame(first, analytics.snapshot())
+
+        taskRepository.addTask(Task(title = "new"))
+        val rebuilt = analytics.snapshot()
+        assertEquals(first.size + 1, rebuilt.size)
+    }
+
+    // 10 万行下列式快照与汇总查询的耗时对比；只打印结果，断言两者结果一致。
+    // Robolectric 使用宿主机的 SQLite，数字只用于比较两种方式，不代表设备上的绝对耗时
+    @Test
+    fun benchmarkAgainstRollupQueries() = runBlocking {
+        insertRandomTasks(count = 100_000, seed = 3)
+        val from = FIRST.atStartOfDay()
+
+        val rollupNanos = bestOf(5) {
+            taskDao.getDailyCompletedCounts()
+            taskDao.getDailyCreatedCounts(from)
+        }
+        val buildNanos = bestOf(5) {
+            repositories.database.query(TaskColumns.QUERY, null).use { TaskColumns.fromCursor(it) }
+        }
+        val columns = analytics.snapshot()
+        val aggregateNanos = bestOf(5) {
+            analytics.completedPerDay(FIRST, TODAY)
+            columnarCreatedPerDay(columns)
+        }
+        println("100k rows: rollup queries ${rollupNanos / 1_000_000} ms, " +
+            "columnar build ${buildNanos / 1_000_000} ms, columnar aggregation ${aggregateNanos / 1_000} us")
+
+        assertArrayEquals(rollupCompletedPerDay(), analytics.completedPerDay(FIRST, TODAY))
+        assertArrayEquals(rollupCreatedPerDay(), columnarCreatedPerDay(columns))
+    }
+
+    @Test
+    fun completedCountStartsAtTheFirstDayOfTheRange() = runBlocking {
+        // 90 天范围从 4 月 2 日开始，柱状图的第一个周分组从 4 月 1 日（周一）开始
+        listOf(LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 2), TODAY).forEach { day ->
+            taskRepository.addTask(Task(title = "done $day", isCompleted = true, completedAt = day.atTime(12, 0)))
+        }
+
+        assertEquals(LocalDate.of(2024, 4, 1), taskRepository.getCreatedSeries(StatsRange.QUARTER, TODAY).starts.first())
+        assertEquals(2, analytics.completedCount(StatsRange.QUARTER, TODAY))
+        assertEquals(3, analytics.completedCount(StatsRange.ALL, TODAY))
+    }
+
+    @Test
+    fun parallelAggregationMatchesSequential() = runBlocking {
+        // 行数不能被段数整除，检查分段边界
+        val columns = randomColumns(size = 1_000_003, seed = 4)
+        val sequential = TaskAnalytics(lazyOf(repositories.database), taskRepository, repositories.dispatchers, parallelism = 1)
+        val parallel = TaskAnalytics(lazyOf(repositories.database), taskRepository, repositories.dispatchers, parallelism = 7, parallelThreshold = 0)
+        val fromDay = FIRST.toEpochDay().toInt()
+        val toDay = TODAY.toEpochDay().toInt()
+
+        assertArrayEquals(sequential.completedPerDay(columns, fromDay, SPAN), parallel.completedPerDay(columns, fromDay, SPAN))
+        listOf(fromDay, toDay - 6, Int.MIN_VALUE).forEach { from ->
+            assertEquals(sequential.completedCount(columns, from, toDay), parallel.completedCount(columns, from, toDay))
+        }
+    }
+
+    // 顺序与按核数并行汇总的耗时对比，只打印结果。核数为 1 时并行路径只有调度开销，
+    // 阈值需要在多核设备上运行这个基准确定
+    @Test
+    fun benchmarkParallelAgainstSequential() = runBlocking {
+        val cores = Runtime.getRuntime().availableProcessors()
+        val sequential = TaskAnalytics(lazyOf(repositories.database), taskRepository, repositories.dispatchers, parallelism = 1)
+        val parallel = TaskAnalytics(lazyOf(repositories.database), taskRepository, repositories.dispatchers, parallelism = cores, parallelThreshold = 0)
+        val fromDay = FIRST.toEpochDay().toInt()
+        listOf(50_000, 200_000, 1_000_000).forEach { size ->
+            val columns = randomColumns(size, seed = size)
+            val sequentialNanos = bestOf(20) { sequential.completedPerDay(columns, fromDay, SPAN) }
+            val parallelNanos = bestOf(20) { parallel.completedPerDay(columns, fromDay, SPAN) }
+            println("$size rows on $cores cores: sequential ${sequentialNanos / 1_000} us, parallel ${parallelNanos / 1_000} us")
+            assertArrayEquals(sequential.completedPerDay(columns, fromDay, SPAN), parallel.completedPerDay(columns, fromDay, SPAN))
+        }
+    }
+
+    private fun randomColumns(size: Int, seed: Int): TaskColumns {
+        val random = Random(seed)
+        val first = FIRST.toEpochDay().toInt()
+        val createdDays = IntArray(size) { first + random.nextInt(SPAN) }
+        val completedDays = IntArray(size) { row ->
+            // 一部分行完成在范围之外，直方图不计入
+            if (random.nextBoolean()) createdDays[row] + random.nextInt(40) else TaskColumns.NO_DAY
+        }
+        val states = ByteArray(size) { row ->
+            var state = if (completedDays[row] != TaskColumns.NO_DAY) TaskColumns.COMPLETED else 0
+            if (random.nextInt(10) == 0) state = state or TaskColumns.DELETED
+            state.toByte()
+        }
+        return TaskColumns(size, IntArray(size) { it + 1 }, createdDays, completedDays, LongArray(size) { TaskColumns.NO_DUE }, states)
+    }
+
+    private suspend fun insertRandomTasks(count: Int, seed: Int) {
+        val random = Random(seed)
+        val days = (TODAY.toEpochDay() - FIRST.toEpochDay()).toInt()
+        (0 until count).chunked(5_000).forEach { chunk ->
+            taskDao.insertTasks(chunk.map { i ->
+                val created = FIRST.plusDays(random.nextInt(days + 1).toLong()).atTime(random.nextInt(24), random.nextInt(60))
+                val completed = random.nextInt(3) != 0
+                val completedAt = if (completed) {
+                    created.plusHours(random.nextLong(0, 24L * 20)).coerceAtMost(TODAY.atTime(23, 59))
+                } else {
+                    null
+                }
+                Task(
+                    title = "task $i",
+                    isCompleted = completed,
+                    isDeleted = random.nextInt(10) == 0,
+                    createdAt = created,
+                    updatedAt = created,
+                    completedAt = completedAt,
+                    dueDate = if (random.nextBoolean()) created.plusDays(random.nextLong(0, 14)) else null
+                )
+            })
+        }
+    }
+
+    private suspend fun rollupCompletedPerDay(): IntArray {
+        val counts = IntArray(SPAN)
+        taskDao.getDailyCompletedCounts().forEach { counts[(it.epochDay - FIRST.toEpochDay()).toInt()] = it.count }
+        return counts
+    }
+
+    private suspend fun rollupCreatedPerDay(): IntArray {
+        val counts = IntArray(SPAN)
+        taskDao.getDailyCreatedCounts(FIRST.atStartOfDay()).forEach {
+            counts[(LocalDate.parse(it.bucket).toEpochDay() - FIRST.toEpochDay()).toInt()] = it.count
+        }
+        return counts
+    }
+
+    private fun columnarCreatedPerDay(columns: TaskColumns): IntArray {
+        return IntArray(SPAN).also {
+            columns.countByDay(columns.createdDays, FIRST.toEpochDay().toInt(), TaskColumns.DELETED, 0, 0, columns.size, it)
+        }
+    }
+
+    private suspend fun bestOf(runs: Int, block: suspend () -> Unit): Long {
+        var best = Long.MAX_VALUE
+        repeat(runs) {
+            val start = System.nanoTime()
+            block()
+            best = minOf(best, System.nanoTime() - start)
+        }
+        return best
+    }
+
+    companion object {
+        private val TODAY = LocalDate.of(2024, 6, 30)
+        private val FIRST = TODAY.minusDays(729)
+        private val SPAN = (TODAY.toEpochDay() - FIRST.toEpochDay() + 1).toInt()
+    }
+}
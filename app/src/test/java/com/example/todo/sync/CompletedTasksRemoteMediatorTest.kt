@@ -0,0 +1,142 @@
+package com.example.todo.sync
+
+import androidx.paging.ExperimentalPagingApi
+import androidx.paging.LoadType
+import androidx.paging.PagingConfig
+import androidx.paging.PagingState
+import androidx.paging.RemoteMediator
+import com.example.todo.data.Task
+import com.example.todo.data.TaskChange
+import com.example.todo.data.TestRepositories
+import com.example.todo.network.TaskPageResponse
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.io.IOException
+import java.util.Collections
+
+@OptIn(ExperimentalPagingApi::class)
+@RunWith(RobolectricTestRunner::class)
+class CompletedTasksRemoteMediatorTest {
+    private val repositories = TestRepositories()
+    private val remoteKeyDao = repositories.database.remoteKeyDao()
+    private val taskDao = repositories.database.taskDao()
+    private val requested = ArrayList<String?>()
+    private val api = FakeTaskApi()
+    private val mediator = CompletedTasksRemoteMediator(api, lazyOf(repositories.database), repositories.taskRepository)
+    private val state = PagingState<Int, Task>(
+        pages = emptyList(),
+        anchorPosition = null,
+        config = PagingConfig(pageSize = PAGE_SIZE),
+        leadingPlaceholderCount = 0
+    )
+    private val received = Collections.synchronizedList(ArrayList<TaskChange>())
+
+    init {
+        // 服务器上共两页：第一页 c1 续传，第二页为最后一页
+        api.onCompletedPage = { cursor, limit ->
+            requested.add(cursor)
+            when (cursor) {
+                null -> TaskPageResponse(tasks = completed(1..limit), nextCursor = "c1")
+                "c1" -> TaskPageResponse(tasks = completed(limit + 1..limit + 5), nextCursor = null)
+                else -> error("unexpected cursor $cursor")
+            }
+        }
+        repositories.scope.launch(Dispatchers.Unconfined) {
+            repositories.taskRepository.changes.collect { received.add(it) }
+        }
+    }
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun refreshAppendAndRestartFollowTheRemoteKey() = runBlocking {
+        assertEquals(RemoteMediator.InitializeAction.LAUNCH_INITIAL_REFRESH, mediator.initialize())
+
+        assertEndReached(false, mediator.load(LoadType.REFRESH, state))
+        assertEquals("c1", remoteKeyDao.getRemoteKey(CompletedTasksRemoteMediator.LABEL)?.nextCursor)
+        assertEquals(PAGE_SIZE, taskCount())
+
+        assertEndReached(true, mediator.load(LoadType.APPEND, state))
+        assertEquals(null, remoteKeyDao.getRemoteKey(CompletedTasksRemoteMediator.LABEL)?.nextCursor)
+        assertEquals(PAGE_SIZE + 5, taskCount())
+
+        // 已到末尾时追加不再请求服务器，向前翻页同样直接结束
+        assertEndReached(true, mediator.load(LoadType.APPEND, state))
+        assertEndReached(true, mediator.load(LoadType.PREPEND, state))
+        assertEquals(listOf(null, "c1"), requested)
+
+        // 重启后跳过启动刷新；手动刷新只拉第一页，保留已有游标
+        assertEquals(RemoteMediator.InitializeAction.SKIP_INITIAL_REFRESH, mediator.initialize())
+        assertEndReached(true, mediator.load(LoadType.REFRESH, state))
+        assertEquals(listOf(null, "c1", null), requested)
+        assertNotNull(remoteKeyDao.getRemoteKey(CompletedTasksRemoteMediator.LABEL))
+        assertEquals(null, remoteKeyDao.getRemoteKey(CompletedTasksRemoteMediator.LABEL)?.nextCursor)
+        assertEquals(PAGE_SIZE + 5, taskCount())
+        assertTrue(taskDao.getTaskByRemoteId(PAGE_SIZE + 5)!!.isCompleted)
+    }
+
+    @Test
+    fun mergedPagesNotifyLikeDeltaSync() = runBlocking {
+        mediator.load(LoadType.REFRESH, state)
+        mediator.load(LoadType.APPEND, state)
+
+        // 每个合并了任务的页通知一次，提醒调度和待办快照随之重新加载
+        assertEquals(listOf<TaskChange>(TaskChange.Invalidated, TaskChange.Invalidated), received.toList())
+    }
+
+    @Test
+    fun emptyPageDoesNotNotify() = runBlocking {
+        api.onCompletedPage = { cursor, _ ->
+            requested.add(cursor)
+            TaskPageResponse()
+        }
+
+        assertEndReached(true, mediator.load(LoadType.REFRESH, state))
+
+        assertTrue(received.isEmpty())
+    }
+
+    @Test
+    fun networkFailureReturnsErrorWithoutWriting() = runBlocking {
+        val failure = IOException("offline")
+        api.onCompletedPage = { _, _ -> throw failure }
+
+        val result = mediator.load(LoadType.REFRESH, state)
+
+        assertSame(failure, (result as RemoteMediator.MediatorResult.Error).throwable)
+        assertEquals(null, remoteKeyDao.getRemoteKey(CompletedTasksRemoteMediator.LABEL))
+        assertEquals(0, taskCount())
+        assertTrue(received.isEmpty())
+    }
+
+    private fun assertEndReached(expected: Boolean, result: RemoteMediator.MediatorResult) {
+        assertEquals(expected, (result as RemoteMediator.MediatorResult.Success).endOfPaginationReached)
+    }
+
+    private fun taskCount(): Int {
+        return repositories.database.query("SELECT COUNT(*) FROM tasks", null).use { cursor ->
+            cursor.moveToFirst()
+            cursor.getInt(0)
+        }
+    }
+
+    private fun completed(ids: IntRange): List<Task> = ids.map { id ->
+        Task(remoteId = id, title = "done $id", isCompleted = true, titleChangedAt = 1, completedChangedAt = 1)
+    }
+
+    companion object {
+        private const val PAGE_SIZE = 20
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.todo.sync
+
+import com.example.todo.data.Task
+import com.example.todo.network.TaskApiService
+import com.example.todo.network.TaskBatchRequest
+import com.example.todo.network.TaskBatchResponse
+import com.example.todo.network.TaskChangesResponse
+import com.example.todo.network.TaskPageResponse
+import com.example.todo.network.TaskPatch
+import okhttp3.ResponseBody
+import retrofit2.Response
+
+// 测试用的接口实现，每个测试只替换用到的方法，其余方法调用时直接失败
+open class FakeTaskApi : TaskApiService {
+    val batches = ArrayList<TaskBatchRequest>()
+    var onBatch: (TaskBatchRequest) -> TaskBatchResponse = { TaskBatchResponse() }
+    var onStreamAll: () -> Response<ResponseBody> = { error("streamAllTasks") }
+    var onChanges: (String?, Int) -> TaskChangesResponse = { _, _ -> TaskChangesResponse() }
+    var onCompletedPage: (String?, Int) -> TaskPageResponse = { _, _ -> error("getCompletedTasksPage") }
+
+    override suspend fun getAllTasks(): List<Task> = error("getAllTasks")
+
+    override suspend fun streamAllTasks(): Response<ResponseBody> = onStreamAll()
+
+    override suspend fun getCompletedTasksPage(cursor: String?, limit: Int): TaskPageResponse = onCompletedPage(cursor, limit)
+
+    override suspend fun getTaskChanges(since: String?, limit: Int): TaskChangesResponse = onChanges(since, limit)
+
+    override suspend fun createTask(task: Task): Task = error("createTask")
+
+    override suspend fun updateTask(id: Int, task: Task): Task = error("updateTask")
+
+    override suspend fun patchTask(id: Int, patch: TaskPatch): Task = error("patchTask")
+
+    override suspend fun deleteTask(id: Int): Unit = error("deleteTask")
+
+    override suspend fun applyBatch(request: TaskBatchRequest): TaskBatchResponse {
+        batches.add(request)
+        return onBatch(request)
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.todo.sync
+
+import com.example.todo.data.OutboxEntry
+import com.example.todo.data.OutboxOp
+import com.example.todo.data.OutboxOp.CREATE
+import com.example.todo.data.OutboxOp.DELETE
+import com.example.todo.data.OutboxOp.UPDATE
+import com.example.todo.data.TaskField
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class OutboxCompactorTest {
+    private var nextId = 1L
+
+    @Test
+    fun mergeTable() {
+        val cases = listOf(
+            listOf(CREATE) to CREATE,
+            listOf(UPDATE) to UPDATE,
+            listOf(DELETE) to DELETE,
+            listOf(CREATE, UPDATE) to CREATE,
+            listOf(CREATE, UPDATE, UPDATE) to CREATE,
+            listOf(CREATE, DELETE) to null,
+            listOf(CREATE, UPDATE, DELETE) to null,
+            listOf(UPDATE, UPDATE) to UPDATE,
+            listOf(UPDATE, DELETE) to DELETE,
+            listOf(UPDATE, CREATE) to UPDATE,
+            listOf(DELETE, CREATE) to UPDATE,
+            listOf(DELETE, UPDATE) to DELETE,
+            listOf(DELETE, DELETE) to DELETE,
+            // 新建后删除两者抵消，之后的新建重新开始
+            listOf(CREATE, DELETE, CREATE) to CREATE,
+            listOf(UPDATE, DELETE, CREATE) to UPDATE
+        )
+        cases.forEach { (ops, expected) ->
+            val entries = ops.map { entry(taskId = 1, op = it) }
+            val operation = OutboxCompactor.compact(entries).single()
+            assertEquals("$ops", expected, operation.op)
+            assertEquals("$ops", entries.map { it.id }, operation.entryIds)
+        }
+    }
+
+    @Test
+    fun changedFieldsAreUnioned() {
+        val operation = OutboxCompactor.compact(
+            listOf(
+                entry(taskId = 1, op = UPDATE, fields = TaskField.TITLE.mask),
+                entry(taskId = 1, op = UPDATE, fields = TaskField.DUE_DATE.mask)
+            )
+        ).single()
+
+        assertEquals(TaskField.TITLE.mask or TaskField.DUE_DATE.mask, operation.changedFields)
+    }
+
+    @Test
+    fun groupsByTaskInEntryOrder() {
+        val entries = listOf(
+            entry(taskId = 2, op = CREATE),
+            entry(taskId = 1, op = UPDATE),
+            entry(taskId = 2, op = UPDATE),
+            entry(taskId = 3, op = DELETE)
+        )
+
+        // 输入顺序打乱不影响结果：按记录 id 排序后合并
+        val operations = OutboxCompactor.compact(entries.reversed())
+
+        assertEquals(listOf(2, 1, 3), operations.map { it.taskId })
+        assertEquals(listOf(CREATE, UPDATE, DELETE), operations.map { it.op })
+        assertEquals(listOf(entries[0].id, entries[2].id), operations[0].entryIds)
+    }
+
+    @Test
+    fun remoteIdTakesLatestKnownValue() {
+        val operation = OutboxCompactor.compact(
+            listOf(
+                entry(taskId = 1, op = UPDATE, remoteId = 40),
+                entry(taskId = 1, op = DELETE, remoteId = null)
+            )
+        ).single()
+
+        assertEquals(DELETE, operation.op)
+        assertEquals(40, operation.remoteId)
+    }
+
+    private fun entry(taskId: Int, op: OutboxOp, fields: Int = TaskField.ALL, remoteId: Int? = null): OutboxEntry {
+        return OutboxEntry(id = nextId++, taskId = taskId, op = op, changedFields = fields, remoteId = remoteId)
+    }
+}
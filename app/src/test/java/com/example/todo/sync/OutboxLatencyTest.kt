@@ -0,0 +1,98 @@
+package com.example.todo.sync
+
+import com.example.todo.data.OutboxOp
+import com.example.todo.data.Task
+import com.example.todo.data.TestRepositories
+import com.example.todo.network.RetrofitClient
+import com.example.todo.network.TaskBatchRequest
+import com.example.todo.network.TaskBatchResponse
+import com.example.todo.network.TaskMutationResult
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.TimeUnit
+
+/**
+ * 在每个响应前注入固定延迟的模拟服务器上，比较 outbox 批量上传与逐个 updateTask 的往返次数和总耗时。
+ * 耗时主要由往返次数决定，批量上传一次往返，逐个上传每个任务一次。
+ */
+@RunWith(RobolectricTestRunner::class)
+class OutboxLatencyTest {
+    private val repositories = TestRepositories()
+    private val repository = repositories.taskRepository
+    private val server = MockWebServer()
+    private val api by lazy { RetrofitClient.createApiService(OkHttpClient(), server.url("/").toString()) }
+
+    @After
+    fun tearDown() {
+        server.shutdown()
+        repositories.close()
+    }
+
+    @Test
+    fun batchedUploadCostsOneRoundTrip() = runBlocking {
+        server.dispatcher = LatencyDispatcher()
+        val ids = (0 until TASKS).map { repository.addTask(Task(title = "task $it")).toInt() }
+        val sender = OutboxSender(api = api, outboxDao = repositories.database.outboxDao(), taskRepository = repository)
+        // 先上传新建，取得服务器 id
+        sender.flush()
+        val edited = ids.map { id -> repository.getTaskById(id)!!.copy(title = "edited $id") }
+        edited.forEach { repository.updateTask(it) }
+
+        val before = server.requestCount
+        val batchedNanos = measure { assertEquals(TASKS, sender.flush().succeeded) }
+        val batchedRequests = server.requestCount - before
+
+        val perItemNanos = measure {
+            edited.forEach { task -> api.updateTask(repository.getTaskById(task.id)!!.remoteId!!, task) }
+        }
+        val perItemRequests = server.requestCount - before - batchedRequests
+
+        println("$TASKS updates with ${LATENCY_MILLIS} ms latency: batched $batchedRequests request(s) ${batchedNanos / 1_000_000} ms, " +
+            "per-item $perItemRequests requests ${perItemNanos / 1_000_000} ms")
+        assertEquals(1, batchedRequests)
+        assertEquals(TASKS, perItemRequests)
+        assertTrue(perItemNanos >= TASKS * TimeUnit.MILLISECONDS.toNanos(LATENCY_MILLIS))
+        assertTrue(batchedNanos * 10 < perItemNanos)
+    }
+
+    private class LatencyDispatcher : Dispatcher() {
+        override fun dispatch(request: RecordedRequest): MockResponse {
+            val body = request.body.readUtf8()
+            val json = if (request.path == "/tasks/batch") {
+                val batch = RetrofitClient.gson.fromJson(body, TaskBatchRequest::class.java)
+                RetrofitClient.gson.toJson(TaskBatchResponse(batch.mutations.map { mutation ->
+                    val remoteId = if (mutation.op == OutboxOp.CREATE) 1_000 + mutation.taskId else null
+                    TaskMutationResult(mutation.taskId, success = true, remoteId = remoteId)
+                }))
+            } else {
+                // PUT /tasks/{id} 原样返回任务
+                body
+            }
+            return MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(json)
+                .setHeadersDelay(LATENCY_MILLIS, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    private suspend fun measure(block: suspend () -> Unit): Long {
+        val start = System.nanoTime()
+        block()
+        return System.nanoTime() - start
+    }
+
+    companion object {
+        private const val TASKS = 50
+        private const val LATENCY_MILLIS = 40L
+    }
+}
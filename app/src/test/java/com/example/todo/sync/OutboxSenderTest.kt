@@ -0,0 +1,210 @@
+package com.example.todo.sync
+
+import com.example.todo.data.OutboxOp
+import com.example.todo.data.Task
+import com.example.todo.data.TestRepositories
+import com.example.todo.network.RetrofitClient
+import com.example.todo.network.TaskBatchResponse
+import com.example.todo.network.TaskMutationResult
+import kotlinx.coroutines.runBlocking
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import retrofit2.HttpException
+import retrofit2.Response
+
+@RunWith(RobolectricTestRunner::class)
+class OutboxSenderTest {
+    private val repositories = TestRepositories()
+    private val repository = repositories.taskRepository
+    private val outboxDao = repositories.database.outboxDao()
+    private val api = FakeTaskApi()
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun partialResultsRetryOnlyRetryableItems() = runBlocking {
+        val ok = addTask("ok")
+        val flaky = addTask("flaky")
+        val invalid = addTask("invalid")
+        var calls = 0
+        api.onBatch = { request ->
+            calls++
+            TaskBatchResponse(request.mutations.map { mutation ->
+                when {
+                    mutation.taskId == flaky && calls == 1 -> TaskMutationResult(mutation.taskId, success = false, retryable = true)
+                    mutation.taskId == invalid -> TaskMutationResult(mutation.taskId, success = false, retryable = false)
+                    else -> TaskMutationResult(mutation.taskId, success = true, remoteId = 1000 + mutation.taskId)
+                }
+            })
+        }
+
+        val result = sender().flush()
+
+        assertEquals(2, result.requests)
+        assertEquals(2, result.succeeded)
+        assertEquals(1, result.dropped)
+        assertEquals(0, result.remaining)
+        // 第二次请求只包含可重试的一项
+        assertEquals(listOf(flaky), api.batches[1].mutations.map { it.taskId })
+        assertTrue(outboxDao.getEntriesPage(0, 100).isEmpty())
+        assertEquals(1000 + ok, repository.getTaskById(ok)?.remoteId)
+        assertNull(repository.getTaskById(invalid)?.remoteId)
+    }
+
+    @Test
+    fun missingRetryableFieldIsTreatedAsRetryable() = runBlocking {
+        val id = addTask("pending")
+        val json = """{"results":[{"taskId":$id,"success":false}]}"""
+        api.onBatch = { RetrofitClient.gson.fromJson(json, TaskBatchResponse::class.java) }
+
+        val result = sender(maxAttempts = 3).flush()
+
+        assertEquals(3, result.requests)
+        assertEquals(0, result.dropped)
+        assertEquals(1, result.remaining)
+        assertEquals(listOf(id), outboxDao.getEntriesPage(0, 100).map { it.taskId })
+    }
+
+    @Test
+    fun itemsMissingFromResponseAreRetried() = runBlocking {
+        val first = addTask("first")
+        val second = addTask("second")
+        var calls = 0
+        api.onBatch = { request ->
+            calls++
+            val answered = if (calls == 1) request.mutations.filter { it.taskId == first } else request.mutations
+            TaskBatchResponse(answered.map { TaskMutationResult(it.taskId, success = true) })
+        }
+
+        val result = sender().flush()
+
+        assertEquals(2, result.requests)
+        assertEquals(2, result.succeeded)
+        assertEquals(listOf(second), api.batches[1].mutations.map { it.taskId })
+    }
+
+    @Test
+    fun rejectedBatchDoesNotStopLaterBatches() = runBlocking {
+        val rejected = addTask("rejected")
+        val accepted = addTask("accepted")
+        api.onBatch = { request ->
+            if (request.mutations.any { it.taskId == rejected }) {
+                throw HttpException(Response.error<Any>(422, "".toResponseBody()))
+            }
+            TaskBatchResponse(request.mutations.map { TaskMutationResult(it.taskId, success = true) })
+        }
+
+        val result = sender(maxBatchSize = 1).flush()
+
+        assertEquals(1, result.dropped)
+        assertEquals(1, result.succeeded)
+        assertEquals(listOf(listOf(rejected), listOf(accepted)), api.batches.map { batch -> batch.mutations.map { it.taskId } })
+        assertTrue(outboxDao.getEntriesPage(0, 100).isEmpty())
+    }
+
+    @Test
+    fun rejectedRequestIsBisectedToTheFailingItem() = runBlocking {
+        val ids = listOf(addTask("a"), addTask("b"), addTask("malformed"), addTask("d"))
+        val malformed = ids[2]
+        api.onBatch = { request ->
+            if (request.mutations.any { it.taskId == malformed }) {
+                throw HttpException(Response.error<Any>(409, "".toResponseBody()))
+            }
+            TaskBatchResponse(request.mutations.map { TaskMutationResult(it.taskId, success = true) })
+        }
+
+        val result = sender().flush()
+
+        assertEquals(3, result.succeeded)
+        assertEquals(1, result.dropped)
+        assertEquals(0, result.remaining)
+        // [a b m d] -> [a b] [m d] -> [m] [d]
+        assertEquals(
+            listOf(ids, ids.subList(0, 2), ids.subList(2, 4), listOf(malformed), listOf(ids[3])),
+            api.batches.map { batch -> batch.mutations.map { it.taskId } }
+        )
+        assertTrue(outboxDao.getEntriesPage(0, 100).isEmpty())
+    }
+
+    @Test
+    fun payloadTooLargeIsRetriedInSmallerBatches() = runBlocking {
+        repeat(5) { addTask("task $it") }
+        api.onBatch = { request ->
+            if (request.mutations.size > 2) {
+                throw HttpException(Response.error<Any>(413, "".toResponseBody()))
+            }
+            TaskBatchResponse(request.mutations.map { TaskMutationResult(it.taskId, success = true) })
+        }
+
+        val result = sender().flush()
+
+        assertEquals(5, result.succeeded)
+        assertEquals(0, result.dropped)
+        assertEquals(listOf(5, 2, 3, 1, 2), api.batches.map { it.mutations.size })
+        assertTrue(outboxDao.getEntriesPage(0, 100).isEmpty())
+    }
+
+    @Test
+    fun singleItemTooLargeStaysInOutbox() = runBlocking {
+        val id = addTask("huge")
+        api.onBatch = { throw HttpException(Response.error<Any>(413, "".toResponseBody())) }
+
+        val result = sender().flush()
+
+        assertEquals(1, result.requests)
+        assertEquals(0, result.dropped)
+        assertEquals(1, result.remaining)
+        assertEquals(listOf(id), outboxDao.getEntriesPage(0, 100).map { it.taskId })
+    }
+
+    @Test
+    fun authFailureKeepsEntries() = runBlocking {
+        addTask("a")
+        api.onBatch = { throw HttpException(Response.error<Any>(401, "".toResponseBody())) }
+
+        val thrown = runCatching { sender().flush() }.exceptionOrNull()
+
+        assertTrue(thrown is HttpException)
+        assertEquals(1, outboxDao.getEntriesPage(0, 100).size)
+    }
+
+    @Test
+    fun updatesAfterAcceptedCreateTargetServerId() = runBlocking {
+        val id = addTask("draft")
+        api.onBatch = { request ->
+            TaskBatchResponse(request.mutations.map { TaskMutationResult(it.taskId, success = true, remoteId = 500) })
+        }
+        sender().flush()
+
+        val task = repository.getTaskById(id)!!
+        repository.updateTask(task.copy(title = "final"))
+        sender().flush()
+
+        val update = api.batches.last().mutations.single()
+        assertEquals(OutboxOp.UPDATE, update.op)
+        assertEquals(500, update.remoteId)
+        assertEquals(500, update.patch?.taskId)
+        assertEquals("final", update.patch?.title)
+    }
+
+    private suspend fun addTask(title: String): Int = repository.addTask(Task(title = title)).toInt()
+
+    private fun sender(maxBatchSize: Int = OutboxSender.DEFAULT_MAX_BATCH_SIZE, maxAttempts: Int = OutboxSender.DEFAULT_MAX_ATTEMPTS) =
+        OutboxSender(
+            api = api,
+            outboxDao = outboxDao,
+            taskRepository = repository,
+            maxBatchSize = maxBatchSize,
+            maxAttempts = maxAttempts,
+            initialBackoffMillis = 0
+        )
+}
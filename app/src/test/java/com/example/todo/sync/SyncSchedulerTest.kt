@@ -0,0 +1,169 @@
+package com.example.todo.sync
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import androidx.work.Configuration
+import androidx.work.WorkInfo
+import androidx.work.WorkManager
+import androidx.work.testing.SynchronousExecutor
+import androidx.work.testing.WorkManagerTestInitHelper
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.Clock
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.util.UUID
+
+@RunWith(RobolectricTestRunner::class)
+class SyncSchedulerTest {
+    private class MutableClock(var millis: Long) : Clock() {
+        override fun getZone(): ZoneId = ZoneOffset.UTC
+        override fun withZone(zone: ZoneId?): Clock = this
+        override fun instant(): Instant = Instant.ofEpochMilli(millis)
+    }
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val clock = MutableClock(START)
+    private val syncState = SyncStateStore(context)
+    private lateinit var workManager: WorkManager
+    private var onSync: suspend () -> TaskSyncEngine.SyncResult = { idle() }
+    private var syncs = 0
+
+    @Before
+    fun setUp() {
+        WorkManagerTestInitHelper.initializeTestWorkManager(
+            context,
+            Configuration.Builder().setExecutor(SynchronousExecutor()).build()
+        )
+        workManager = WorkManager.getInstance(context)
+    }
+
+    @Test
+    fun startKeepsAnAlreadyQueuedSync() {
+        val scheduler = scheduler()
+        scheduler.start()
+        val first = queuedIds()
+
+        scheduler.start()
+
+        assertEquals(1, first.size)
+        assertEquals(first, queuedIds())
+        assertEquals(START + AdaptiveSyncPolicy.DEFAULT_BASE_INTERVAL_MILLIS, syncState.nextSyncAt)
+    }
+
+    @Test
+    fun localChangesOnlyMoveTheQueuedSyncEarlier() {
+        val scheduler = scheduler()
+        scheduler.start()
+        val idle = queuedIds()
+
+        // 一次修改：间隔变为 base / 2，比排队的空闲同步早，替换
+        clock.millis += MINUTE
+        scheduler.onLocalChange()
+        val active = queuedIds()
+        assertNotEquals(idle, active)
+        val deadline = syncState.nextSyncAt
+        assertEquals(START + MINUTE + AdaptiveSyncPolicy.DEFAULT_BASE_INTERVAL_MILLIS / 2, deadline)
+
+        // 持续修改：从现在起算的新截止时间晚于已排队的，保持原计划，不会一直推迟
+        repeat(2) {
+            clock.millis += 3 * MINUTE
+            scheduler.onLocalChange()
+            assertEquals(active, queuedIds())
+            assertEquals(deadline, syncState.nextSyncAt)
+        }
+
+        // 手动刷新立即执行
+        scheduler.requestSync()
+        assertNotEquals(active, queuedIds())
+        assertEquals(clock.millis, syncState.nextSyncAt)
+    }
+
+    @Test
+    fun triggerDuringSyncRunsOneFollowUpAndQueuesNext() = runBlocking {
+        lateinit var scheduler: SyncScheduler
+        onSync = {
+            // 第一轮同步期间到达两次触发，合并为一轮
+            if (syncs == 1) {
+                scheduler.requestSync()
+                scheduler.onLocalChange()
+            }
+            idle()
+        }
+        scheduler = scheduler()
+
+        assertTrue(scheduler.runSync())
+
+        assertEquals(2, syncs)
+        assertEquals(1, queuedIds().size)
+        assertTrue(syncState.nextSyncAt > 0)
+    }
+
+    @Test
+    fun failedSyncLeavesRetryInPlaceForLaterTriggers() = runBlocking {
+        onSync = { error("offline") }
+        val scheduler = scheduler()
+        scheduler.start()
+
+        assertFalse(scheduler.runSync())
+        val before = queuedIds()
+        scheduler.onLocalChange()
+
+        // 修改后的间隔晚于重试，不替换
+        assertEquals(before, queuedIds())
+    }
+
+    @Test
+    fun policyStateSurvivesRestart() = runBlocking {
+        val policy = AdaptiveSyncPolicy(clock = clock)
+        val scheduler = scheduler(policy)
+        repeat(3) { scheduler.runSync() }
+        val idleDelay = policy.nextDelayMillis()
+        assertEquals(AdaptiveSyncPolicy.DEFAULT_BASE_INTERVAL_MILLIS shl 3, idleDelay)
+
+        val restarted = AdaptiveSyncPolicy(clock = clock)
+        scheduler(restarted)
+        assertEquals(idleDelay, restarted.nextDelayMillis())
+
+        scheduler.onLocalChange()
+        scheduler.onLocalChange()
+        val again = AdaptiveSyncPolicy(clock = clock)
+        scheduler(again)
+        assertEquals(policy.nextDelayMillis(), again.nextDelayMillis())
+        assertEquals(AdaptiveSyncPolicy.DEFAULT_BASE_INTERVAL_MILLIS / 3, again.nextDelayMillis())
+    }
+
+    private fun scheduler(policy: AdaptiveSyncPolicy = AdaptiveSyncPolicy(clock = clock)): SyncScheduler {
+        return SyncScheduler(
+            workManager = workManager,
+            policy = policy,
+            syncState = syncState,
+            sync = {
+                syncs++
+                onSync()
+            },
+            clock = clock
+        )
+    }
+
+    private fun idle() = TaskSyncEngine.SyncResult(pages = 1, upserted = 0, deleted = 0)
+
+    private fun queuedIds(): List<UUID> {
+        return workManager.getWorkInfosForUniqueWork(SyncScheduler.WORK_NAME).get()
+            .filter { it.state == WorkInfo.State.ENQUEUED || it.state == WorkInfo.State.BLOCKED }
+            .map { it.id }
+    }
+
+    companion object {
+        private const val START = 1_700_000_000_000L
+        private const val MINUTE = 60_000L
+    }
+}
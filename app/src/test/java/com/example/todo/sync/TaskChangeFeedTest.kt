@@ -0,0 +1,133 @@
+package com.example.todo.sync
+
+import androidx.test.core.app.ApplicationProvider
+import com.example.todo.data.Task
+import com.example.todo.data.TestRepositories
+import com.example.todo.network.RetrofitClient
+import com.example.todo.network.TaskFeedEvent
+import com.example.todo.network.TaskPatch
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.runBlocking
+import okhttp3.OkHttpClient
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class TaskChangeFeedTest {
+    private val repositories = TestRepositories()
+    private val taskDao = repositories.database.taskDao()
+    private val syncState = SyncStateStore(ApplicationProvider.getApplicationContext())
+    private val feed = TaskChangeFeed(
+        client = OkHttpClient(),
+        url = "https://example.invalid/feed",
+        gson = RetrofitClient.gson,
+        taskRepository = repositories.taskRepository,
+        syncState = syncState,
+        maxBatchDelayMillis = 0
+    )
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun replayedEventsAreIgnoredAndSeqAdvances() = runBlocking {
+        syncState.feedSequence = 10
+        val id = taskDao.insertTask(Task(title = "old", remoteId = 3)).toInt()
+
+        val applied = feed.applyEvents(channelOf(
+            TaskFeedEvent(seq = 9, patch = titlePatch(3, "replayed", at = 100)),
+            TaskFeedEvent(seq = 11, patch = titlePatch(3, "new", at = 200))
+        ))
+
+        assertEquals(1, applied)
+        assertEquals("new", taskDao.getTaskById(id)!!.title)
+        assertEquals(11, syncState.feedSequence)
+    }
+
+    @Test
+    fun malformedPatchIsSkippedAndSeqAdvances() = runBlocking {
+        syncState.feedSequence = 0
+        val id = taskDao.insertTask(Task(title = "kept", remoteId = 3)).toInt()
+        // 缺少 changedAt，Gson 解析出的 patch 中它是 null
+        val malformed = RetrofitClient.gson.fromJson("""{"seq":5,"patch":{"taskId":3,"title":"bad"}}""", TaskFeedEvent::class.java)
+
+        feed.applyEvents(channelOf(malformed, TaskFeedEvent(seq = 6, deletedId = null)))
+
+        assertEquals(6, syncState.feedSequence)
+        assertEquals("kept", taskDao.getTaskById(id)!!.title)
+        assertEquals(2, feed.stats().skippedEvents)
+        assertEquals(0, feed.stats().appliedBatches)
+
+        // 重连后从 6 之后继续，不会再次收到这两条
+        feed.applyEvents(channelOf(malformed, TaskFeedEvent(seq = 7, patch = titlePatch(3, "next", at = 300))))
+        assertEquals("next", taskDao.getTaskById(id)!!.title)
+        assertEquals(7, syncState.feedSequence)
+    }
+
+    @Test
+    fun deleteFollowedByPatchInOneBatchKeepsTheDelete() = runBlocking {
+        syncState.feedSequence = 0
+        val id = taskDao.insertTask(Task(title = "old", remoteId = 3, titleChangedAt = 100)).toInt()
+
+        feed.applyEvents(channelOf(
+            TaskFeedEvent(seq = 1, deletedId = 3, deletedChangedAt = 500),
+            TaskFeedEvent(seq = 2, patch = titlePatch(3, "renamed", at = 600))
+        ))
+
+        val task = taskDao.getTaskById(id)!!
+        assertTrue(task.isDeleted)
+        assertEquals(500, task.deletedChangedAt)
+        assertEquals("renamed", task.title)
+        assertEquals(2, syncState.feedSequence)
+    }
+
+    @Test
+    fun restoreAfterDeleteInOneBatchWins() = runBlocking {
+        syncState.feedSequence = 0
+        val id = taskDao.insertTask(Task(title = "t", remoteId = 3)).toInt()
+        val restore = TaskPatch(taskId = 3, changedAt = mapOf("isDeleted" to 700L), isDeleted = false)
+
+        feed.applyEvents(channelOf(
+            TaskFeedEvent(seq = 1, deletedId = 3, deletedChangedAt = 500),
+            TaskFeedEvent(seq = 2, patch = restore)
+        ))
+
+        assertFalse(taskDao.getTaskById(id)!!.isDeleted)
+    }
+
+    @Test
+    fun statsCountReceivedEventsNotCollapsedEntries() = runBlocking {
+        syncState.feedSequence = 0
+        val id = taskDao.insertTask(Task(title = "t", remoteId = 3)).toInt()
+
+        feed.applyEvents(channelOf(
+            TaskFeedEvent(seq = 1, patch = titlePatch(3, "a", at = 100)),
+            TaskFeedEvent(seq = 2, patch = titlePatch(3, "b", at = 200)),
+            TaskFeedEvent(seq = 3, patch = TaskPatch(taskId = 3, changedAt = mapOf("description" to 300L), description = "d"))
+        ))
+
+        val task = taskDao.getTaskById(id)!!
+        assertEquals("b", task.title)
+        assertEquals("d", task.description)
+        assertEquals(3, feed.stats().appliedEvents)
+        assertEquals(1, feed.stats().appliedBatches)
+    }
+
+    private fun titlePatch(remoteId: Int, title: String, at: Long): TaskPatch {
+        return TaskPatch(taskId = remoteId, changedAt = mapOf("title" to at), title = title)
+    }
+
+    private fun channelOf(vararg events: TaskFeedEvent): Channel<TaskFeedEvent> {
+        return Channel<TaskFeedEvent>(Channel.UNLIMITED).apply {
+            events.forEach { trySend(it) }
+            close()
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.todo.sync
+
+import androidx.test.core.app.ApplicationProvider
+import com.example.todo.data.TaskChange
+import com.example.todo.data.TestRepositories
+import com.example.todo.network.RetrofitClient
+import com.example.todo.network.TaskChangesResponse
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import okhttp3.Headers
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.ResponseBody.Companion.asResponseBody
+import okhttp3.ResponseBody.Companion.toResponseBody
+import okio.Buffer
+import okio.Source
+import okio.Timeout
+import okio.buffer
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import retrofit2.HttpException
+import retrofit2.Response
+import java.util.Collections
+
+@RunWith(RobolectricTestRunner::class)
+class TaskStreamImporterTest {
+    /**
+     * 按需生成任务数组的响应体，不在内存中保留整个响应。
+     * 每次被读取时记录已生成的任务数比已写入数据库的行数多出多少，即导入方在内存中缓存的任务数上限。
+     */
+    private inner class GeneratedTasks(private val count: Int) : Source {
+        private val pending = Buffer()
+        private var generated = 0
+        private var closed = false
+        var maxLead = 0
+
+        override fun read(sink: Buffer, byteCount: Long): Long {
+            maxLead = maxOf(maxLead, generated - rowCount())
+            while (pending.size < SEGMENT && !closed) {
+                if (generated == 0) pending.writeUtf8("[")
+                if (generated == count) {
+                    pending.writeUtf8("]")
+                    closed = true
+                } else {
+                    generated++
+                    if (generated > 1) pending.writeUtf8(",")
+                    pending.writeUtf8("""{"id":$generated,"title":"task $generated","titleChangedAt":1}""")
+                }
+            }
+            if (pending.size == 0L) return -1
+            return pending.read(sink, minOf(byteCount, SEGMENT))
+        }
+
+        override fun timeout(): Timeout = Timeout.NONE
+
+        override fun close() = Unit
+    }
+
+    private val repositories = TestRepositories()
+    private val api = FakeTaskApi()
+    private val importer = TaskStreamImporter(
+        api = api,
+        taskRepository = repositories.taskRepository,
+        gson = RetrofitClient.gson,
+        dispatchers = repositories.dispatchers,
+        chunkSize = CHUNK
+    )
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun importStreamsChunksWithoutBufferingTheResponse() = runBlocking {
+        val source = GeneratedTasks(count = 20_000)
+        api.onStreamAll = { Response.success(source.buffer().asResponseBody(JSON), Headers.headersOf(TaskStreamImporter.WATERMARK_HEADER, "w-1")) }
+
+        val result = importer.importAll()
+
+        assertEquals(20_000, result.imported)
+        assertEquals("w-1", result.watermark)
+        assertEquals(20_000, rowCount())
+        // 只多出一个分块加上读缓冲中的几百个任务；整体缓存时这个值会是 20000
+        assertTrue("lead ${source.maxLead}", source.maxLead <= CHUNK + READ_AHEAD_TASKS)
+    }
+
+    @Test
+    fun notifiesOnceAfterAllChunks() = runBlocking {
+        val received = Collections.synchronizedList(ArrayList<TaskChange>())
+        val collector = repositories.scope.launch(Dispatchers.Unconfined) {
+            repositories.taskRepository.changes.collect { received.add(it) }
+        }
+        api.onStreamAll = { Response.success(GeneratedTasks(count = CHUNK * 3 + 7).buffer().asResponseBody(JSON)) }
+
+        val result = importer.importAll()
+        collector.cancel()
+
+        assertEquals(CHUNK * 3 + 7, result.imported)
+        assertEquals(listOf<TaskChange>(TaskChange.Invalidated), received.toList())
+    }
+
+    @Test
+    fun errorResponseThrowsWithoutWriting() = runBlocking {
+        api.onStreamAll = { Response.error(503, "".toResponseBody(JSON)) }
+
+        try {
+            importer.importAll()
+            fail("expected HttpException")
+        } catch (e: HttpException) {
+            assertEquals(503, e.code())
+        }
+        assertEquals(0, rowCount())
+    }
+
+    @Test
+    fun firstSyncImportsThenPullsFromListWatermark() = runBlocking {
+        val syncState = SyncStateStore(ApplicationProvider.getApplicationContext())
+        syncState.watermark = null
+        val requested = ArrayList<String?>()
+        api.onStreamAll = { Response.success(GeneratedTasks(count = 3).buffer().asResponseBody(JSON), Headers.headersOf(TaskStreamImporter.WATERMARK_HEADER, "w-1")) }
+        api.onChanges = { since, _ ->
+            requested.add(since)
+            TaskChangesResponse(watermark = "w-2")
+        }
+        val engine = TaskSyncEngine(api, repositories.taskRepository, syncState, importer = importer)
+
+        val first = engine.sync()
+        assertEquals(3, first.upserted)
+        assertEquals(listOf<String?>("w-1"), requested)
+        assertEquals("w-2", syncState.watermark)
+
+        // 已有水位时不再全量导入
+        api.onStreamAll = { error("streamAllTasks") }
+        engine.sync()
+        assertEquals(listOf<String?>("w-1", "w-2"), requested)
+    }
+
+    private fun rowCount(): Int {
+        return repositories.database.query("SELECT COUNT(*) FROM tasks", null).use { cursor ->
+            cursor.moveToFirst()
+            cursor.getInt(0)
+        }
+    }
+
+    companion object {
+        private const val CHUNK = 500
+        private const val SEGMENT = 1024L
+        // InputStreamReader 和 JsonReader 各自的缓冲，每个任务约 55 字节
+        private const val READ_AHEAD_TASKS = 600
+        private val JSON = "application/json".toMediaType()
+    }
+}
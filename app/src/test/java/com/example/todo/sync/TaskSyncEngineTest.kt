@@ -0,0 +1,141 @@
+package com.example.todo.sync
+
+import androidx.test.core.app.ApplicationProvider
+import com.example.todo.data.Task
+import com.example.todo.data.TaskTombstone
+import com.example.todo.data.TestRepositories
+import com.example.todo.network.TaskChangesResponse
+import kotlinx.coroutines.runBlocking
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.LocalDateTime
+import java.util.TreeMap
+
+@RunWith(RobolectricTestRunner::class)
+class TaskSyncEngineTest {
+    /**
+     * 代替服务器的内存实现：每次修改分配递增的版本号，水位就是版本号。
+     * 同一任务只保留最新版本，增量接口返回水位之后的变更，并统计返回了多少行。
+     */
+    private class FakeServer(count: Int) {
+        private val log = TreeMap<Long, Any>()
+        private val versions = HashMap<Int, Long>()
+        private var version = 0L
+        var returnedTasks = 0
+        var returnedTombstones = 0
+
+        init {
+            (1..count).forEach { id -> put(id, task(id)) }
+        }
+
+        fun task(id: Int) = Task(remoteId = id, title = "task $id", titleChangedAt = 1, createdAt = T0, updatedAt = T0)
+
+        fun put(id: Int, change: Any) {
+            versions[id]?.let { log.remove(it) }
+            version++
+            versions[id] = version
+            log[version] = change
+        }
+
+        fun changes(since: String?, limit: Int): TaskChangesResponse {
+            val after = log.tailMap(since?.toLong() ?: 0L, false)
+            val page = after.entries.take(limit)
+            val tasks = page.mapNotNull { it.value as? Task }
+            val deleted = page.mapNotNull { it.value as? TaskTombstone }
+            returnedTasks += tasks.size
+            returnedTombstones += deleted.size
+            return TaskChangesResponse(
+                tasks = tasks,
+                deleted = deleted,
+                watermark = page.lastOrNull()?.key?.toString() ?: since,
+                hasMore = after.size > limit
+            )
+        }
+    }
+
+    private val repositories = TestRepositories()
+    private val taskDao = repositories.database.taskDao()
+    private val server = FakeServer(TASKS)
+    private val api = FakeTaskApi().apply { onChanges = server::changes }
+    private val engine = TaskSyncEngine(
+        api = api,
+        taskRepository = repositories.taskRepository,
+        syncState = SyncStateStore(ApplicationProvider.getApplicationContext())
+    )
+
+    @Before
+    fun countTaskWrites() {
+        // 统计 tasks 表实际写入的行数（插入和更新）
+        val db = repositories.database.openHelper.writableDatabase
+        db.execSQL("CREATE TABLE test_task_writes (n INTEGER NOT NULL)")
+        db.execSQL("INSERT INTO test_task_writes VALUES (0)")
+        db.execSQL("CREATE TRIGGER test_count_insert AFTER INSERT ON tasks BEGIN UPDATE test_task_writes SET n = n + 1; END")
+        db.execSQL("CREATE TRIGGER test_count_update AFTER UPDATE ON tasks BEGIN UPDATE test_task_writes SET n = n + 1; END")
+    }
+
+    @After
+    fun tearDown() {
+        repositories.close()
+    }
+
+    @Test
+    fun incrementalSyncTransfersAndWritesOnlyServerEdits() = runBlocking {
+        val initial = engine.sync()
+        assertEquals(TASKS / TaskSyncEngine.DEFAULT_PAGE_SIZE, initial.pages)
+        assertEquals(TASKS, server.returnedTasks)
+        assertEquals(TASKS, writes())
+
+        // 服务器上改三个任务、新建一个、删除一个
+        server.put(17, server.task(17).copy(title = "edited", titleChangedAt = 2))
+        server.put(50_000, server.task(50_000).copy(isCompleted = true, completedChangedAt = 2))
+        server.put(99_999, server.task(99_999).copy(dueDate = T0.plusDays(3), dueDateChangedAt = 2))
+        server.put(TASKS + 1, server.task(TASKS + 1))
+        server.put(42, TaskTombstone(taskId = 42, deletedChangedAt = 2))
+        server.returnedTasks = 0
+        val writesBefore = writes()
+
+        val result = engine.sync()
+
+        assertEquals(TaskSyncEngine.SyncResult(pages = 1, upserted = 4, deleted = 1), result)
+        assertEquals(4, server.returnedTasks)
+        assertEquals(1, server.returnedTombstones)
+        assertEquals(5, writes() - writesBefore)
+        assertEquals("edited", taskDao.getTaskByRemoteId(17)?.title)
+        assertTrue(taskDao.getTaskByRemoteId(50_000)!!.isCompleted)
+        assertEquals(T0.plusDays(3), taskDao.getTaskByRemoteId(99_999)?.dueDate)
+        assertEquals("task ${TASKS + 1}", taskDao.getTaskByRemoteId(TASKS + 1)?.title)
+        assertTrue(taskDao.getTaskByRemoteId(42)!!.isDeleted)
+    }
+
+    @Test
+    fun syncWithoutServerEditsTransfersNothing() = runBlocking {
+        engine.sync()
+        server.returnedTasks = 0
+        val writesBefore = writes()
+
+        val result = engine.sync()
+
+        assertEquals(TaskSyncEngine.SyncResult(pages = 1, upserted = 0, deleted = 0), result)
+        assertEquals(0, server.returnedTasks)
+        assertEquals(0, writes() - writesBefore)
+        assertNull(taskDao.getTaskByRemoteId(TASKS + 1))
+    }
+
+    private fun writes(): Int {
+        return repositories.database.openHelper.readableDatabase.query("SELECT n FROM test_task_writes").use { cursor ->
+            cursor.moveToFirst()
+            cursor.getInt(0)
+        }
+    }
+
+    companion object {
+        private const val TASKS = 100_000
+        private val T0 = LocalDateTime.of(2024, 3, 1, 9, 0)
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.todo.ui.components
+
+import androidx.compose.foundation.layout.size
+import androidx.compose.runtime.SideEffect
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.test.junit4.createComposeRule
+import androidx.compose.ui.unit.dp
+import androidx.compose.ui.viewinterop.AndroidView
+import com.github.mikephil.charting.charts.BarChart as MpBarChart
+import com.github.mikephil.charting.data.BarData
+import com.github.mikephil.charting.data.BarDataSet
+import com.github.mikephil.charting.data.BarEntry
+import com.github.mikephil.charting.formatter.IndexAxisValueFormatter
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.time.LocalDate
+import java.time.format.DateTimeFormatter
+import kotlin.random.Random
+
+@RunWith(RobolectricTestRunner::class)
+class BarChartCompositionTest {
+    private class Dataset(val values: List<Int>, val labels: List<String>)
+
+    @get:Rule
+    val composeRule = createComposeRule()
+
+    private val datasets = RANGES.associateWith { days -> dataset(days) }
+    private val days = mutableStateOf(RANGES.first())
+    private var compositions = 0
+
+    @Test
+    fun switchingDatasetsRecomposesOnceAndReusesGeometryArrays() {
+        lateinit var geometry: BarChartGeometry
+        composeRule.setContent {
+            geometry = rememberBarChartGeometry()
+            val data = datasets.getValue(days.value)
+            SideEffect { compositions++ }
+            BarChart(values = data.values, labels = data.labels, modifier = CHART_SIZE, geometry = geometry)
+        }
+        composeRule.waitForIdle()
+        val from = geometry.from
+        val to = geometry.to
+
+        repeat(2) {
+            (RANGES.drop(1) + RANGES.first()).forEach { range ->
+                val before = compositions
+                composeRule.runOnIdle { days.value = range }
+                // 自动推进时钟，等待过渡动画结束；动画帧只重绘，不重组
+                composeRule.waitForIdle()
+
+                assertEquals("$range 天", before + 1, compositions)
+                assertEquals(barsFor(range), geometry.count)
+                assertEquals(1f, (0 until geometry.count).maxOf { geometry.heightAt(it) }, 1e-6f)
+                assertSame(from, geometry.from)
+                assertSame(to, geometry.to)
+            }
+        }
+    }
+
+    // 同一组数据集切换下 Canvas 柱状图与原 AndroidView + MPAndroidChart 的首次组合和切换耗时。
+    // Robolectric 不执行真实绘制，两边都只包含组合、布局和准备绘制数据的开销；只打印结果
+    @Test
+    fun benchmarkAgainstMpAndroidChart() {
+        val useCompose = mutableStateOf<Boolean?>(null)
+        composeRule.setContent {
+            val data = datasets.getValue(days.value)
+            when (useCompose.value) {
+                true -> BarChart(values = data.values, labels = data.labels, modifier = CHART_SIZE)
+                false -> AndroidView(
+                    factory = { context -> MpBarChart(context).apply { description.isEnabled = false } },
+                    modifier = CHART_SIZE,
+                    update = { chart ->
+                        chart.xAxis.valueFormatter = IndexAxisValueFormatter(data.labels)
+                        chart.data = BarData(
+                            BarDataSet(data.values.mapIndexed { i, v -> BarEntry(i.toFloat(), v.toFloat()) }, "任务数")
+                        ).apply { barWidth = 0.6f }
+                        chart.notifyDataSetChanged()
+                        chart.invalidate()
+                    }
+                )
+                null -> Unit
+            }
+        }
+        composeRule.waitForIdle()
+
+        listOf(true, false, true, false).forEach { compose ->
+            composeRule.runOnIdle {
+                useCompose.value = null
+                days.value = RANGES.first()
+            }
+            composeRule.waitForIdle()
+            val firstNanos = timed { useCompose.value = compose }
+            val switchNanos = RANGES.associateWith { LongArray(ROUNDS) }
+            repeat(ROUNDS) { round ->
+                (RANGES.drop(1) + RANGES.first()).forEach { range ->
+                    switchNanos.getValue(range)[round] = timed { days.value = range }
+                }
+            }
+            val name = if (compose) "Canvas BarChart" else "MPAndroidChart"
+            println("$name: first composition ${firstNanos / 1_000} us, switch to " +
+                RANGES.joinToString { range -> "$range days ${switchNanos.getValue(range).minOrNull()!! / 1_000} us" })
+        }
+    }
+
+    private fun timed(change: () -> Unit): Long {
+        val start = System.nanoTime()
+        composeRule.runOnIdle(change)
+        composeRule.waitForIdle()
+        return System.nanoTime() - start
+    }
+
+    // 合并到最多 60 根柱后的柱数：7、30 不变，90 两天一根，365 七天一根
+    private fun barsFor(days: Int): Int = when (days) {
+        90 -> 45
+        365 -> 53
+        else -> days
+    }
+
+    private fun dataset(days: Int): Dataset {
+        val random = Random(days)
+        val formatter = DateTimeFormatter.ofPattern("MM/dd")
+        val first = LocalDate.of(2024, 1, 1)
+        return Dataset(
+            values = List(days) { random.nextInt(0, 20) },
+            labels = List(days) { first.plusDays(it.toLong()).format(formatter) }
+        )
+    }
+
+    companion object {
+        private val RANGES = listOf(7, 30, 90, 365)
+        private const val ROUNDS = 5
+        private val CHART_SIZE = Modifier.size(360.dp, 300.dp)
+    }
+}